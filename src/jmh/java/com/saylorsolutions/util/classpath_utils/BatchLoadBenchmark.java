@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a startup's worth of templates one at a time through
+ * {@code fileContents} compared to the bulk {@code fileContents}, from plain
+ * files and from entries of a jar on the classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchLoadBenchmark {
+	private static final int FILES = 1000;
+
+	@Param({ "files", "jar" })
+	public String source;
+
+	private BenchmarkFixtures fixtures;
+	private List<String> names;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixtures = new BenchmarkFixtures("batch-bench");
+		names = new ArrayList<>();
+		if ("jar".equals(source)) {
+			fixtures.archive("templates.jar", FILES).install("templates.jar");
+			for (int i = 0; i < FILES; i++) {
+				names.add(BenchmarkFixtures.entryName(i));
+			}
+		} else {
+			for (int i = 0; i < FILES; i++) {
+				String name = "templates/template-" + i + ".html";
+				fixtures.textFile(name, 4096);
+				names.add(name);
+			}
+			fixtures.install();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		fixtures.close();
+	}
+
+	@Benchmark
+	public int oneAtATime() {
+		int total = 0;
+		for (String name : names) {
+			total += ClasspathLoader.fileContents(name, StandardCharsets.UTF_8).length();
+		}
+		return total;
+	}
+
+	@Benchmark
+	public Map<String, String> batch() {
+		return ClasspathLoader.fileContents(names, StandardCharsets.UTF_8);
+	}
+}
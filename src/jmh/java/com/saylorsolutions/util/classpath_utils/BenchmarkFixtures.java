@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates benchmark fixtures into a temporary directory and puts that
+ * directory on the classpath seen by {@code ClasspathLoader} by installing a
+ * {@code ClasspathIndex} over it.
+ */
+final class BenchmarkFixtures {
+	private final File root;
+
+	BenchmarkFixtures(String prefix) throws IOException {
+		this.root = Files.createTempDirectory(prefix).toFile();
+	}
+
+	/**
+	 * Writes a text file of roughly {@code size} bytes made of short lines.
+	 */
+	BenchmarkFixtures textFile(String name, int size) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file(name).toPath(), StandardCharsets.UTF_8)) {
+			int written = 0;
+			for (int line = 0; written < size; line++) {
+				String text = "<p>Template line " + line + " with ${placeholder} text</p>\n";
+				writer.write(text);
+				written += text.length();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a zip archive with {@code entries} deflated entries named by
+	 * {@link #entryName(int)}.
+	 */
+	BenchmarkFixtures archive(String name, int entries) throws IOException {
+		try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file(name))))) {
+			byte[] content = "Archive entry content, repeated. Archive entry content, repeated.\n"
+					.getBytes(StandardCharsets.UTF_8);
+			for (int i = 0; i < entries; i++) {
+				zos.putNextEntry(new ZipEntry(entryName(i)));
+				zos.write(content);
+				zos.closeEntry();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a properties file with {@code keys} entries. Keys are named by
+	 * {@link #propertyKey(int)} and cycle through string, integer, decimal,
+	 * boolean and unparseable values.
+	 */
+	BenchmarkFixtures properties(String name, int keys) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file(name).toPath(), StandardCharsets.ISO_8859_1)) {
+			for (int i = 0; i < keys; i++) {
+				writer.write(propertyKey(i));
+				writer.write('=');
+				writer.write(propertyValue(i));
+				writer.write('\n');
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Makes the fixtures visible to {@code ClasspathLoader}.
+	 */
+	BenchmarkFixtures install() {
+		ClasspathLoader.setClasspathIndex(ClasspathIndex.build(Collections.singletonList(root)));
+		return this;
+	}
+
+	/**
+	 * Makes the fixtures visible to {@code ClasspathLoader}, along with the
+	 * entries of the named archives as if they were jars on the classpath.
+	 */
+	BenchmarkFixtures install(String... archives) {
+		List<File> roots = new ArrayList<>();
+		roots.add(root);
+		for (String archive : archives) {
+			roots.add(new File(root, archive));
+		}
+		ClasspathLoader.setClasspathIndex(ClasspathIndex.build(roots));
+		return this;
+	}
+
+	/**
+	 * Writes a zip archive with {@code entries} deflated text entries of
+	 * roughly {@code size} bytes each, named by {@link #entryName(int)}.
+	 */
+	BenchmarkFixtures textArchive(String name, int entries, int size) throws IOException {
+		StringBuilder text = new StringBuilder(size + 64);
+		for (int line = 0; text.length() < size; line++) {
+			text.append("<p>Template line ").append(line).append(" with ${placeholder} text</p>\n");
+		}
+		byte[] content = text.toString().getBytes(StandardCharsets.UTF_8);
+		try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file(name))))) {
+			for (int i = 0; i < entries; i++) {
+				zos.putNextEntry(new ZipEntry(entryName(i)));
+				zos.write(content);
+				zos.closeEntry();
+			}
+		}
+		return this;
+	}
+
+	File file(String name) {
+		File file = new File(root, name);
+		file.getParentFile().mkdirs();
+		return file;
+	}
+
+	/**
+	 * Removes the fixtures from the classpath and deletes them.
+	 */
+	void close() throws IOException {
+		ClasspathLoader.setClasspathIndex(null);
+		ClasspathLoader.zipFileCache().clear();
+		Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	static String entryName(int i) {
+		return "dir" + (i % 16) + "/entry-" + i + ".txt";
+	}
+
+	static String propertyKey(int i) {
+		return "key." + (i % 5) + "." + i;
+	}
+
+	static String propertyValue(int i) {
+		switch (i % 5) {
+		case 0:
+			return "value-" + i;
+		case 1:
+			return Integer.toString(i);
+		case 2:
+			return i + ".5";
+		case 3:
+			return (i & 8) == 0 ? "true" : "no";
+		default:
+			return "not a number " + i;
+		}
+	}
+}
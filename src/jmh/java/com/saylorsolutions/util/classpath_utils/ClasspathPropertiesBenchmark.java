@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathProperties.Key;
+
+/**
+ * Cost of loading a {@code ClasspathProperties}, from text and from a compiled
+ * snapshot, and of its getters and a bound interface, single threaded and with
+ * several readers sharing one instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClasspathPropertiesBenchmark {
+	private static final String PROPERTIES = "bench.properties";
+	private static final String COMPILED = "bench-compiled.properties";
+
+	@Param({ "10", "10000" })
+	public int keys;
+
+	private BenchmarkFixtures fixtures;
+	private ClasspathProperties props;
+	private String[] stringKeys;
+	private String[] integerKeys;
+	private String[] decimalKeys;
+	private String[] booleanKeys;
+	private String[] badKeys;
+	private BoundKeys bound;
+
+	public interface BoundKeys {
+		@Key("key.1.1")
+		int integer();
+
+		@Key("key.0.0")
+		String string();
+	}
+
+	/**
+	 * Per thread position in the key arrays, so readers don't share a counter.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+
+		int next(int length) {
+			int index = next;
+			next = (index + 1) % length;
+			return index;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixtures = new BenchmarkFixtures("properties-bench").properties(PROPERTIES, keys).properties(COMPILED, keys);
+		PropertiesCompiler.compile(fixtures.file(COMPILED));
+		fixtures.install();
+		props = new ClasspathProperties(PROPERTIES);
+		bound = props.bind(BoundKeys.class);
+		int perType = Math.max(1, keys / 5);
+		stringKeys = new String[perType];
+		integerKeys = new String[perType];
+		decimalKeys = new String[perType];
+		booleanKeys = new String[perType];
+		badKeys = new String[perType];
+		for (int i = 0; i < perType; i++) {
+			stringKeys[i] = BenchmarkFixtures.propertyKey(i * 5);
+			integerKeys[i] = BenchmarkFixtures.propertyKey(i * 5 + 1);
+			decimalKeys[i] = BenchmarkFixtures.propertyKey(i * 5 + 2);
+			booleanKeys[i] = BenchmarkFixtures.propertyKey(i * 5 + 3);
+			badKeys[i] = BenchmarkFixtures.propertyKey(i * 5 + 4);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		fixtures.close();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public ClasspathProperties load() {
+		return new ClasspathProperties(PROPERTIES);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public ClasspathProperties loadCompiled() {
+		return new ClasspathProperties(COMPILED);
+	}
+
+	@Benchmark
+	public String getProperty(Cursor cursor) {
+		return props.getProperty(stringKeys[cursor.next(stringKeys.length)]);
+	}
+
+	@Benchmark
+	public long getIntegerProperty(Cursor cursor) {
+		return props.getIntegerProperty(integerKeys[cursor.next(integerKeys.length)]);
+	}
+
+	@Benchmark
+	public double getDecimalProperty(Cursor cursor) {
+		return props.getDecimalProperty(decimalKeys[cursor.next(decimalKeys.length)]);
+	}
+
+	@Benchmark
+	public BigDecimal getBigDecimalProperty(Cursor cursor) {
+		return props.getBigDecimalProperty(decimalKeys[cursor.next(decimalKeys.length)]);
+	}
+
+	@Benchmark
+	public boolean getBooleanProperty(Cursor cursor) {
+		return props.getBooleanProperty(booleanKeys[cursor.next(booleanKeys.length)]);
+	}
+
+	@Benchmark
+	public long getIntegerPropertyUnparseable(Cursor cursor) {
+		return props.getIntegerProperty(badKeys[cursor.next(badKeys.length)]);
+	}
+
+	@Benchmark
+	public int boundInteger() {
+		return bound.integer();
+	}
+
+	@Benchmark
+	public String boundString() {
+		return bound.string();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String getPropertyContended(Cursor cursor) {
+		return getProperty(cursor);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long getIntegerPropertyContended(Cursor cursor) {
+		return getIntegerProperty(cursor);
+	}
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the line based {@code fileContents(String)} against the bulk byte
+ * oriented content methods. Run with {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileContentsBenchmark {
+	private static final String TEMPLATE = "template.txt";
+
+	@Param({ "4096", "4194304" })
+	public int size;
+
+	private BenchmarkFixtures fixtures;
+	private ByteBuffer buffer;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixtures = new BenchmarkFixtures("file-contents-bench").textFile(TEMPLATE, size).install();
+		buffer = ByteBuffer.allocate((int) fixtures.file(TEMPLATE).length());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		fixtures.close();
+	}
+
+	@Benchmark
+	public String fileContentsLines() {
+		return ClasspathLoader.fileContents(TEMPLATE);
+	}
+
+	@Benchmark
+	public String fileContentsCharset() {
+		return ClasspathLoader.fileContents(TEMPLATE, StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public byte[] fileBytes() {
+		return ClasspathLoader.fileBytes(TEMPLATE);
+	}
+
+	@Benchmark
+	public int fileContentsBuffer() {
+		buffer.clear();
+		return ClasspathLoader.fileContents(TEMPLATE, buffer);
+	}
+}
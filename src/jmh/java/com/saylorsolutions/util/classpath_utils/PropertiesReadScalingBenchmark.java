@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read throughput of one shared {@code ClasspathProperties} as readers are
+ * added. With lock free reads the total throughput should grow linearly with
+ * the thread count, up to the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertiesReadScalingBenchmark {
+	private static final String PROPERTIES = "scaling.properties";
+	private static final int KEYS = 1000;
+
+	private BenchmarkFixtures fixtures;
+	private ClasspathProperties props;
+	private String[] keys;
+
+	/**
+	 * Per thread position in the key array, so readers don't share a counter.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixtures = new BenchmarkFixtures("scaling-bench").properties(PROPERTIES, KEYS).install();
+		props = new ClasspathProperties(PROPERTIES);
+		keys = new String[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = BenchmarkFixtures.propertyKey(i);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		fixtures.close();
+	}
+
+	private String read(Cursor cursor) {
+		int index = cursor.next;
+		cursor.next = (index + 1) % KEYS;
+		return props.getProperty(keys[index]);
+	}
+
+	private long readInteger(Cursor cursor) {
+		int index = cursor.next;
+		cursor.next = (index + 1) % KEYS;
+		return props.getIntegerProperty(keys[index]);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public String getProperty1(Cursor cursor) {
+		return read(cursor);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public String getProperty2(Cursor cursor) {
+		return read(cursor);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String getProperty4(Cursor cursor) {
+		return read(cursor);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public String getProperty8(Cursor cursor) {
+		return read(cursor);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public long getIntegerProperty1(Cursor cursor) {
+		return readInteger(cursor);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long getIntegerProperty4(Cursor cursor) {
+		return readInteger(cursor);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public long getIntegerProperty8(Cursor cursor) {
+		return readInteger(cursor);
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of opening classpath resources through {@code ClasspathLoader}, for
+ * small and large files and for names that don't exist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceLookupBenchmark {
+	private static final String SMALL = "small.txt";
+	private static final String LARGE = "large.txt";
+	private static final String MISSING = "missing.txt";
+
+	private BenchmarkFixtures fixtures;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixtures = new BenchmarkFixtures("lookup-bench").textFile(SMALL, 1024).textFile(LARGE, 1 << 20).install();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		fixtures.close();
+	}
+
+	@Benchmark
+	public int fileInputStreamSmall() throws IOException {
+		try (InputStream is = ClasspathLoader.fileInputStream(SMALL)) {
+			return is.read();
+		}
+	}
+
+	@Benchmark
+	public int fileInputStreamLarge() throws IOException {
+		try (InputStream is = ClasspathLoader.fileInputStream(LARGE)) {
+			return is.read();
+		}
+	}
+
+	@Benchmark
+	public InputStream fileInputStreamMissing() {
+		return ClasspathLoader.fileInputStream(MISSING);
+	}
+
+	@Benchmark
+	public String fileContentsSmall() {
+		return ClasspathLoader.fileContents(SMALL);
+	}
+
+	@Benchmark
+	public String fileContentsLarge() {
+		return ClasspathLoader.fileContents(LARGE);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int fileInputStreamSmallContended() throws IOException {
+		return fileInputStreamSmall();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public InputStream fileInputStreamMissingContended() {
+		return ClasspathLoader.fileInputStream(MISSING);
+	}
+}
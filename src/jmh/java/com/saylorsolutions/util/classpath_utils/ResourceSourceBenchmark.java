@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of resolving a name through a {@code ResourceChain} of a directory
+ * overlay in front of a class loader, compared to asking the class loader
+ * directly. The class loader searches 20 jars before the directory holding
+ * the resource, as an application class path would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceSourceBenchmark {
+	private static final String RESOURCE = "templates/page.html";
+	private static final String MISSING = "templates/missing.html";
+	private static final int JARS = 20;
+
+	private BenchmarkFixtures fixtures;
+	private URLClassLoader loader;
+	private ResourceChain chain;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixtures = new BenchmarkFixtures("source-bench").textFile("classes/" + RESOURCE, 1024);
+		URL[] urls = new URL[JARS + 1];
+		for (int i = 0; i < JARS; i++) {
+			String jar = "lib/lib-" + i + ".jar";
+			fixtures.archive(jar, 100);
+			urls[i] = fixtures.file(jar).toURI().toURL();
+		}
+		File classes = fixtures.file("classes/" + RESOURCE).getParentFile().getParentFile();
+		urls[JARS] = classes.toURI().toURL();
+		loader = new URLClassLoader(urls, null);
+		File overlay = fixtures.file("overlay/placeholder").getParentFile();
+		overlay.mkdirs();
+		chain = ResourceSource.chain(ResourceSource.directory(overlay), ResourceSource.classLoader(loader));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		loader.close();
+		fixtures.close();
+	}
+
+	@Benchmark
+	public URL getResource() {
+		return loader.getResource(RESOURCE);
+	}
+
+	@Benchmark
+	public URL getResourceMissing() {
+		return loader.getResource(MISSING);
+	}
+
+	@Benchmark
+	public URL chainFind() {
+		return chain.find(RESOURCE);
+	}
+
+	@Benchmark
+	public URL chainFindMissing() {
+		return chain.find(MISSING);
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathLoader.ZipReaderMode;
+
+/**
+ * Cost of reading a random entry out of archives of different sizes through
+ * {@code zipFileInputStream}, with either archive reader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipEntryBenchmark {
+	private static final String ARCHIVE = "archive.zip";
+
+	@Param({ "10", "10000", "100000" })
+	public int entries;
+
+	@Param({ "ZIP_FILE", "MAPPED" })
+	public ZipReaderMode mode;
+
+	private BenchmarkFixtures fixtures;
+	private String[] names;
+	private final byte[] sink = new byte[256];
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixtures = new BenchmarkFixtures("zip-bench").archive(ARCHIVE, entries).install();
+		names = new String[entries];
+		for (int i = 0; i < entries; i++) {
+			names[i] = BenchmarkFixtures.entryName(i);
+		}
+		ClasspathLoader.setZipReaderMode(mode);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		ClasspathLoader.setZipReaderMode(null);
+		fixtures.close();
+	}
+
+	@Benchmark
+	public int zipFileInputStream() throws IOException {
+		String name = names[ThreadLocalRandom.current().nextInt(names.length)];
+		try (InputStream is = ClasspathLoader.zipFileInputStream(ARCHIVE, name)) {
+			return is.read(sink);
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int zipFileInputStreamContended() throws IOException {
+		return zipFileInputStream();
+	}
+
+	@Benchmark
+	public byte[] zipFileBytes() {
+		return ClasspathLoader.zipFileBytes(ARCHIVE, names[ThreadLocalRandom.current().nextInt(names.length)]);
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extracting every entry of an archive one at a time through
+ * {@code zipFileInputStream}, compared to {@code zipExtract}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipExtractBenchmark {
+	private static final String ARCHIVE = "extract.zip";
+	private static final int ENTRIES = 1000;
+
+	private BenchmarkFixtures fixtures;
+	private String[] names;
+	private final byte[] buffer = new byte[8192];
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		fixtures = new BenchmarkFixtures("extract-bench").textArchive(ARCHIVE, ENTRIES, 64 * 1024).install();
+		names = new String[ENTRIES];
+		for (int i = 0; i < ENTRIES; i++) {
+			names[i] = BenchmarkFixtures.entryName(i);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		fixtures.close();
+	}
+
+	@Benchmark
+	public long oneAtATime() throws IOException {
+		long total = 0;
+		for (String name : names) {
+			try (InputStream is = ClasspathLoader.zipFileInputStream(ARCHIVE, name)) {
+				int read;
+				while ((read = is.read(buffer)) >= 0) {
+					total += read;
+				}
+			}
+		}
+		return total;
+	}
+
+	@Benchmark
+	public long zipExtract() {
+		LongAdder total = new LongAdder();
+		ClasspathLoader.zipExtract(ARCHIVE, "**", (name, contents) -> total.add(contents.remaining()));
+		return total.sum();
+	}
+}
@@ -0,0 +1,411 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathLoader.ZipReaderMode;
+
+/**
+ * Reads classpath resources without blocking the caller. Plain files are read
+ * through an {@code AsynchronousFileChannel}; jar entries and other resources
+ * are read on a small, bounded pool of daemon I/O threads.
+ * <br/>
+ * At most {@link #getMaxInFlight()} reads run at once. Reads started beyond
+ * that are queued, without holding a thread, and start as earlier reads finish,
+ * so a burst of requests can't exhaust file handles or the I/O pool.
+ * <br/>
+ * At most {@link #getMaxPending()} reads are queued. A read started while the
+ * queue is full is rejected: its future completes exceptionally with a
+ * {@code RejectedExecutionException}, so a caller producing reads faster than
+ * they finish is pushed back on instead of queueing without bound.
+ */
+public class AsyncReader {
+	public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+	public static final int DEFAULT_IO_THREADS = 4;
+	public static final int DEFAULT_MAX_PENDING = 4096;
+
+	private static final Set<OpenOption> READ = Collections.singleton(StandardOpenOption.READ);
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private final ThreadPoolExecutor ioPool;
+	private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+	private volatile int maxPending = DEFAULT_MAX_PENDING;
+
+	public AsyncReader() {
+		ioPool = new ThreadPoolExecutor(DEFAULT_IO_THREADS, DEFAULT_IO_THREADS, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "classpath-async-io-" + THREAD_COUNT.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		ioPool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return The number of reads currently running.
+	 */
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return The number of reads waiting for a running read to finish.
+	 */
+	public int pending() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * @return The most reads allowed to run at once.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Sets the most reads allowed to run at once. Raising the limit starts
+	 * queued reads right away.
+	 *
+	 * @param maxInFlight The new limit, must be at least 1.
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be at least 1");
+		}
+		this.maxInFlight = maxInFlight;
+		drain();
+	}
+
+	/**
+	 * @return The most reads allowed to wait for a running read to finish.
+	 */
+	public int getMaxPending() {
+		return maxPending;
+	}
+
+	/**
+	 * Sets the most reads allowed to wait for a running read to finish. Reads
+	 * already queued are kept if the limit is lowered below their number.
+	 *
+	 * @param maxPending The new limit, must not be negative. With {@code 0},
+	 *                   reads are rejected whenever {@code maxInFlight} reads
+	 *                   are already running.
+	 */
+	public void setMaxPending(int maxPending) {
+		if (maxPending < 0) {
+			throw new IllegalArgumentException("maxPending must not be negative");
+		}
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * @return The number of threads reading jar entries and completing file
+	 *         reads.
+	 */
+	public synchronized int getIoThreads() {
+		return ioPool.getMaximumPoolSize();
+	}
+
+	/**
+	 * Sets the number of threads reading jar entries and completing file reads.
+	 * Idle threads are released after a short while.
+	 *
+	 * @param ioThreads The new pool size, must be at least 1.
+	 */
+	public synchronized void setIoThreads(int ioThreads) {
+		if (ioThreads < 1) {
+			throw new IllegalArgumentException("ioThreads must be at least 1");
+		}
+		if (ioThreads > ioPool.getMaximumPoolSize()) {
+			ioPool.setMaximumPoolSize(ioThreads);
+			ioPool.setCorePoolSize(ioThreads);
+		} else {
+			ioPool.setCorePoolSize(ioThreads);
+			ioPool.setMaximumPoolSize(ioThreads);
+		}
+	}
+
+	CompletableFuture<ByteBuffer> read(String filename) {
+		return submit(() -> {
+			File file = ClasspathLoader.fileReference(filename);
+			if (file != null) {
+				return readFile(file);
+			}
+			byte[] bytes = ClasspathLoader.fileBytes(filename);
+			return CompletableFuture.completedFuture(bytes != null ? ByteBuffer.wrap(bytes) : null);
+		});
+	}
+
+	CompletableFuture<ByteBuffer> readZipEntry(String zipFileName, String fileWithinArchive) {
+		return submit(() -> {
+			if (ClasspathLoader.getZipReaderMode() == ZipReaderMode.MAPPED) {
+				return CompletableFuture.completedFuture(ClasspathLoader.zipFileBuffer(zipFileName, fileWithinArchive));
+			}
+			byte[] bytes = ClasspathLoader.zipFileBytes(zipFileName, fileWithinArchive);
+			return CompletableFuture.completedFuture(bytes != null ? ByteBuffer.wrap(bytes) : null);
+		});
+	}
+
+	CompletableFuture<Long> readChunked(String filename, int chunkSize,
+			Function<? super ByteBuffer, ? extends CompletionStage<?>> consumer) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be at least 1");
+		}
+		return submit(() -> {
+			File file = ClasspathLoader.fileReference(filename);
+			if (file != null) {
+				try {
+					AsynchronousFileChannel channel = AsynchronousFileChannel.open(file.toPath(), READ, ioPool);
+					CompletableFuture<Long> result = new CompletableFuture<>();
+					readFileChunk(channel, 0, chunkSize, consumer, result);
+					return result;
+				} catch (IOException iox) {
+					return failed(iox);
+				}
+			}
+			InputStream is = ClasspathLoader.fileInputStream(filename);
+			if (is == null) {
+				return CompletableFuture.completedFuture(-1L);
+			}
+			CompletableFuture<Long> result = new CompletableFuture<>();
+			readStreamChunk(is, 0, chunkSize, consumer, result);
+			return result;
+		});
+	}
+
+	/**
+	 * Queues an operation and starts it on the I/O pool once fewer than
+	 * {@code maxInFlight} operations are running, or rejects it if
+	 * {@code maxPending} operations are already queued.
+	 */
+	private <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		if (!reservePending()) {
+			result.completeExceptionally(new RejectedExecutionException(
+					"Too many reads in progress, " + maxInFlight + " running and " + maxPending + " queued"));
+			return result;
+		}
+		pending.add(() -> {
+			CompletableFuture<T> started;
+			try {
+				started = operation.get();
+			} catch (RuntimeException rx) {
+				started = failed(rx);
+			}
+			started.whenComplete((value, error) -> {
+				inFlight.decrementAndGet();
+				drain();
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					result.complete(value);
+				}
+			});
+		});
+		drain();
+		return result;
+	}
+
+	/**
+	 * Takes a place in the queue for an operation. Every operation passes
+	 * through the queue, so one that can start right away is let in even when
+	 * the queue is full.
+	 */
+	private boolean reservePending() {
+		while (true) {
+			int current = pendingCount.get();
+			if (current >= maxPending && inFlight.get() >= maxInFlight) {
+				return false;
+			}
+			if (pendingCount.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private void drain() {
+		while (!pending.isEmpty()) {
+			int current = inFlight.get();
+			if (current >= maxInFlight) {
+				// The read that brings the count back down drains again
+				return;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				Runnable next = pending.poll();
+				if (next != null) {
+					pendingCount.decrementAndGet();
+					ioPool.execute(next);
+				} else {
+					inFlight.decrementAndGet();
+				}
+			}
+		}
+	}
+
+	private CompletableFuture<ByteBuffer> readFile(File file) {
+		CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+		try {
+			AsynchronousFileChannel channel = AsynchronousFileChannel.open(file.toPath(), READ, ioPool);
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				closeQuietly(channel);
+				throw new IOException("File '" + file + "' is too large to be buffered");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			if (size == 0) {
+				closeQuietly(channel);
+				result.complete(buffer);
+				return result;
+			}
+			channel.read(buffer, 0, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+				@Override
+				public void completed(Integer read, ByteBuffer dst) {
+					if (read < 0 || !dst.hasRemaining()) {
+						closeQuietly(channel);
+						dst.flip();
+						result.complete(dst);
+					} else {
+						channel.read(dst, dst.position(), dst, this);
+					}
+				}
+
+				@Override
+				public void failed(Throwable error, ByteBuffer dst) {
+					closeQuietly(channel);
+					result.completeExceptionally(error);
+				}
+			});
+		} catch (IOException iox) {
+			result.completeExceptionally(iox);
+		}
+		return result;
+	}
+
+	private void readFileChunk(AsynchronousFileChannel channel, long position, int chunkSize,
+			Function<? super ByteBuffer, ? extends CompletionStage<?>> consumer, CompletableFuture<Long> result) {
+		ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+		channel.read(chunk, position, chunk, new CompletionHandler<Integer, ByteBuffer>() {
+			@Override
+			public void completed(Integer read, ByteBuffer dst) {
+				if (read < 0) {
+					closeQuietly(channel);
+					result.complete(position);
+					return;
+				}
+				dst.flip();
+				deliver(consumer, dst, result, () -> readFileChunk(channel, position + read, chunkSize, consumer, result),
+						() -> closeQuietly(channel));
+			}
+
+			@Override
+			public void failed(Throwable error, ByteBuffer dst) {
+				closeQuietly(channel);
+				result.completeExceptionally(error);
+			}
+		});
+	}
+
+	private void readStreamChunk(InputStream is, long position, int chunkSize,
+			Function<? super ByteBuffer, ? extends CompletionStage<?>> consumer, CompletableFuture<Long> result) {
+		byte[] chunk = new byte[chunkSize];
+		int filled = 0;
+		try {
+			int read;
+			while (filled < chunkSize && (read = is.read(chunk, filled, chunkSize - filled)) >= 0) {
+				filled += read;
+			}
+		} catch (IOException iox) {
+			closeQuietly(is);
+			result.completeExceptionally(iox);
+			return;
+		}
+		if (filled == 0) {
+			closeQuietly(is);
+			result.complete(position);
+			return;
+		}
+		long next = position + filled;
+		deliver(consumer, ByteBuffer.wrap(chunk, 0, filled), result,
+				() -> ioPool.execute(() -> readStreamChunk(is, next, chunkSize, consumer, result)), () -> closeQuietly(is));
+	}
+
+	/**
+	 * Hands a chunk to the consumer and reads the next one only once the stage
+	 * it returned completes.
+	 */
+	private static void deliver(Function<? super ByteBuffer, ? extends CompletionStage<?>> consumer, ByteBuffer chunk,
+			CompletableFuture<Long> result, Runnable readNext, Runnable close) {
+		CompletionStage<?> accepted;
+		try {
+			accepted = consumer.apply(chunk);
+		} catch (RuntimeException rx) {
+			close.run();
+			result.completeExceptionally(rx);
+			return;
+		}
+		if (accepted == null) {
+			readNext.run();
+			return;
+		}
+		accepted.whenComplete((value, error) -> {
+			if (error != null) {
+				close.run();
+				result.completeExceptionally(error);
+			} else {
+				readNext.run();
+			}
+		});
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable error) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(error);
+		return future;
+	}
+
+	private static void closeQuietly(AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch (Exception ex) {
+			/* Ignore */
+		}
+	}
+}
@@ -0,0 +1,652 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Immutable index of every resource on a set of classpath roots, built by
+ * walking each root once. Roots are scanned in parallel on a
+ * {@code ForkJoinPool}; afterwards looking a resource up is a single hash probe.
+ * <br/>
+ * Like a class loader, the first root containing a resource wins. Directory
+ * entries are indexed without their trailing slash.
+ * <br/>
+ * An index can be written to a compact binary file and loaded again on the
+ * next start. When loading, archive roots that haven't changed size or
+ * modification time are taken from the file as is, changed archives and all
+ * directory roots are rescanned.
+ *
+ * @see ClasspathLoader#setClasspathIndex(ClasspathIndex)
+ */
+public final class ClasspathIndex {
+	private static final int MAGIC = 0x43504958;
+	private static final int VERSION = 2;
+
+	private final List<File> roots;
+	private final RootEntries[] rootEntries;
+	private final String[] names;
+	private final int[] rootIndexes;
+	private final long[] offsets;
+	private final long[] sizes;
+	private final byte[] methods;
+	private final int mask;
+	private final int size;
+	private volatile String[] sortedNames;
+
+	/**
+	 * Location of an indexed resource.
+	 */
+	public static final class Location {
+		private final File root;
+		private final String name;
+		private final long offset;
+		private final long size;
+		private final int method;
+
+		Location(File root, String name, long offset, long size, int method) {
+			this.root = root;
+			this.name = name;
+			this.offset = offset;
+			this.size = size;
+			this.method = method;
+		}
+
+		/**
+		 * @return The directory or archive the resource was found in.
+		 */
+		public File getRoot() {
+			return root;
+		}
+
+		/**
+		 * @return The indexed name of the resource.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return Whether or not the resource is an entry within an archive.
+		 */
+		public boolean isArchiveEntry() {
+			return method >= 0;
+		}
+
+		/**
+		 * @return The offset of the entry's local header within its archive, or
+		 *         {@code -1} if the resource is a plain file.
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return The uncompressed size of the resource in bytes, or {@code -1} if
+		 *         the resource is a directory.
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return Whether or not the resource is a directory.
+		 */
+		public boolean isDirectory() {
+			return size < 0;
+		}
+
+		/**
+		 * @return The compression method of the archive entry, or {@code -1} if
+		 *         the resource is a plain file.
+		 */
+		public int getMethod() {
+			return method;
+		}
+
+		/**
+		 * @return A {@code URL} for the resource, in the same form a class loader
+		 *         would return it.
+		 */
+		public URL toURL() {
+			try {
+				if (isArchiveEntry()) {
+					return new URL("jar:" + root.toURI().toURL() + "!/" + encodePath(name));
+				}
+				return new File(root, name).toURI().toURL();
+			} catch (MalformedURLException mux) {
+				System.err.println("Failed to create URL for indexed resource '" + name + "'");
+				mux.printStackTrace();
+			}
+			return null;
+		}
+	}
+
+	private ClasspathIndex(List<File> roots, RootEntries[] rootEntries) {
+		this.roots = Collections.unmodifiableList(new ArrayList<>(roots));
+		this.rootEntries = rootEntries;
+
+		int total = 0;
+		for (RootEntries entries : rootEntries) {
+			total += entries.count;
+		}
+		int capacity = Integer.highestOneBit(Math.max(2, total * 2 - 1)) << 1;
+		this.names = new String[capacity];
+		this.rootIndexes = new int[capacity];
+		this.offsets = new long[capacity];
+		this.sizes = new long[capacity];
+		this.methods = new byte[capacity];
+		this.mask = capacity - 1;
+
+		int count = 0;
+		for (int root = 0; root < rootEntries.length; root++) {
+			RootEntries entries = rootEntries[root];
+			for (int i = 0; i < entries.count; i++) {
+				String name = entries.names[i];
+				int slot = slot(name);
+				if (names[slot] == null) {
+					names[slot] = name;
+					rootIndexes[slot] = root;
+					offsets[slot] = entries.offsets[i];
+					sizes[slot] = entries.sizes[i];
+					methods[slot] = entries.methods[i];
+					count++;
+				}
+			}
+		}
+		this.size = count;
+	}
+
+	/**
+	 * Builds an index over the roots listed in the {@code java.class.path} system
+	 * property.
+	 *
+	 * @return The new index.
+	 */
+	public static ClasspathIndex build() {
+		return build(defaultRoots());
+	}
+
+	/**
+	 * Builds an index over the given roots, scanning them in parallel on the
+	 * common {@code ForkJoinPool}.
+	 *
+	 * @param roots Directories and archives to index, in lookup order.
+	 * @return The new index.
+	 */
+	public static ClasspathIndex build(List<File> roots) {
+		RootEntries[] entries = new RootEntries[roots.size()];
+		scan(roots, entries);
+		return new ClasspathIndex(roots, entries);
+	}
+
+	/**
+	 * Loads an index previously written with {@link #write(File)}, rescanning any
+	 * root that may have changed since.
+	 *
+	 * @param indexFile The index file.
+	 * @param roots     The roots the index is expected to cover, in lookup order.
+	 * @return The loaded index, or null if the file does not exist, is corrupt,
+	 *         or was built for a different list of roots.
+	 */
+	public static ClasspathIndex load(File indexFile, List<File> roots) {
+		if (!indexFile.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				System.err.println("Ignoring classpath index '" + indexFile + "' with an unknown format");
+				return null;
+			}
+			int rootCount = readVarInt(in);
+			if (rootCount != roots.size()) {
+				return null;
+			}
+			RootEntries[] entries = new RootEntries[rootCount];
+			for (int root = 0; root < rootCount; root++) {
+				File file = roots.get(root);
+				String path = in.readUTF();
+				long lastModified = in.readLong();
+				long length = in.readLong();
+				if (!path.equals(file.getAbsolutePath())) {
+					return null;
+				}
+				RootEntries stored = RootEntries.read(in, lastModified, length);
+				if (file.isFile() && file.lastModified() == lastModified && file.length() == length) {
+					entries[root] = stored;
+				}
+			}
+
+			// Only what couldn't be reused gets scanned
+			List<File> stale = new ArrayList<>();
+			for (int root = 0; root < rootCount; root++) {
+				if (entries[root] == null) {
+					stale.add(roots.get(root));
+				}
+			}
+			RootEntries[] rescanned = new RootEntries[stale.size()];
+			scan(stale, rescanned);
+			for (int root = 0, next = 0; root < rootCount; root++) {
+				if (entries[root] == null) {
+					entries[root] = rescanned[next++];
+				}
+			}
+			return new ClasspathIndex(roots, entries);
+		} catch (IOException iox) {
+			System.err.println("Exception occurred while loading the classpath index '" + indexFile + "'");
+			iox.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Loads the index from {@code indexFile} for the roots listed in the
+	 * {@code java.class.path} system property, building and writing a new one if
+	 * the file can't be used.
+	 *
+	 * @param indexFile The index file.
+	 * @return The loaded or newly built index.
+	 */
+	public static ClasspathIndex loadOrBuild(File indexFile) {
+		List<File> roots = defaultRoots();
+		ClasspathIndex index = load(indexFile, roots);
+		if (index == null) {
+			index = build(roots);
+			try {
+				index.write(indexFile);
+			} catch (IOException iox) {
+				System.err.println("Exception occurred while writing the classpath index '" + indexFile + "'");
+				iox.printStackTrace();
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the index to a binary file. Names within each root are written
+	 * sorted and front coded, so shared path prefixes are only stored once.
+	 *
+	 * @param indexFile The file to write.
+	 * @throws IOException If the file could not be written.
+	 */
+	public void write(File indexFile) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeVarInt(out, roots.size());
+			for (int root = 0; root < roots.size(); root++) {
+				out.writeUTF(roots.get(root).getAbsolutePath());
+				out.writeLong(rootEntries[root].lastModified);
+				out.writeLong(rootEntries[root].length);
+				rootEntries[root].write(out);
+			}
+		}
+	}
+
+	/**
+	 * Looks up a resource.
+	 *
+	 * @param name The name of the resource.
+	 * @return The location of the resource, or null if it isn't on any root.
+	 */
+	public Location find(String name) {
+		String key = normalize(name);
+		int slot = slot(key);
+		String found = names[slot];
+		if (found == null) {
+			return null;
+		}
+		return new Location(roots.get(rootIndexes[slot]), found, offsets[slot], sizes[slot], methods[slot]);
+	}
+
+	/**
+	 * @param name The name of the resource.
+	 * @return Whether or not the resource is on any root.
+	 */
+	public boolean contains(String name) {
+		return names[slot(normalize(name))] != null;
+	}
+
+	/**
+	 * @return The number of distinct resources indexed.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The roots covered by this index, in lookup order.
+	 */
+	public List<File> getRoots() {
+		return roots;
+	}
+
+	/**
+	 * Streams the names of indexed files, leaving out directories, that start
+	 * with a prefix. The names are sorted the first time this is called, after
+	 * which finding the prefix is a binary search and the stream splits evenly
+	 * when run in parallel.
+	 */
+	Stream<String> fileNames(String prefix) {
+		String[] sorted = sortedNames();
+		int start = Arrays.binarySearch(sorted, prefix);
+		if (start < 0) {
+			start = -(start + 1);
+		}
+		int low = start;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid].startsWith(prefix)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return Arrays.stream(sorted, start, low).filter(name -> sizes[slot(name)] >= 0);
+	}
+
+	private String[] sortedNames() {
+		String[] sorted = sortedNames;
+		if (sorted == null) {
+			sorted = new String[size];
+			int count = 0;
+			for (String name : names) {
+				if (name != null) {
+					sorted[count++] = name;
+				}
+			}
+			Arrays.sort(sorted);
+			sortedNames = sorted;
+		}
+		return sorted;
+	}
+
+	static List<File> defaultRoots() {
+		List<File> roots = new ArrayList<>();
+		for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+			if (!path.isEmpty()) {
+				roots.add(new File(path).getAbsoluteFile());
+			}
+		}
+		return roots;
+	}
+
+	private int slot(String name) {
+		int hash = name.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (names[slot] != null && !names[slot].equals(name)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static String normalize(String name) {
+		return name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+	}
+
+	private static void scan(List<File> roots, RootEntries[] results) {
+		if (!roots.isEmpty()) {
+			ForkJoinPool.commonPool().invoke(new ScanTask(roots, results, 0, roots.size()));
+		}
+	}
+
+	private static RootEntries scanRoot(File root) {
+		RootEntries entries = new RootEntries(root.lastModified(), root.isFile() ? root.length() : -1);
+		try {
+			if (root.isDirectory()) {
+				Path base = root.toPath();
+				Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+						if (!dir.equals(base)) {
+							entries.add(relativeName(base, dir), -1, -1, (byte) -1);
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+						entries.add(relativeName(base, file), -1, attrs.size(), (byte) -1);
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			} else if (root.isFile()) {
+				MappedZipArchive archive = MappedZipArchive.open(root);
+				for (int i = 0; i < archive.size(); i++) {
+					entries.add(normalize(archive.nameAt(i)), archive.localHeaderOffsetAt(i),
+							archive.isDirectoryAt(i) ? -1 : archive.sizeAt(i), (byte) archive.methodAt(i));
+				}
+			}
+		} catch (IOException iox) {
+			System.err.println("Exception occurred while indexing classpath root '" + root + "'");
+			iox.printStackTrace();
+		}
+		return entries;
+	}
+
+	private static String relativeName(Path base, Path path) {
+		return base.relativize(path).toString().replace(File.separatorChar, '/');
+	}
+
+	static String encodePath(String name) {
+		StringBuilder builder = null;
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < bytes.length; i++) {
+			int b = bytes[i] & 0xFF;
+			boolean plain = (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+					|| "/-_.~!$&'()*+,;=:@".indexOf(b) >= 0;
+			if (builder == null) {
+				if (plain) {
+					continue;
+				}
+				builder = new StringBuilder(bytes.length + 16);
+				builder.append(new String(bytes, 0, i, StandardCharsets.UTF_8));
+			}
+			if (plain) {
+				builder.append((char) b);
+			} else {
+				builder.append('%').append(Character.toUpperCase(Character.forDigit(b >> 4, 16)))
+						.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+			}
+		}
+		return builder != null ? builder.toString() : name;
+	}
+
+	static String decodePath(String path) {
+		int percent = path.indexOf('%');
+		if (percent < 0) {
+			return path;
+		}
+		byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+		byte[] decoded = new byte[bytes.length];
+		int count = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			int high;
+			int low;
+			if (bytes[i] == '%' && i + 2 < bytes.length && (high = Character.digit(bytes[i + 1], 16)) >= 0
+					&& (low = Character.digit(bytes[i + 2], 16)) >= 0) {
+				decoded[count++] = (byte) ((high << 4) | low);
+				i += 2;
+			} else {
+				decoded[count++] = bytes[i];
+			}
+		}
+		return new String(decoded, 0, count, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length number");
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		long value = readVarLong(in);
+		if (value > Integer.MAX_VALUE) {
+			throw new IOException("Malformed variable length number");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Entries found on a single root, in the order they were found.
+	 */
+	private static final class RootEntries {
+		final long lastModified;
+		final long length;
+		String[] names = new String[16];
+		long[] offsets = new long[16];
+		long[] sizes = new long[16];
+		byte[] methods = new byte[16];
+		int count = 0;
+
+		RootEntries(long lastModified, long length) {
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+		void add(String name, long offset, long size, byte method) {
+			if (count == names.length) {
+				int capacity = count * 2;
+				names = Arrays.copyOf(names, capacity);
+				offsets = Arrays.copyOf(offsets, capacity);
+				sizes = Arrays.copyOf(sizes, capacity);
+				methods = Arrays.copyOf(methods, capacity);
+			}
+			names[count] = name;
+			offsets[count] = offset;
+			sizes[count] = size;
+			methods[count] = method;
+			count++;
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+
+			writeVarInt(out, count);
+			byte[] previous = new byte[0];
+			for (int i : order) {
+				byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+				int shared = 0;
+				int max = Math.min(previous.length, name.length);
+				while (shared < max && previous[shared] == name[shared]) {
+					shared++;
+				}
+				writeVarInt(out, shared);
+				writeVarInt(out, name.length - shared);
+				out.write(name, shared, name.length - shared);
+				writeVarLong(out, offsets[i] + 1);
+				writeVarLong(out, sizes[i] + 1);
+				out.writeByte(methods[i]);
+				previous = name;
+			}
+		}
+
+		static RootEntries read(DataInputStream in, long lastModified, long length) throws IOException {
+			RootEntries entries = new RootEntries(lastModified, length);
+			int count = readVarInt(in);
+			byte[] previous = new byte[0];
+			for (int i = 0; i < count; i++) {
+				int shared = readVarInt(in);
+				int suffix = readVarInt(in);
+				if (shared > previous.length) {
+					throw new EOFException("Corrupt classpath index");
+				}
+				byte[] name = new byte[shared + suffix];
+				System.arraycopy(previous, 0, name, 0, shared);
+				in.readFully(name, shared, suffix);
+				long offset = readVarLong(in) - 1;
+				long size = readVarLong(in) - 1;
+				byte method = in.readByte();
+				entries.add(new String(name, StandardCharsets.UTF_8), offset, size, method);
+				previous = name;
+			}
+			return entries;
+		}
+	}
+
+	private static final class ScanTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> roots;
+		private final RootEntries[] results;
+		private final int from;
+		private final int to;
+
+		ScanTask(List<File> roots, RootEntries[] results, int from, int to) {
+			this.roots = roots;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				results[from] = scanRoot(roots.get(from));
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ScanTask(roots, results, from, mid), new ScanTask(roots, results, mid, to));
+			}
+		}
+	}
+}
@@ -20,11 +20,62 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.JarURLConnection;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.jar.JarEntry;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Operation;
+
 public class ClasspathLoader {
+	/**
+	 * How zip archives are read by {@code zipFileInputStream} and
+	 * {@code zipFileBufferedReader}.
+	 */
+	public enum ZipReaderMode {
+		/**
+		 * Entries are read through a pooled {@code ZipFile}.
+		 * 
+		 * @see ClasspathLoader#zipFileCache()
+		 */
+		ZIP_FILE,
+		/**
+		 * Entries are read from a memory mapped archive.
+		 * 
+		 * @see ClasspathLoader#mappedZip(String)
+		 */
+		MAPPED
+	}
+
+	private static final ZipFileCache ZIP_FILE_CACHE = new ZipFileCache();
+	private static final MappedZipCache MAPPED_ZIP_CACHE = new MappedZipCache();
+	private static final AsyncReader ASYNC_READER = new AsyncReader();
+	private static final ResourceLookupCache RESOURCE_CACHE = new ResourceLookupCache(ClasspathLoader::findResource);
+	private static final ResourceByteCache BYTE_CACHE = ResourceByteCache.checksummed(ClasspathLoader::readCacheable);
+	private static volatile ClasspathIndex classpathIndex;
+	private static volatile ZipReaderMode zipReaderMode = ZipReaderMode.ZIP_FILE;
+	private static volatile Executor loadExecutor = ResourceBatch.defaultExecutor();
+	private static volatile long extractBufferBytes = ZipExtractor.DEFAULT_MAX_BUFFERED_BYTES;
+	private static volatile ResourceSource resourceSource = defaultResourceSource();
+	private static volatile ClasspathMetrics metrics = ClasspathMetrics.NONE;
+
 	/**
 	 * Creates an {@code InputStream} for the file specified by the {@code filename}
 	 * parameter. In the case of the base directory specified below: <br/>
@@ -42,7 +93,32 @@ public class ClasspathLoader {
 	 *         name, or null if the file cannot be opened or read.
 	 */
 	public static InputStream fileInputStream(String filename) {
-		return ClasspathLoader.class.getClassLoader().getResourceAsStream(filename);
+		ClasspathMetrics metrics = ClasspathLoader.metrics;
+		if (metrics == ClasspathMetrics.NONE) {
+			return openFile(filename);
+		}
+		long start = System.nanoTime();
+		InputStream is = openFile(filename);
+		metrics.operation(Operation.FILE_INPUT_STREAM, System.nanoTime() - start, is != null);
+		return (is != null ? new MeteredInputStream(is, metrics, Operation.FILE_INPUT_STREAM) : null);
+	}
+
+	private static InputStream openFile(String filename) {
+		if (BYTE_CACHE.isEnabled()) {
+			ByteBuffer contents = BYTE_CACHE.get(filename);
+			return (contents != null ? new ByteBufferInputStream(contents) : null);
+		}
+		URL url = RESOURCE_CACHE.resolve(filename);
+		if (url != null) {
+			try {
+				return url.openStream();
+			} catch (IOException iox) {
+				// The resource went away after it was resolved
+				RESOURCE_CACHE.invalidate(filename);
+				metrics.failure(Operation.FILE_INPUT_STREAM, iox);
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -89,6 +165,407 @@ public class ClasspathLoader {
 		return builder.toString();
 	}
 
+	/**
+	 * Reads the exact contents of the specified file. When the size of the
+	 * resource is known up front, it is read in bulk into an array of exactly
+	 * that size.
+	 * 
+	 * @param filename The name and path of the file to be referenced, relative to
+	 *                 the base directory.
+	 * @return The file's contents, or null if the file cannot be opened or read.
+	 */
+	public static byte[] fileBytes(String filename) {
+		if (BYTE_CACHE.isEnabled()) {
+			ByteBuffer contents = BYTE_CACHE.get(filename);
+			if (contents == null) {
+				return null;
+			}
+			byte[] bytes = new byte[contents.remaining()];
+			contents.get(bytes);
+			return bytes;
+		}
+		return readBytes(filename);
+	}
+
+	/**
+	 * Gets the exact contents of the specified file as a read-only buffer. When
+	 * the {@linkplain #byteCache() byte cache} is enabled, repeated calls return
+	 * views of the cached contents without reading or copying them again.
+	 * 
+	 * @param filename The name and path of the file to be referenced, relative to
+	 *                 the base directory.
+	 * @return A read-only buffer of the file's contents, or null if the file
+	 *         cannot be opened or read.
+	 */
+	public static ByteBuffer fileBuffer(String filename) {
+		return BYTE_CACHE.get(filename);
+	}
+
+	private static byte[] readBytes(String filename) {
+		ResourceByteCache.Loaded loaded = readLoaded(filename, false);
+		return (loaded != null ? loaded.bytes : null);
+	}
+
+	private static ResourceByteCache.Loaded readCacheable(String filename) {
+		return readLoaded(filename, BYTE_CACHE.isDeduplicating());
+	}
+
+	private static ResourceByteCache.Loaded readLoaded(String filename, boolean checksum) {
+		ClasspathMetrics metrics = ClasspathLoader.metrics;
+		if (metrics == ClasspathMetrics.NONE) {
+			return readUrlBytes(filename, checksum);
+		}
+		long start = System.nanoTime();
+		ResourceByteCache.Loaded loaded = readUrlBytes(filename, checksum);
+		metrics.operation(Operation.FILE_BYTES, System.nanoTime() - start, loaded != null);
+		if (loaded != null) {
+			metrics.bytesRead(Operation.FILE_BYTES, loaded.bytes.length);
+		}
+		return loaded;
+	}
+
+	/**
+	 * Reads a resource, optionally with its CRC32. The CRC of a jar entry is
+	 * taken from the jar's directory, other resources are checksummed as they
+	 * are read.
+	 */
+	private static ResourceByteCache.Loaded readUrlBytes(String filename, boolean checksum) {
+		URL url = RESOURCE_CACHE.resolve(filename);
+		if (url != null) {
+			try {
+				URLConnection connection = url.openConnection();
+				long length = connection.getContentLengthLong();
+				long crc = -1L;
+				if (checksum && connection instanceof JarURLConnection) {
+					JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+					crc = (entry != null ? entry.getCrc() : -1L);
+				}
+				try (InputStream is = connection.getInputStream()) {
+					if (checksum && crc < 0) {
+						CheckedInputStream checked = new CheckedInputStream(is, new CRC32());
+						byte[] bytes = Streams.readFully(checked, length);
+						return new ResourceByteCache.Loaded(bytes, checked.getChecksum().getValue());
+					}
+					return new ResourceByteCache.Loaded(Streams.readFully(is, length), crc);
+				}
+			} catch (IOException iox) {
+				RESOURCE_CACHE.invalidate(filename);
+				metrics.failure(Operation.FILE_BYTES, iox);
+				System.err.println("Exception occurred while reading the file '" + filename + "'");
+				iox.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the specified file and decodes it with the given {@code Charset}.
+	 * Unlike {@link #fileContents(String)}, line separators are preserved.
+	 * 
+	 * @param filename The name and path of the file to be referenced, relative to
+	 *                 the base directory.
+	 * @param charset  The {@code Charset} the file is encoded in.
+	 * @return A single {@code String} containing the file's contents, or an empty
+	 *         {@code String} if an error occurred or the file is empty.
+	 * @see ClasspathLoader#fileBytes(String)
+	 */
+	public static String fileContents(String filename, Charset charset) {
+		ByteBuffer contents = BYTE_CACHE.get(filename);
+		return (contents != null ? charset.decode(contents).toString() : "");
+	}
+
+	/**
+	 * Reads the exact contents of the specified file into a caller supplied
+	 * buffer, so repeated reads can reuse one buffer.
+	 * 
+	 * @param filename The name and path of the file to be referenced, relative to
+	 *                 the base directory.
+	 * @param dst      The buffer to read into. Its position is advanced past the
+	 *                 bytes read.
+	 * @return The number of bytes read, or {@code -1} if the file cannot be opened
+	 *         or read.
+	 * @throws BufferOverflowException If the file is larger than the space
+	 *                                 remaining in {@code dst}.
+	 */
+	public static int fileContents(String filename, ByteBuffer dst) {
+		if (BYTE_CACHE.isEnabled()) {
+			ByteBuffer contents = BYTE_CACHE.get(filename);
+			if (contents == null) {
+				return -1;
+			}
+			int length = contents.remaining();
+			dst.put(contents);
+			return length;
+		}
+		URL url = RESOURCE_CACHE.resolve(filename);
+		if (url != null) {
+			try {
+				URLConnection connection = url.openConnection();
+				// Getting the length connects, which may already have opened the stream
+				try (InputStream is = connection.getInputStream()) {
+					if (connection.getContentLengthLong() > dst.remaining()) {
+						throw new BufferOverflowException();
+					}
+					return Streams.readFully(is, dst);
+				}
+			} catch (IOException iox) {
+				RESOURCE_CACHE.invalidate(filename);
+				System.err.println("Exception occurred while reading the file '" + filename + "'");
+				iox.printStackTrace();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads the exact contents of many files at once, fanning the reads out over
+	 * the {@linkplain #getLoadExecutor() load executor}. Files that resolve into
+	 * the same archive are read through one open archive, in the order they are
+	 * stored.
+	 * 
+	 * @param filenames The names and paths of the files to be referenced, relative
+	 *                  to the base directory.
+	 * @return The contents of each file that could be read, keyed by name in the
+	 *         order the names were given. Files that cannot be opened or read are
+	 *         left out.
+	 * @see ClasspathLoader#fileBytes(String)
+	 */
+	public static Map<String, byte[]> fileBytes(Collection<String> filenames) {
+		return fileBytesAsync(filenames).join();
+	}
+
+	/**
+	 * Reads many files at once and decodes each with the given {@code Charset}.
+	 * 
+	 * @param filenames The names and paths of the files to be referenced, relative
+	 *                  to the base directory.
+	 * @param charset   The {@code Charset} the files are encoded in.
+	 * @return The contents of each file that could be read, keyed by name in the
+	 *         order the names were given. Files that cannot be opened or read are
+	 *         left out.
+	 * @see ClasspathLoader#fileBytes(Collection)
+	 */
+	public static Map<String, String> fileContents(Collection<String> filenames, Charset charset) {
+		return fileContentsAsync(filenames, charset).join();
+	}
+
+	/**
+	 * Starts reading many files at once without waiting for them.
+	 * 
+	 * @param filenames The names and paths of the files to be referenced, relative
+	 *                  to the base directory.
+	 * @return A future of the contents of each file that could be read.
+	 * @see ClasspathLoader#fileBytes(Collection)
+	 */
+	public static CompletableFuture<Map<String, byte[]>> fileBytesAsync(Collection<String> filenames) {
+		return ResourceBatch.load(filenames, bytes -> bytes, loadExecutor);
+	}
+
+	/**
+	 * Starts reading and decoding many files at once without waiting for them.
+	 * Each file is decoded on the thread that read it.
+	 * 
+	 * @param filenames The names and paths of the files to be referenced, relative
+	 *                  to the base directory.
+	 * @param charset   The {@code Charset} the files are encoded in.
+	 * @return A future of the contents of each file that could be read.
+	 * @see ClasspathLoader#fileContents(Collection, Charset)
+	 */
+	public static CompletableFuture<Map<String, String>> fileContentsAsync(Collection<String> filenames,
+			Charset charset) {
+		return ResourceBatch.load(filenames, bytes -> new String(bytes, charset), loadExecutor);
+	}
+
+	/**
+	 * Reads every file on the classpath whose name matches a glob.
+	 * 
+	 * @param pattern The glob to match, as accepted by {@link #list(String)}.
+	 * @return The contents of each matching file that could be read, keyed by
+	 *         name.
+	 * @see ClasspathLoader#fileBytes(Collection)
+	 */
+	public static Map<String, byte[]> fileBytesMatching(String pattern) {
+		return fileBytes(list(pattern).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Reads every file on the classpath whose name matches a glob and decodes
+	 * each with the given {@code Charset}.
+	 * 
+	 * @param pattern The glob to match, as accepted by {@link #list(String)}.
+	 * @param charset The {@code Charset} the files are encoded in.
+	 * @return The contents of each matching file that could be read, keyed by
+	 *         name.
+	 * @see ClasspathLoader#fileContents(Collection, Charset)
+	 */
+	public static Map<String, String> fileContentsMatching(String pattern, Charset charset) {
+		return fileContents(list(pattern).collect(Collectors.toList()), charset);
+	}
+
+	/**
+	 * Lists the files on the classpath whose names match a glob, such as
+	 * {@code "migrations/*.sql"} or {@code "templates/**"}. {@code *} matches
+	 * within a directory, {@code **} across directories, {@code ?} a single
+	 * character, {@code [abc]} a character class and {@code {a,b}} either
+	 * alternative. Directories themselves are not listed.
+	 * <br/>
+	 * Names are produced lazily, and only the part of the classpath under the
+	 * pattern's literal prefix, {@code "migrations/"} above, is looked at. With
+	 * a {@linkplain #setClasspathIndex(ClasspathIndex) classpath index} names
+	 * come from the index. Otherwise the roots holding the prefix's directory
+	 * are found through the class loader, so archives are only searched if they
+	 * have an entry for that directory, and a parallel stream splits the work
+	 * across those roots.
+	 * 
+	 * @param pattern The glob to match against resource names.
+	 * @return A stream of the matching names, each listed once. Close it, or
+	 *         consume it fully, to release any open directories.
+	 * @throws IllegalArgumentException If the pattern has an unterminated group.
+	 */
+	public static Stream<String> list(String pattern) {
+		return ResourceListing.list(ResourcePattern.compile(pattern), classpathIndex);
+	}
+
+	/**
+	 * Lists the entries of a zip archive on the classpath whose names match a
+	 * glob, as accepted by {@link #list(String)}. The archive's entries are kept
+	 * sorted by name, so only the entries under the pattern's literal prefix are
+	 * looked at.
+	 * 
+	 * @param zipFileName The classpath name of the zip archive.
+	 * @param pattern     The glob to match against entry names.
+	 * @return A stream of the matching entry names, or an empty stream if the
+	 *         archive could not be found or read.
+	 * @see ClasspathLoader#mappedZip(String)
+	 */
+	public static Stream<String> zipEntries(String zipFileName, String pattern) {
+		ResourcePattern compiled = ResourcePattern.compile(pattern);
+		MappedZipArchive archive = mappedZip(zipFileName);
+		return (archive != null ? ResourceListing.entries(archive, compiled) : Stream.empty());
+	}
+
+	/**
+	 * Extracts every entry of a zip archive on the classpath whose name matches
+	 * a glob, as accepted by {@link #list(String)}, such as {@code "folder/**"}.
+	 * Directories are left out.
+	 * <br/>
+	 * The calling thread reads the archive once from front to back, in the
+	 * order the entries are laid out, while the entries are inflated and handed
+	 * to the sink in parallel on the {@linkplain #getLoadExecutor() load
+	 * executor}. Reading pauses while the entries waiting to be inflated or
+	 * stored would take more than {@link #getExtractBufferBytes()}, so a slow
+	 * sink holds the extraction back instead of filling memory.
+	 * <br/>
+	 * Entries that fail to inflate or to be stored are reported and skipped.
+	 * 
+	 * @param zipFileName The classpath name of the zip archive.
+	 * @param pattern     The glob to match against entry names.
+	 * @param sink        Receives the contents of each entry, from several
+	 *                    threads at once.
+	 * @return The number of entries handed to the sink, or {@code -1} if the
+	 *         archive could not be found or read.
+	 * @see ZipEntrySink#toDirectory(File)
+	 * @see ZipEntrySink#toMap(Map)
+	 */
+	public static long zipExtract(String zipFileName, String pattern, ZipEntrySink sink) {
+		ResourcePattern compiled = ResourcePattern.compile(pattern);
+		MappedZipArchive archive = mappedZip(zipFileName);
+		if (archive == null) {
+			metrics.operation(Operation.ZIP_EXTRACT, 0L, false);
+			return -1L;
+		}
+		return ZipExtractor.extract(archive, compiled, sink, loadExecutor, extractBufferBytes);
+	}
+
+	/**
+	 * @return The most bytes {@code zipExtract} holds in entries that have been
+	 *         read but not yet stored, compressed and inflated.
+	 */
+	public static long getExtractBufferBytes() {
+		return extractBufferBytes;
+	}
+
+	/**
+	 * Sets the most bytes {@code zipExtract} holds in entries that have been
+	 * read but not yet stored. An entry larger than the limit is still
+	 * extracted, on its own.
+	 * 
+	 * @param bytes The new limit, must be positive.
+	 */
+	public static void setExtractBufferBytes(long bytes) {
+		if (bytes <= 0) {
+			throw new IllegalArgumentException("bytes must be positive");
+		}
+		extractBufferBytes = bytes;
+	}
+
+	/**
+	 * Reads the exact contents of the specified file without blocking the
+	 * calling thread. Plain files are read with an
+	 * {@code AsynchronousFileChannel}, other resources on the
+	 * {@linkplain #asyncReader() async reader}'s I/O threads.
+	 * 
+	 * @param filename The name and path of the file to be referenced, relative to
+	 *                 the base directory.
+	 * @return A future of a buffer holding the file's contents, completed with
+	 *         null if the file cannot be found or read, or exceptionally if
+	 *         reading a plain file fails or the
+	 *         {@linkplain AsyncReader#getMaxPending() queue of reads} is full.
+	 * @see ClasspathLoader#fileBytes(String)
+	 */
+	public static CompletableFuture<ByteBuffer> readAsync(String filename) {
+		return ASYNC_READER.read(filename);
+	}
+
+	/**
+	 * Reads a file within a zip archive on the classpath without blocking the
+	 * calling thread.
+	 * 
+	 * @param zipFileName       The classpath name of the zip archive.
+	 * @param fileWithinArchive The name of the entry within the archive.
+	 * @return A future of a buffer holding the entry's contents, completed with
+	 *         null if the archive or the entry could not be found or read, or
+	 *         exceptionally if the {@linkplain AsyncReader#getMaxPending() queue
+	 *         of reads} is full.
+	 * @see ClasspathLoader#zipFileBytes(String, String)
+	 */
+	public static CompletableFuture<ByteBuffer> zipEntryAsync(String zipFileName, String fileWithinArchive) {
+		return ASYNC_READER.readZipEntry(zipFileName, fileWithinArchive);
+	}
+
+	/**
+	 * Reads the specified file in chunks without blocking the calling thread,
+	 * for resources too large to hold in memory at once. Each chunk is handed to
+	 * {@code consumer} in order, and the next chunk is only read once the stage
+	 * the consumer returned completes, so a slow consumer slows the read down
+	 * instead of buffering the file. A null stage asks for the next chunk
+	 * right away.
+	 * <br/>
+	 * The consumer is called on an I/O thread and should not block.
+	 * 
+	 * @param filename  The name and path of the file to be referenced, relative
+	 *                  to the base directory.
+	 * @param chunkSize The most bytes handed over in one chunk.
+	 * @param consumer  Receives each chunk, which it may keep.
+	 * @return A future of the total number of bytes read, {@code -1} if the file
+	 *         cannot be found. It completes exceptionally if reading fails, the
+	 *         consumer fails, or the {@linkplain AsyncReader#getMaxPending()
+	 *         queue of reads} is full.
+	 */
+	public static CompletableFuture<Long> readChunkedAsync(String filename, int chunkSize,
+			Function<? super ByteBuffer, ? extends CompletionStage<?>> consumer) {
+		return ASYNC_READER.readChunked(filename, chunkSize, consumer);
+	}
+
+	/**
+	 * Opens a zip archive on the classpath as a {@code ZipFile}. A
+	 * {@code ZipFile} can only be opened on a file on disk, use
+	 * {@link #mappedZip(String)} for archives that are entries of a jar.
+	 * 
+	 * @param zipFileName The classpath name of the zip archive.
+	 * @return A new {@code ZipFile} that the caller must close, or null if the
+	 *         archive is not a plain file or could not be opened.
+	 */
 	public static ZipFile zip(String zipFileName) {
 		File fileReference = fileReference(zipFileName);
 		try {
@@ -104,16 +581,41 @@ public class ClasspathLoader {
 		return null;
 	}
 
+	/**
+	 * Opens a stream for a file within a zip archive on the classpath. The
+	 * archive is opened through the shared {@link ZipFileCache}, so repeated reads
+	 * from the same archive reuse one {@code ZipFile}. Closing the returned stream
+	 * releases its hold on the archive. Archives that are entries of a jar are
+	 * read through {@link #mappedZip(String)} instead.
+	 * 
+	 * @param zipFileName       The classpath name of the zip archive.
+	 * @param fileWithinArchive The name of the entry within the archive.
+	 * @return An {@code InputStream} for the entry, or null if the archive or the
+	 *         entry could not be found or read.
+	 * @see ClasspathLoader#zipFileCache()
+	 */
 	public static InputStream zipFileInputStream(String zipFileName, String fileWithinArchive) {
+		ClasspathMetrics metrics = ClasspathLoader.metrics;
+		if (metrics == ClasspathMetrics.NONE) {
+			return openZipEntry(zipFileName, fileWithinArchive);
+		}
+		long start = System.nanoTime();
+		InputStream is = openZipEntry(zipFileName, fileWithinArchive);
+		metrics.operation(Operation.ZIP_FILE_INPUT_STREAM, System.nanoTime() - start, is != null);
+		return (is != null ? new MeteredInputStream(is, metrics, Operation.ZIP_FILE_INPUT_STREAM) : null);
+	}
+
+	private static InputStream openZipEntry(String zipFileName, String fileWithinArchive) {
 		try {
 			File fileReference = fileReference(zipFileName);
-			if (fileReference != null) {
-				ZipFile zipFile = zip(zipFileName);
-				return (zipFile != null ? zipFile.getInputStream(zipFile.getEntry(fileWithinArchive)) : null);
-			} else {
-				System.err.println("Failed to get a File reference to the file '" + zipFileName + "'");
+			if (fileReference != null && zipReaderMode == ZipReaderMode.ZIP_FILE) {
+				return ZIP_FILE_CACHE.entryInputStream(fileReference, fileWithinArchive);
 			}
+			// Archives nested within a jar are always read through a mapped view
+			MappedZipArchive archive = mappedZip(zipFileName);
+			return (archive != null ? archive.entryInputStream(fileWithinArchive) : null);
 		} catch (IOException iox) {
+			metrics.failure(Operation.ZIP_FILE_INPUT_STREAM, iox);
 			System.err.println("Exception occurred while reading the ZipFile");
 			iox.printStackTrace();
 		}
@@ -126,16 +628,357 @@ public class ClasspathLoader {
 		return (is != null ? wrapInBufferedReader(is) : null);
 	}
 
+	/**
+	 * Reads the exact contents of a file within a zip archive on the classpath,
+	 * sized from the entry's recorded size.
+	 * 
+	 * @param zipFileName       The classpath name of the zip archive.
+	 * @param fileWithinArchive The name of the entry within the archive.
+	 * @return The entry's contents, or null if the archive or the entry could not
+	 *         be found or read.
+	 */
+	public static byte[] zipFileBytes(String zipFileName, String fileWithinArchive) {
+		ClasspathMetrics metrics = ClasspathLoader.metrics;
+		if (metrics == ClasspathMetrics.NONE) {
+			return readZipEntry(zipFileName, fileWithinArchive);
+		}
+		long start = System.nanoTime();
+		byte[] bytes = readZipEntry(zipFileName, fileWithinArchive);
+		metrics.operation(Operation.ZIP_FILE_BYTES, System.nanoTime() - start, bytes != null);
+		if (bytes != null) {
+			metrics.bytesRead(Operation.ZIP_FILE_BYTES, bytes.length);
+		}
+		return bytes;
+	}
+
+	private static byte[] readZipEntry(String zipFileName, String fileWithinArchive) {
+		try {
+			File fileReference = fileReference(zipFileName);
+			if (fileReference != null && zipReaderMode == ZipReaderMode.ZIP_FILE) {
+				return ZIP_FILE_CACHE.entryBytes(fileReference, fileWithinArchive);
+			}
+			ByteBuffer buffer = zipFileBuffer(zipFileName, fileWithinArchive);
+			if (buffer == null) {
+				return null;
+			}
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			return bytes;
+		} catch (IOException iox) {
+			metrics.failure(Operation.ZIP_FILE_BYTES, iox);
+			System.err.println("Exception occurred while reading the ZipFile");
+			iox.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets a memory mapped view of a zip archive on the classpath. The archive's
+	 * central directory is parsed the first time it is requested and the view is
+	 * shared by later calls, until the archive changes on disk or is evicted from
+	 * {@link #mappedZipCache()}.
+	 * <br/>
+	 * The archive may itself be an entry of a jar on the classpath. It is then
+	 * opened without being extracted to disk: a stored archive is read in place
+	 * from the jar's mapping, and a compressed one is inflated into memory once.
+	 * 
+	 * @see MappedZipArchive#nestedArchive(String)
+	 * 
+	 * @param zipFileName The classpath name of the zip archive.
+	 * @return A view of the archive, or null if the archive could not be found,
+	 *         mapped, or parsed.
+	 */
+	public static MappedZipArchive mappedZip(String zipFileName) {
+		URL url = RESOURCE_CACHE.resolve(zipFileName);
+		if (url == null) {
+			System.err.println("Failed to get a File reference to the file '" + zipFileName + "'");
+			return null;
+		}
+		File fileReference = toFile(url, zipFileName);
+		return (fileReference != null ? mappedZip(fileReference) : nestedZip(url, zipFileName));
+	}
+
+	static MappedZipArchive mappedZip(File fileReference) {
+		try {
+			return MAPPED_ZIP_CACHE.get(fileReference);
+		} catch (ZipException zx) {
+			System.err.println("Exception occurred parsing the mapped zip archive");
+			zx.printStackTrace();
+		} catch (IOException iox) {
+			System.err.println("Exception occurred while mapping the zip archive");
+			iox.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Opens an archive that is itself an entry of a jar, such as a library
+	 * inside an application jar, by walking each {@code !/} of its URL down from
+	 * the outer archive on disk.
+	 */
+	private static MappedZipArchive nestedZip(URL url, String zipFileName) {
+		String[] path = url.getPath().split("!/");
+		if (!"jar".equals(url.getProtocol()) || path.length < 2 || !path[0].startsWith("file:")) {
+			System.err.println("Unsupported location '" + url + "' for the zip archive '" + zipFileName + "'");
+			return null;
+		}
+		try {
+			URL outer = new URL(path[0]);
+			File outerFile = new File(outer.toURI()).getCanonicalFile();
+			MappedZipArchive archive = MAPPED_ZIP_CACHE.get(url.toExternalForm(), outerFile, () -> {
+				MappedZipArchive nested = MAPPED_ZIP_CACHE.get(outerFile);
+				for (int i = 1; nested != null && i < path.length; i++) {
+					nested = nested.nestedArchive(ClasspathIndex.decodePath(path[i]));
+				}
+				return nested;
+			});
+			if (archive != null) {
+				return archive;
+			}
+			System.err.println("Failed to find the nested zip archive '" + zipFileName + "'");
+		} catch (ZipException zx) {
+			System.err.println("Exception occurred parsing the nested zip archive '" + zipFileName + "'");
+			zx.printStackTrace();
+		} catch (IOException | URISyntaxException | IllegalArgumentException ex) {
+			System.err.println("Failed to open the nested zip archive '" + zipFileName + "'");
+			ex.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the contents of a file within a zip archive on the classpath as a
+	 * buffer. Stored entries are returned without copying.
+	 * 
+	 * @param zipFileName       The classpath name of the zip archive.
+	 * @param fileWithinArchive The name of the entry within the archive.
+	 * @return A read-only buffer holding the entry's contents, or null if the
+	 *         archive or the entry could not be found or read.
+	 * @see MappedZipArchive#entryBuffer(String)
+	 */
+	public static ByteBuffer zipFileBuffer(String zipFileName, String fileWithinArchive) {
+		MappedZipArchive archive = mappedZip(zipFileName);
+		if (archive != null) {
+			try {
+				return archive.entryBuffer(fileWithinArchive);
+			} catch (ZipException zx) {
+				System.err.println("Exception occurred while reading the mapped zip archive");
+				zx.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks every entry of a zip archive on the classpath against the size
+	 * and CRC32 recorded for it, to find archives damaged on disk or in
+	 * transit. Every entry is read and inflated.
+	 * 
+	 * @param zipFileName The classpath name of the zip archive.
+	 * @return The names of the entries that are corrupted, empty if the archive
+	 *         is intact, or null if the archive could not be found or read.
+	 * @see MappedZipArchive#verify()
+	 * @see ResourceByteCache#verify()
+	 */
+	public static List<String> verifyZip(String zipFileName) {
+		MappedZipArchive archive = mappedZip(zipFileName);
+		return (archive != null ? archive.verify() : null);
+	}
+
+	/**
+	 * @return How {@code zipFileInputStream} reads archives.
+	 */
+	public static ZipReaderMode getZipReaderMode() {
+		return zipReaderMode;
+	}
+
+	/**
+	 * Sets how {@code zipFileInputStream} and {@code zipFileBufferedReader} read
+	 * archives.
+	 * 
+	 * @param mode The reader mode to use, defaults to
+	 *             {@link ZipReaderMode#ZIP_FILE}.
+	 */
+	public static void setZipReaderMode(ZipReaderMode mode) {
+		zipReaderMode = (mode != null ? mode : ZipReaderMode.ZIP_FILE);
+	}
+
+	/**
+	 * @return The receiver of loading measurements, {@link ClasspathMetrics#NONE}
+	 *         unless one was set.
+	 */
+	public static ClasspathMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the receiver of loading measurements. With
+	 * {@link ClasspathMetrics#NONE}, the default, nothing is timed or counted.
+	 * The new receiver is told the current number of open {@code ZipFile}
+	 * handles right away.
+	 * 
+	 * @param metrics The receiver to use, or null to stop collecting.
+	 * @see MetricsRecorder
+	 */
+	public static void setMetrics(ClasspathMetrics metrics) {
+		ClasspathLoader.metrics = (metrics != null ? metrics : ClasspathMetrics.NONE);
+		ClasspathLoader.metrics.openZipFiles(ZIP_FILE_CACHE.openCount());
+	}
+
+	/**
+	 * @return The executor the bulk {@code fileBytes} and {@code fileContents}
+	 *         methods read on.
+	 */
+	public static Executor getLoadExecutor() {
+		return loadExecutor;
+	}
+
+	/**
+	 * Sets the executor the bulk {@code fileBytes} and {@code fileContents}
+	 * methods read on. Reads block on I/O, so an executor that can run several
+	 * reads per core works best.
+	 * 
+	 * @param executor The executor to use, or null to go back to the default:
+	 *                 a virtual thread per task when the JDK has them, otherwise
+	 *                 the common {@code ForkJoinPool}.
+	 */
+	public static void setLoadExecutor(Executor executor) {
+		loadExecutor = (executor != null ? executor : ResourceBatch.defaultExecutor());
+	}
+
+	/**
+	 * @return The index consulted for resource lookups, or null if lookups go to
+	 *         the class loader.
+	 */
+	public static ClasspathIndex getClasspathIndex() {
+		return classpathIndex;
+	}
+
+	/**
+	 * Sets an index to answer resource lookups instead of the class loader. The
+	 * index is authoritative: resources that aren't in it are treated as missing.
+	 * 
+	 * @param index The index to use, or null to go back to class loader lookups.
+	 * @see ClasspathIndex#loadOrBuild(File)
+	 */
+	public static void setClasspathIndex(ClasspathIndex index) {
+		classpathIndex = index;
+		RESOURCE_CACHE.invalidateAll();
+		BYTE_CACHE.invalidateAll();
+		MAPPED_ZIP_CACHE.invalidateAll();
+	}
+
+	/**
+	 * @return Where resources are looked up when no classpath index is set.
+	 */
+	public static ResourceSource getResourceSource() {
+		return resourceSource;
+	}
+
+	/**
+	 * Sets where resources are looked up, such as a directory overlay chained
+	 * in front of the class loader. A {@linkplain ClasspathIndex classpath
+	 * index}, when set, still takes precedence. Lookups through the source are
+	 * cached by {@link #resourceCache()}, including those of a
+	 * {@link ResourceChain}, which is walked directly rather than through its
+	 * own cache. {@link #list(String)} still lists what the class loader has.
+	 * 
+	 * @param source The source to use, or null to go back to the class loader
+	 *               that loaded this class.
+	 * @see ResourceSource#chain(ResourceSource...)
+	 */
+	public static void setResourceSource(ResourceSource source) {
+		resourceSource = (source != null ? source : defaultResourceSource());
+		RESOURCE_CACHE.invalidateAll();
+		BYTE_CACHE.invalidateAll();
+		MAPPED_ZIP_CACHE.invalidateAll();
+	}
+
+	/**
+	 * @return The cache of resource name to {@code URL} resolutions used by
+	 *         {@code fileInputStream} and {@code fileReference}.
+	 */
+	public static ResourceLookupCache resourceCache() {
+		return RESOURCE_CACHE;
+	}
+
+	/**
+	 * @return The cache of resource contents used by {@code fileBytes},
+	 *         {@code fileContents}, {@code fileInputStream} and
+	 *         {@code fileBuffer}. It is disabled by default.
+	 */
+	public static ResourceByteCache byteCache() {
+		return BYTE_CACHE;
+	}
+
+	/**
+	 * @return The shared cache of memory mapped archives used by
+	 *         {@code mappedZip}, {@code zipFileBuffer} and the
+	 *         {@linkplain ZipReaderMode#MAPPED mapped} reader mode.
+	 */
+	public static MappedZipCache mappedZipCache() {
+		return MAPPED_ZIP_CACHE;
+	}
+
+	/**
+	 * @return The reader behind {@code readAsync}, {@code zipEntryAsync} and
+	 *         {@code readChunkedAsync}, for tuning its limits.
+	 */
+	public static AsyncReader asyncReader() {
+		return ASYNC_READER;
+	}
+
+	/**
+	 * @return The shared cache of open archives used by
+	 *         {@code zipFileInputStream} and {@code zipFileBufferedReader}.
+	 */
+	public static ZipFileCache zipFileCache() {
+		return ZIP_FILE_CACHE;
+	}
+
+	/**
+	 * Gets a {@code File} for a resource on the classpath.
+	 * 
+	 * @param filename The name and path of the file to be referenced, relative to
+	 *                 the base directory.
+	 * @return A {@code File} for the resource, or null if the resource does not
+	 *         exist or isn't a plain file, such as an entry of a jar.
+	 */
 	public static File fileReference(String filename) {
+		URL url = RESOURCE_CACHE.resolve(filename);
+		return (url != null ? toFile(url, filename) : null);
+	}
+
+	private static File toFile(URL url, String filename) {
+		if (!"file".equals(url.getProtocol())) {
+			return null;
+		}
 		try {
-			return new File(ClasspathLoader.class.getClassLoader().getResource(filename).toURI());
-		} catch (URISyntaxException usx) {
+			return new File(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException ex) {
 			System.err.println("Failed to get URI for file: '" + filename + "'");
-			usx.printStackTrace();
+			ex.printStackTrace();
 		}
 		return null;
 	}
 
+	private static URL findResource(String filename) {
+		ClasspathIndex index = classpathIndex;
+		if (index != null) {
+			ClasspathIndex.Location location = index.find(filename);
+			return (location != null ? location.toURL() : null);
+		}
+		ResourceSource source = resourceSource;
+		if (source instanceof ResourceChain) {
+			return ((ResourceChain) source).resolve(filename);
+		}
+		return source.find(filename);
+	}
+
+	private static ResourceSource defaultResourceSource() {
+		return ResourceSource.classLoader(ClasspathLoader.class.getClassLoader());
+	}
+
 	private static InputStreamReader wrapInputStreamInReader(InputStream resourceAsStream) {
 		return resourceAsStream != null ? new InputStreamReader(resourceAsStream) : null;
 	}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+/**
+ * Receives measurements of resource loading, so where time goes can be found
+ * without attaching a profiler. Every method does nothing by default, so an
+ * implementation only overrides what it is interested in.
+ * <br/>
+ * Implementations are called on the threads doing the loading, often while
+ * other threads are doing the same, and must be thread safe and cheap. Set one
+ * with {@link ClasspathLoader#setMetrics(ClasspathMetrics)}. While
+ * {@link #NONE} is set, operations skip taking timestamps and wrapping streams
+ * altogether.
+ *
+ * @see MetricsRecorder
+ */
+public interface ClasspathMetrics {
+	/**
+	 * Discards all measurements.
+	 */
+	ClasspathMetrics NONE = new ClasspathMetrics() {
+	};
+
+	/**
+	 * The operations that are timed.
+	 */
+	enum Operation {
+		/**
+		 * {@link ClasspathLoader#fileInputStream(String)}, timed until the stream is
+		 * open. Bytes are counted as the stream is read and reported when it is
+		 * closed.
+		 */
+		FILE_INPUT_STREAM("fileInputStream"),
+		/**
+		 * Reads of a whole resource, by {@code fileBytes}, {@code fileContents} or
+		 * {@code fileBuffer}. Reads answered by the {@linkplain ResourceByteCache
+		 * byte cache} are only counted as cache hits.
+		 */
+		FILE_BYTES("fileBytes"),
+		/**
+		 * {@link ClasspathLoader#zipFileInputStream(String, String)}, timed until the
+		 * stream is open. Bytes are reported when the stream is closed.
+		 */
+		ZIP_FILE_INPUT_STREAM("zipFileInputStream"),
+		/**
+		 * {@link ClasspathLoader#zipFileBytes(String, String)}.
+		 */
+		ZIP_FILE_BYTES("zipFileBytes"),
+		/**
+		 * {@link ClasspathLoader#zipExtract(String, String, ZipEntrySink)}, timed
+		 * for the whole extraction. Bytes are counted as they are inflated.
+		 */
+		ZIP_EXTRACT("zipExtract"),
+		/**
+		 * Loads and reloads of {@link ClasspathProperties}.
+		 */
+		PROPERTIES_LOAD("propertiesLoad");
+
+		private final String displayName;
+
+		Operation(String displayName) {
+			this.displayName = displayName;
+		}
+
+		@Override
+		public String toString() {
+			return displayName;
+		}
+	}
+
+	/**
+	 * The caches that report hits and misses.
+	 */
+	enum Cache {
+		/**
+		 * {@link ClasspathLoader#resourceCache()}, resource name to {@code URL}.
+		 */
+		RESOURCE_LOOKUP,
+		/**
+		 * {@link ClasspathLoader#byteCache()}, resource name to contents.
+		 */
+		RESOURCE_BYTES,
+		/**
+		 * {@link ClasspathLoader#zipFileCache()}, archive to open {@code ZipFile}.
+		 */
+		ZIP_FILE,
+		/**
+		 * {@link ClasspathLoader#mappedZipCache()}, archive to mapped view.
+		 */
+		MAPPED_ZIP
+	}
+
+	/**
+	 * Called once an operation finishes.
+	 *
+	 * @param operation    The operation.
+	 * @param elapsedNanos How long the operation took.
+	 * @param found        Whether or not the resource was found and read.
+	 */
+	default void operation(Operation operation, long elapsedNanos, boolean found) {
+	}
+
+	/**
+	 * Called with the number of bytes an operation read.
+	 *
+	 * @param operation The operation.
+	 * @param bytes     The number of bytes read.
+	 */
+	default void bytesRead(Operation operation, long bytes) {
+	}
+
+	/**
+	 * Called when an operation fails with an exception, alongside the usual
+	 * report on {@code System.err}.
+	 *
+	 * @param operation The operation.
+	 * @param error     The exception it failed with.
+	 */
+	default void failure(Operation operation, Throwable error) {
+	}
+
+	/**
+	 * Called when a cache answers a lookup.
+	 *
+	 * @param cache The cache.
+	 */
+	default void cacheHit(Cache cache) {
+	}
+
+	/**
+	 * Called when a cache has to load what was looked up.
+	 *
+	 * @param cache The cache.
+	 */
+	default void cacheMiss(Cache cache) {
+	}
+
+	/**
+	 * Called when the number of open {@code ZipFile} handles held by the
+	 * {@link ZipFileCache} changes.
+	 *
+	 * @param open The number of handles now open.
+	 */
+	default void openZipFiles(int open) {
+	}
+
+	/**
+	 * Called when a typed getter of {@link ClasspathProperties} can't parse a
+	 * value. Each value is parsed once per type, so a value that is read over and
+	 * over is reported once.
+	 *
+	 * @param type The type the value was parsed as.
+	 */
+	default void parseFailure(Class<?> type) {
+	}
+}
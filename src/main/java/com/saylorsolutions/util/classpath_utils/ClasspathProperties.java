@@ -15,16 +15,62 @@
  ******************************************************************************/
 package com.saylorsolutions.util.classpath_utils;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Operation;
 
 /**
  * Provides read-only view of a classpath properties file, as well as
  * convenience methods for common parsing operations on retrieval.
+ * <br/>
+ * Values are served from an immutable hash table, so reads never lock.
+ * Typed values are parsed once per key and type, and the result is remembered,
+ * including values that could not be parsed. {@link #TRUTHY} and
+ * {@link #FALSY} are consulted the first time a key is read as a boolean.
+ * <br/>
+ * Values can be reloaded with {@link #reload()}, or automatically with
+ * {@link #enableReloading(long)}. A reload swaps in a complete new set of
+ * values at once.
+ * <br/>
+ * Very large files can be opened with {@link #lazy(String)}, which indexes the
+ * file instead of loading every key and value up front.
+ * <br/>
+ * When a snapshot compiled by {@link PropertiesCompiler} sits next to the
+ * resource and matches it, the snapshot is opened instead of parsing the text.
+ * <br/>
+ * Configuration assembled from several resources can be opened with
+ * {@link #layered(String...)}. The layers are flattened into one table when
+ * they are loaded, so a read is a single lookup however many layers there are.
+ * <br/>
+ * Placeholders such as {@code ${other.key}} and {@code ${env:VAR:-default}}
+ * are resolved once {@link #setInterpolating(boolean)} is turned on.
+ * <br/>
+ * Hot paths can {@linkplain #bind(Class) bind} an interface instead of reading
+ * keys by name, so values are converted and checked once per load rather than
+ * on every read.
  *
  * @author doug
  */
@@ -32,27 +78,405 @@ public class ClasspathProperties {
 	public static String[] TRUTHY = { "true", "t", "yes", "y", "1" };
 	public static String[] FALSY = { "false", "f", "no", "n", "0" };
 
-	private Properties props;
+	private final String[] layers;
+	private final boolean lazy;
+	private volatile Snapshot snapshot;
+	private final ConcurrentMap<String, List<ChangeListener>> listeners = new ConcurrentHashMap<>();
+	private File[] watchedFiles;
+	private ScheduledFuture<?> watch;
 	private boolean showStacktraces = false;
+	private boolean interpolating = false;
+	private final Map<Class<?>, PropertyBinding<?>> bindings = new ConcurrentHashMap<>();
+
+	/**
+	 * Notified when a reload changes the value of a key.
+	 *
+	 * @see ClasspathProperties#addChangeListener(String, ChangeListener)
+	 */
+	public interface ChangeListener {
+		/**
+		 * @param key      The key whose value changed.
+		 * @param oldValue The previous value, or {@code ""} if the key was added.
+		 * @param newValue The new value, or {@code ""} if the key was removed.
+		 */
+		void propertyChanged(String key, String oldValue, String newValue);
+	}
+
+	/**
+	 * Names the key read by a method of a {@linkplain ClasspathProperties#bind(Class)
+	 * bound} interface. Without it the key is derived from the method name.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface Key {
+		String value();
+	}
+
+	/**
+	 * The value used by a method of a {@linkplain ClasspathProperties#bind(Class)
+	 * bound} interface when its key is missing. Without it a missing key fails
+	 * the binding.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface Default {
+		String value();
+	}
 
 	/**
 	 * Initialize an object with a given named resource.
 	 * @param resourceName The filename on the classpath to use as a source for properties information.
 	 */
 	public ClasspathProperties(String resourceName) {
-		InputStream is = ClasspathLoader.fileInputStream(resourceName);
-		this.props = new Properties();
+		this(new String[] { resourceName }, false);
+	}
+
+	private ClasspathProperties(String[] layers, boolean lazy) {
+		this.layers = layers;
+		this.lazy = lazy;
+		Snapshot loaded = loadSnapshot(null);
+		this.snapshot = (loaded != null ? loaded : Snapshot.empty(layers.length));
+	}
+
+	/**
+	 * Opens a properties resource without loading it. The resource is scanned
+	 * once to index where each key is, and keys and values are only decoded the
+	 * first time they are read, so memory use stays close to the size of the
+	 * index no matter how many entries are never read. This holds with
+	 * {@linkplain #setInterpolating(boolean) interpolation} too, which resolves
+	 * each value when it is first read.
+	 * <br/>
+	 * When the resource is a plain file it is memory mapped rather than read. A
+	 * mapped file should be replaced rather than rewritten in place while it is
+	 * in use.
+	 * @param resourceName The filename on the classpath to use as a source for properties information.
+	 * @return Properties backed by an index of the resource.
+	 */
+	public static ClasspathProperties lazy(String resourceName) {
+		return new ClasspathProperties(new String[] { resourceName }, true);
+	}
+
+	/**
+	 * Opens several properties resources as one, such as defaults followed by
+	 * environment and host overrides. Keys in later resources override the same
+	 * keys in earlier ones. The resources are read in parallel on the
+	 * {@linkplain ClasspathLoader#getLoadExecutor() load executor} and flattened
+	 * into a single table, so reads cost the same as with one resource.
+	 * <br/>
+	 * Resources that don't exist are treated as empty, so optional overrides can
+	 * be listed whether or not they are present.
+	 * @param resourceNames The filenames on the classpath, from lowest to highest precedence.
+	 * @return Properties backed by all of the resources.
+	 * @see ClasspathProperties#getPropertySource(String)
+	 */
+	public static ClasspathProperties layered(String... resourceNames) {
+		if (resourceNames.length == 0) {
+			throw new IllegalArgumentException("At least one resource name is required");
+		}
+		return new ClasspathProperties(resourceNames.clone(), false);
+	}
+
+	/**
+	 * Re-reads the backing resource and atomically replaces the values served by
+	 * this object. Readers are never blocked and never see a partially loaded
+	 * set of values. Listeners of keys whose values changed are notified on the
+	 * calling thread.
+	 * @return Whether or not the resource could be read. The current values are kept if it couldn't.
+	 */
+	public boolean reload() {
+		File[] files;
+		synchronized (this) {
+			files = watchedFiles;
+		}
+		Snapshot next = loadSnapshot(files);
+		if (next == null) {
+			return false;
+		}
+
+		Snapshot previous;
+		synchronized (this) {
+			if (next.interpolated != interpolating) {
+				// Interpolation was switched while the resource was being read
+				next = next.withInterpolation(interpolating);
+			}
+			previous = snapshot;
+			snapshot = next;
+			rebind(next);
+		}
+		for (Map.Entry<String, List<ChangeListener>> entry : listeners.entrySet()) {
+			String key = entry.getKey();
+			String oldValue = previous.getProperty(key);
+			String newValue = next.getProperty(key);
+			if (!oldValue.equals(newValue)) {
+				for (ChangeListener listener : entry.getValue()) {
+					try {
+						listener.propertyChanged(key, oldValue, newValue);
+					} catch (RuntimeException rx) {
+						System.err.println(this.getClass().getSimpleName() + ": Change listener for '" + key + "' failed");
+						rx.printStackTrace();
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Starts watching the backing resource for changes, reloading it when it
+	 * changes. Only resources that resolve to a plain file can be watched. The
+	 * file is polled for changes to its modification time or size on a shared
+	 * daemon thread, reads are as cheap as they are without watching.
+	 * <br/>
+	 * Of layered properties, the layers that are plain files are watched and a
+	 * change to any of them reloads all layers.
+	 * @param pollIntervalMillis How often to check the file for changes.
+	 * @return Whether or not the resource could be watched.
+	 * @see ClasspathProperties#reload()
+	 */
+	public synchronized boolean enableReloading(long pollIntervalMillis) {
+		if (pollIntervalMillis <= 0) {
+			throw new IllegalArgumentException("pollIntervalMillis must be positive");
+		}
+		disableReloading();
+		File[] files = new File[layers.length];
+		boolean watchable = false;
+		for (int i = 0; i < layers.length; i++) {
+			files[i] = resourceFile(layers[i]);
+			watchable |= (files[i] != null);
+		}
+		if (!watchable) {
+			System.err.println(this.getClass().getSimpleName() + ": Classpath resource '" + String.join("', '", layers)
+					+ "' is not a plain file and can't be watched");
+			return false;
+		}
+		watchedFiles = files;
+		watch = PropertiesWatcher.watch(this, files, pollIntervalMillis);
+		return true;
+	}
+
+	/**
+	 * Stops watching the backing resource for changes.
+	 */
+	public synchronized void disableReloading() {
+		if (watch != null) {
+			watch.cancel(false);
+			watch = null;
+		}
+		watchedFiles = null;
+	}
+
+	/**
+	 * @return Whether or not the backing resource is being watched for changes.
+	 */
+	public synchronized boolean isReloading() {
+		return watch != null;
+	}
+
+	/**
+	 * Registers a listener to be notified when a reload changes the value of a
+	 * key.
+	 * @param key The key to listen to.
+	 * @param listener The listener to notify.
+	 */
+	public void addChangeListener(String key, ChangeListener listener) {
+		listeners.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(listener);
+	}
+
+	/**
+	 * Removes a listener registered with {@link #addChangeListener(String, ChangeListener)}.
+	 * @param key The key the listener was registered for.
+	 * @param listener The listener to remove.
+	 */
+	public void removeChangeListener(String key, ChangeListener listener) {
+		List<ChangeListener> keyListeners = listeners.get(key);
+		if (keyListeners != null) {
+			keyListeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Reads the backing resources, or the given files of the layers that are
+	 * being watched.
+	 * @return The loaded values, or null if they couldn't be read.
+	 */
+	private Snapshot loadSnapshot(File[] files) {
+		ClasspathMetrics metrics = ClasspathLoader.getMetrics();
+		if (metrics == ClasspathMetrics.NONE) {
+			return readSnapshot(files);
+		}
+		long start = System.nanoTime();
+		Snapshot loaded = readSnapshot(files);
+		metrics.operation(Operation.PROPERTIES_LOAD, System.nanoTime() - start, loaded != null);
+		return loaded;
+	}
+
+	private Snapshot readSnapshot(File[] files) {
+		Snapshot loaded = readLayers(files);
+		boolean interpolate;
+		synchronized (this) {
+			interpolate = interpolating;
+		}
+		return (loaded != null && interpolate ? loaded.withInterpolation(true) : loaded);
+	}
+
+	private Snapshot readLayers(File[] files) {
+		if (layers.length == 1) {
+			PropertyStore store = readStore(layers[0], files != null ? files[0] : null);
+			return (store != null ? new Snapshot(store, new PropertyStore[] { store }, false) : null);
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		CompletableFuture<PropertyStore>[] loads = new CompletableFuture[layers.length];
+		Executor executor = ClasspathLoader.getLoadExecutor();
+		for (int i = 0; i < layers.length; i++) {
+			String layer = layers[i];
+			File file = (files != null ? files[i] : null);
+			loads[i] = CompletableFuture.supplyAsync(() -> readLayer(layer, file), executor);
+		}
+		PropertyStore[] stores = new PropertyStore[layers.length];
+		int total = 0;
+		for (int i = 0; i < layers.length; i++) {
+			stores[i] = loads[i].join();
+			if (stores[i] == null) {
+				return null;
+			}
+			total += stores[i].size();
+		}
+
+		// Later layers are added last, so their values replace earlier ones
+		String[] keys = new String[total];
+		String[] values = new String[total];
+		int[] count = { 0 };
+		for (PropertyStore store : stores) {
+			store.forEach((key, value) -> {
+				keys[count[0]] = key;
+				values[count[0]] = value;
+				count[0]++;
+			});
+		}
+		return new Snapshot(PropertyTable.of(keys, values, count[0]), stores, false);
+	}
+
+	/**
+	 * Reads one layer of layered properties. A layer that doesn't exist is
+	 * empty rather than a failure.
+	 */
+	private PropertyStore readLayer(String layer, File file) {
+		if (file == null && ClasspathLoader.resourceCache().resolve(layer) == null) {
+			return PropertyTable.EMPTY;
+		}
+		return readStore(layer, file);
+	}
+
+	private PropertyStore readStore(String resourceName, File file) {
+		if (file == null) {
+			// A resource read by name would otherwise be answered from the byte cache, so a reload couldn't see changes
+			ResourceByteCache byteCache = ClasspathLoader.byteCache();
+			byteCache.invalidate(resourceName);
+			byteCache.invalidate(resourceName + PropertiesSnapshot.SUFFIX);
+		}
+		PropertyStore compiled = readCompiled(resourceName, file);
+		if (compiled != null) {
+			return compiled;
+		}
+		if (!lazy) {
+			InputStream is;
+			if (file != null) {
+				try {
+					is = new FileInputStream(file);
+				} catch (FileNotFoundException fnfx) {
+					is = null;
+				}
+			} else {
+				is = ClasspathLoader.fileInputStream(resourceName);
+			}
+			Properties props = load(resourceName, is);
+			return props != null ? PropertyTable.of(props) : null;
+		}
+
+		if (file == null) {
+			file = resourceFile(resourceName);
+		}
+		try {
+			if (file != null) {
+				return LazyPropertyIndex.map(file);
+			}
+			byte[] bytes = ClasspathLoader.fileBytes(resourceName);
+			if (bytes == null) {
+				throw new FileNotFoundException("Failed to open stream for classpath resource '" + resourceName + "'");
+			}
+			return new LazyPropertyIndex(ByteBuffer.wrap(bytes));
+		} catch (IOException | IllegalArgumentException ex) {
+			System.err.println(this.getClass().getSimpleName() + ": " + ex.getMessage());
+			if (showStacktraces) {
+				ex.printStackTrace();
+			}
+			ClasspathLoader.getMetrics().failure(Operation.PROPERTIES_LOAD, ex);
+		}
+		return null;
+	}
+
+	/**
+	 * Opens the snapshot compiled from a resource, when there is one next to it
+	 * and it still matches the resource.
+	 * @return The snapshot, or null if the resource has to be parsed.
+	 * @see PropertiesCompiler
+	 */
+	private PropertyStore readCompiled(String resourceName, File file) {
+		String snapshotName = resourceName + PropertiesSnapshot.SUFFIX;
+		if (file == null && ClasspathLoader.resourceCache().resolve(snapshotName) == null) {
+			return null;
+		}
+		try {
+			ByteBuffer source;
+			ByteBuffer snapshot;
+			File sourceFile = (file != null ? file : resourceFile(resourceName));
+			if (sourceFile != null) {
+				File snapshotFile = new File(sourceFile.getPath() + PropertiesSnapshot.SUFFIX);
+				if (!snapshotFile.isFile()) {
+					return null;
+				}
+				source = PropertiesSnapshot.map(sourceFile);
+				snapshot = PropertiesSnapshot.map(snapshotFile);
+			} else {
+				byte[] sourceBytes = ClasspathLoader.fileBytes(resourceName);
+				byte[] snapshotBytes = ClasspathLoader.fileBytes(snapshotName);
+				if (sourceBytes == null || snapshotBytes == null) {
+					return null;
+				}
+				source = ByteBuffer.wrap(sourceBytes);
+				snapshot = ByteBuffer.wrap(snapshotBytes);
+			}
+			PropertiesSnapshot opened = PropertiesSnapshot.open(source, snapshot);
+			if (opened == null) {
+				System.err.println(this.getClass().getSimpleName() + ": Ignoring snapshot '" + snapshotName
+						+ "', it doesn't match its source");
+			}
+			return opened;
+		} catch (IOException ex) {
+			System.err.println(this.getClass().getSimpleName() + ": " + ex.getMessage());
+			if (showStacktraces) {
+				ex.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	private Properties load(String resourceName, InputStream is) {
+		Properties props = new Properties();
 		try {
 			if (is != null) {
-				this.props.load(is);
+				props.load(is);
+				return props;
 			} else {
 				throw new FileNotFoundException("Failed to open stream for classpath resource '" + resourceName + "'");
 			}
-		} catch (IOException iox) {
-			System.err.println(this.getClass().getSimpleName() + ": " + iox.getMessage());
+		} catch (IOException | IllegalArgumentException ex) {
+			System.err.println(this.getClass().getSimpleName() + ": " + ex.getMessage());
 			if (showStacktraces) {
-				iox.printStackTrace();
+				ex.printStackTrace();
 			}
+			ClasspathLoader.getMetrics().failure(Operation.PROPERTIES_LOAD, ex);
 		} finally {
 			if(is != null) {
 				try {
@@ -60,6 +484,21 @@ public class ClasspathProperties {
 				} catch (IOException iox) { /* Ignore me */ }
 			}
 		}
+		return null;
+	}
+
+	private File resourceFile(String resourceName) {
+		URL url = ClasspathLoader.resourceCache().resolve(resourceName);
+		if (url != null && "file".equals(url.getProtocol())) {
+			try {
+				return new File(url.toURI());
+			} catch (URISyntaxException | IllegalArgumentException ex) {
+				if (showStacktraces) {
+					ex.printStackTrace();
+				}
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -68,11 +507,25 @@ public class ClasspathProperties {
 	 * @return The property retrieved, or {@code ""} if the key could not be found. Never returns null.
 	 */
 	public String getProperty(String key) {
-		String property = props.getProperty(key);
-		if (property != null) {
-			return property;
+		return snapshot.getProperty(key);
+	}
+
+	/**
+	 * Finds which resource supplied the value of a key. This walks the layers
+	 * from the highest precedence down, so it is meant for diagnostics rather
+	 * than for every read.
+	 * @param key The key to look for.
+	 * @return The name of the resource the key's value came from, or null if the key could not be found.
+	 * @see ClasspathProperties#layered(String...)
+	 */
+	public String getPropertySource(String key) {
+		Snapshot current = snapshot;
+		for (int i = layers.length - 1; i >= 0; i--) {
+			if (current.layers[i].get(key) != null) {
+				return layers[i];
+			}
 		}
-		return "";
+		return null;
 	}
 
 	/**
@@ -96,14 +549,7 @@ public class ClasspathProperties {
 	 * @see ClasspathProperties#FALSY
 	 */
 	public boolean getBooleanProperty(String key, boolean defaultValue) {
-		String property = getProperty(key);
-		for(String truth : TRUTHY) {
-			if(property.equalsIgnoreCase(truth)) return true;
-		}
-		for(String fals3 : FALSY) {
-			if(property.equalsIgnoreCase(fals3)) return false;
-		}
-		return defaultValue;
+		return typedValue(key).booleanValue(defaultValue);
 	}
 
 	/**
@@ -122,15 +568,7 @@ public class ClasspathProperties {
 	 * @return The property retrieved, or {@code defaultValue} if the property could not be translated to a {@code long}.
 	 */
 	public long getIntegerProperty(String key, long defaultValue) {
-		String property = getProperty(key);
-		try {
-			return Integer.parseInt(property);
-		} catch(NumberFormatException nfx) {
-			if (showStacktraces) {
-				nfx.printStackTrace();
-			}
-		}
-		return defaultValue;
+		return typedValue(key).longValue(defaultValue, showStacktraces);
 	}
 	
 	/**
@@ -150,15 +588,7 @@ public class ClasspathProperties {
 	 * @return The property retrieved, or {@code defaultValue} if the property could not be translated to a {@code BigInteger}.
 	 */
 	public BigInteger getBigIntegerProperty(String key, BigInteger defaultValue) {
-		String property = getProperty(key);
-		try {
-			return new BigInteger(property);
-		} catch(NumberFormatException nfx) {
-			if (showStacktraces) {
-				nfx.printStackTrace();
-			}
-		}
-		return defaultValue;
+		return typedValue(key).bigIntegerValue(defaultValue, showStacktraces);
 	}
 	
 	/**
@@ -177,15 +607,7 @@ public class ClasspathProperties {
 	 * @return The property retrieved, or {@code defaultValue} if the property could not be translated to a {@code double}.
 	 */
 	public double getDecimalProperty(String key, double defaultValue) {
-		String property = getProperty(key);
-		try {
-			return Double.parseDouble(property);
-		} catch(NumberFormatException nfx) {
-			if (showStacktraces) {
-				nfx.printStackTrace();
-			}
-		}
-		return defaultValue;
+		return typedValue(key).doubleValue(defaultValue, showStacktraces);
 	}
 	
 	/**
@@ -205,15 +627,7 @@ public class ClasspathProperties {
 	 * @return The property retrieved, or {@code defaultValue} if the property could not be translated to a {@code BigDecimal}.
 	 */
 	public BigDecimal getBigDecimalProperty(String key, BigDecimal defaultValue) {
-		String property = getProperty(key);
-		try {
-			return new BigDecimal(property);
-		} catch(NumberFormatException nfx) {
-			if (showStacktraces) {
-				nfx.printStackTrace();
-			}
-		}
-		return defaultValue;
+		return typedValue(key).bigDecimalValue(defaultValue, showStacktraces);
 	}
 
 	/**
@@ -231,4 +645,121 @@ public class ClasspathProperties {
 	public void setShowStacktraces(boolean showStacktraces) {
 		this.showStacktraces = showStacktraces;
 	}
+
+	/**
+	 * @return Whether or not placeholders in values are being resolved.
+	 */
+	public synchronized boolean isInterpolating() {
+		return interpolating;
+	}
+
+	/**
+	 * Enables or disables resolving placeholders in values. {@code ${key}} is
+	 * replaced by the value of another key, and {@code ${env:VAR}} by an
+	 * environment variable. Either may be followed by {@code :-default}, used
+	 * when the key or variable is missing, and <code>$${</code> is a literal
+	 * <code>${</code>. Placeholders that can't be resolved are left as written, as
+	 * are the values of keys that refer back to themselves.
+	 * <br/>
+	 * Values are compiled when this is turned on and on every reload, and each
+	 * value is resolved the first time it is read. After that, reads cost the
+	 * same as without interpolation. Values of {@linkplain #lazy(String) lazy}
+	 * properties and compiled snapshots are instead compiled as they are first
+	 * read, so they aren't all decoded up front; their later reads cost one
+	 * extra lookup.
+	 * @param interpolating Whether or not placeholders should be resolved.
+	 */
+	public synchronized void setInterpolating(boolean interpolating) {
+		if (this.interpolating != interpolating) {
+			this.interpolating = interpolating;
+			snapshot = snapshot.withInterpolation(interpolating);
+			rebind(snapshot);
+		}
+	}
+
+	/**
+	 * Binds the values to an interface, whose methods each return the value of
+	 * one key. Keys are named with {@link Key}, or derived from method names by
+	 * dropping a {@code get} or {@code is} prefix and separating words with
+	 * dots, so {@code getPoolSize()} reads {@code pool.size}.
+	 * <br/>
+	 * Methods may return {@code String}, {@code boolean}, {@code int},
+	 * {@code long}, {@code double}, their boxed types, {@code BigInteger} or
+	 * {@code BigDecimal}. Every value is converted when binding and again after
+	 * each reload, and the returned object only serves the converted values, so
+	 * its methods never look up or parse anything. A reload whose values don't
+	 * all convert leaves the bound values as they were.
+	 * <br/>
+	 * Each interface is bound once: binding it again returns the same object,
+	 * which lives as long as these properties do.
+	 * @param type The interface to implement.
+	 * @return An implementation of the interface, or null if a key is missing or a value could not be converted.
+	 * @throws IllegalArgumentException If the type isn't an interface or has a method that can't be bound.
+	 * @see ClasspathProperties#TRUTHY
+	 * @see ClasspathProperties#FALSY
+	 */
+	public synchronized <T> T bind(Class<T> type) {
+		PropertyBinding<?> bound = bindings.get(type);
+		if (bound != null) {
+			return type.cast(bound.proxy());
+		}
+		PropertyBinding<T> binding = PropertyBinding.of(type);
+		if (!binding.update(snapshot.store)) {
+			return null;
+		}
+		bindings.put(type, binding);
+		return binding.proxy();
+	}
+
+	private void rebind(Snapshot next) {
+		for (PropertyBinding<?> binding : bindings.values()) {
+			binding.update(next.store);
+		}
+	}
+
+	private TypedValue typedValue(String key) {
+		return snapshot.store.typedValue(key);
+	}
+
+	/**
+	 * Immutable set of loaded values, along with the typed values parsed from
+	 * them. A reload publishes a whole new snapshot.
+	 */
+	private static final class Snapshot {
+		final PropertyStore raw;
+		final PropertyStore store;
+		final PropertyStore[] layers;
+		final boolean interpolated;
+
+		Snapshot(PropertyStore raw, PropertyStore[] layers, boolean interpolated) {
+			this.raw = raw;
+			this.store = (interpolated ? interpolate(raw) : raw);
+			this.layers = layers;
+			this.interpolated = interpolated;
+		}
+
+		/**
+		 * Values already on the heap are compiled into a table up front. A store
+		 * that decodes on demand is resolved key by key instead, so it isn't
+		 * copied onto the heap whole.
+		 */
+		private static PropertyStore interpolate(PropertyStore raw) {
+			return (raw instanceof PropertyTable ? PropertyTable.interpolated(raw) : new InterpolatingStore(raw));
+		}
+
+		static Snapshot empty(int layerCount) {
+			PropertyStore[] layers = new PropertyStore[layerCount];
+			Arrays.fill(layers, PropertyTable.EMPTY);
+			return new Snapshot(PropertyTable.EMPTY, layers, false);
+		}
+
+		Snapshot withInterpolation(boolean interpolate) {
+			return (interpolate == interpolated ? this : new Snapshot(raw, layers, interpolate));
+		}
+
+		String getProperty(String key) {
+			String property = store.get(key);
+			return property != null ? property : "";
+		}
+	}
 }
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Serves the values of a store that decodes on demand, such as a
+ * {@link LazyPropertyIndex} or a {@link PropertiesSnapshot}, with their
+ * placeholders resolved. Unlike an {@linkplain PropertyTable#interpolated(PropertyStore)
+ * interpolated table}, nothing is copied up front: a value is compiled and
+ * resolved the first time it is read, and only the values read so far are
+ * kept.
+ * <br/>
+ * Keys that refer to themselves through any chain of placeholders are found
+ * when one of them is first read, reported, and served as written, the same as
+ * in an interpolated table.
+ */
+final class InterpolatingStore implements PropertyStore {
+	private final PropertyStore source;
+	private final ConcurrentMap<String, TypedValue> resolved = new ConcurrentHashMap<>();
+	private final Set<String> cyclic = ConcurrentHashMap.newKeySet();
+
+	InterpolatingStore(PropertyStore source) {
+		this.source = source;
+	}
+
+	@Override
+	public String get(String key) {
+		TypedValue value = value(key);
+		return value != null ? value.raw : null;
+	}
+
+	@Override
+	public TypedValue typedValue(String key) {
+		TypedValue value = value(key);
+		return value != null ? value : TypedValue.EMPTY;
+	}
+
+	/**
+	 * Visits every key with its resolved value, which resolves and keeps every
+	 * value of the source.
+	 */
+	@Override
+	public void forEach(BiConsumer<String, String> action) {
+		source.forEach((key, raw) -> action.accept(key, get(key)));
+	}
+
+	@Override
+	public int size() {
+		return source.size();
+	}
+
+	/**
+	 * @return The number of values resolved and kept so far.
+	 */
+	int resolvedCount() {
+		return resolved.size();
+	}
+
+	private TypedValue value(String key) {
+		TypedValue value = resolved.get(key);
+		return value != null ? value : resolve(key, new ArrayList<>());
+	}
+
+	/**
+	 * Resolves a key, following its placeholders depth first.
+	 *
+	 * @param path The templated keys being resolved further up, used to find
+	 *             cycles.
+	 */
+	private TypedValue resolve(String key, List<String> path) {
+		TypedValue value = resolved.get(key);
+		if (value != null) {
+			return value;
+		}
+		String raw = source.get(key);
+		if (raw == null) {
+			return null;
+		}
+		PropertyTemplate template = PropertyTemplate.compile(raw);
+		if (template == null) {
+			// Values without placeholders share the source's typed values
+			value = source.typedValue(key);
+		} else {
+			int at = path.indexOf(key);
+			if (at >= 0) {
+				for (int i = at; i < path.size(); i++) {
+					if (cyclic.add(path.get(i))) {
+						System.err.println(InterpolatingStore.class.getSimpleName() + ": Placeholders of '" + path.get(i)
+								+ "' refer back to it and are not resolved");
+					}
+				}
+				// Each member of the cycle settles on its text as written once it unwinds
+				return new TypedValue(raw);
+			}
+			String text = raw;
+			if (!cyclic.contains(key)) {
+				path.add(key);
+				text = template.resolve(reference -> {
+					TypedValue referenced = resolve(reference, path);
+					return referenced != null ? referenced.raw : null;
+				});
+				path.remove(path.size() - 1);
+			}
+			value = new TypedValue(cyclic.contains(key) ? raw : text);
+		}
+		TypedValue existing = resolved.putIfAbsent(key, value);
+		return existing != null ? existing : value;
+	}
+}
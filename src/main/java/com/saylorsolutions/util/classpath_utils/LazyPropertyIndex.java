@@ -0,0 +1,383 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Property store over the raw bytes of a properties file. The file is scanned
+ * once to index the hash of each key against the offset of its line; keys and
+ * values are only decoded and unescaped the first time they are looked up.
+ * <br/>
+ * The bytes are read with the same rules and ISO 8859-1 encoding as
+ * {@code Properties.load(InputStream)}. Until a key is read, the heap holds only
+ * the index and, when the file couldn't be mapped, its bytes.
+ */
+final class LazyPropertyIndex implements PropertyStore {
+	private final ByteBuffer data;
+	private final int[] offsets;
+	private final int[] hashes;
+	private final String[] keys;
+	private final String[] values;
+	private final TypedValue[] typedValues;
+	private final int mask;
+	private final int size;
+
+	/**
+	 * Memory maps a properties file and indexes it.
+	 */
+	static LazyPropertyIndex map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Properties file '" + file + "' is too large to be mapped");
+			}
+			return new LazyPropertyIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	LazyPropertyIndex(ByteBuffer data) {
+		this.data = data.duplicate();
+
+		int[] lineOffsets = new int[64];
+		int[] lineHashes = new int[64];
+		int lines = 0;
+		LineBuffer line = new LineBuffer();
+		int pos = 0;
+		while ((pos = readLine(pos, line)) >= 0) {
+			if (lines == lineOffsets.length) {
+				lineOffsets = Arrays.copyOf(lineOffsets, lines * 2);
+				lineHashes = Arrays.copyOf(lineHashes, lines * 2);
+			}
+			lineOffsets[lines] = line.start;
+			lineHashes[lines] = spread(keyHash(line));
+			lines++;
+		}
+
+		int capacity = Integer.highestOneBit(Math.max(2, lines * 2 - 1)) << 1;
+		this.offsets = new int[capacity];
+		this.hashes = new int[capacity];
+		this.keys = new String[capacity];
+		this.values = new String[capacity];
+		this.typedValues = new TypedValue[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(offsets, -1);
+
+		int count = 0;
+		for (int i = 0; i < lines; i++) {
+			int hash = lineHashes[i];
+			int slot = hash & mask;
+			while (offsets[slot] >= 0) {
+				// Only equal hashes need their keys decoded to spot a duplicate key
+				if (hashes[slot] == hash && keyAt(offsets[slot]).equals(keyAt(lineOffsets[i]))) {
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+			if (offsets[slot] < 0) {
+				count++;
+			}
+			// Later lines replace earlier ones, as with Properties.load
+			offsets[slot] = lineOffsets[i];
+			hashes[slot] = hash;
+		}
+		this.size = count;
+	}
+
+	@Override
+	public String get(String key) {
+		int slot = slot(key);
+		return slot >= 0 ? value(slot) : null;
+	}
+
+	@Override
+	public TypedValue typedValue(String key) {
+		int slot = slot(key);
+		if (slot < 0) {
+			return TypedValue.EMPTY;
+		}
+		TypedValue value = typedValues[slot];
+		if (value == null) {
+			value = new TypedValue(value(slot));
+			typedValues[slot] = value;
+		}
+		return value;
+	}
+
+	@Override
+	public void forEach(BiConsumer<String, String> action) {
+		for (int slot = 0; slot < offsets.length; slot++) {
+			if (offsets[slot] >= 0) {
+				action.accept(key(slot), value(slot));
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private int slot(String key) {
+		int hash = spread(key.hashCode());
+		int slot = hash & mask;
+		while (offsets[slot] >= 0) {
+			if (hashes[slot] == hash && key(slot).equals(key)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private String key(int slot) {
+		String key = keys[slot];
+		if (key == null) {
+			key = keyAt(offsets[slot]);
+			keys[slot] = key;
+		}
+		return key;
+	}
+
+	private String value(int slot) {
+		String value = values[slot];
+		if (value == null) {
+			LineBuffer line = new LineBuffer();
+			readLine(offsets[slot], line);
+			split(line);
+			value = unescape(line.chars, line.valueStart, line.length - line.valueStart);
+			values[slot] = value;
+		}
+		return value;
+	}
+
+	private String keyAt(int offset) {
+		LineBuffer line = new LineBuffer();
+		readLine(offset, line);
+		split(line);
+		return unescape(line.chars, 0, line.keyLength);
+	}
+
+	/**
+	 * Hashes the unescaped key of a line the same way {@code String.hashCode}
+	 * would, without creating the {@code String}.
+	 */
+	private static int keyHash(LineBuffer line) {
+		split(line);
+		char[] chars = line.chars;
+		int end = line.keyLength;
+		int hash = 0;
+		int i = 0;
+		while (i < end) {
+			char c = chars[i++];
+			if (c == '\\' && i < end) {
+				c = chars[i++];
+				if (c == 'u') {
+					c = hex(chars, i, end);
+					i += 4;
+				} else {
+					c = escaped(c);
+				}
+			}
+			hash = 31 * hash + c;
+		}
+		return hash;
+	}
+
+	/**
+	 * Reads the next logical line at or after {@code pos}, skipping blank and
+	 * comment lines and joining continuation lines, into {@code line}.
+	 *
+	 * @return The position after the logical line, or {@code -1} if there are no
+	 *         more lines.
+	 */
+	private int readLine(int pos, LineBuffer line) {
+		int limit = data.limit();
+		line.length = 0;
+		line.start = -1;
+		boolean skipWhiteSpace = true;
+		boolean commentLine = false;
+		boolean continuation = false;
+		boolean precedingBackslash = false;
+		while (pos < limit) {
+			char c = (char) (data.get(pos++) & 0xFF);
+			if (skipWhiteSpace) {
+				if (c == ' ' || c == '\t' || c == '\f') {
+					continue;
+				}
+				if (!continuation && (c == '\r' || c == '\n')) {
+					continue;
+				}
+				skipWhiteSpace = false;
+				continuation = false;
+			}
+			if (line.length == 0 && line.start < 0) {
+				line.start = pos - 1;
+				if (c == '#' || c == '!') {
+					commentLine = true;
+				}
+			}
+			if (c != '\n' && c != '\r') {
+				line.append(c);
+				precedingBackslash = c == '\\' && !precedingBackslash;
+				continue;
+			}
+
+			if (c == '\r' && pos < limit && data.get(pos) == '\n') {
+				pos++;
+			}
+			if (commentLine || line.length == 0) {
+				commentLine = false;
+				line.length = 0;
+				line.start = -1;
+				skipWhiteSpace = true;
+				continue;
+			}
+			if (precedingBackslash) {
+				line.length--;
+				precedingBackslash = false;
+				skipWhiteSpace = true;
+				continuation = true;
+				continue;
+			}
+			return pos;
+		}
+		if (commentLine || line.start < 0) {
+			return -1;
+		}
+		if (precedingBackslash) {
+			line.length--;
+		}
+		return pos;
+	}
+
+	/**
+	 * Finds where the key ends and the value starts, as
+	 * {@code Properties.load} does.
+	 */
+	private static void split(LineBuffer line) {
+		char[] chars = line.chars;
+		int limit = line.length;
+		int keyLength = 0;
+		int valueStart = limit;
+		boolean hasSeparator = false;
+		boolean precedingBackslash = false;
+		while (keyLength < limit) {
+			char c = chars[keyLength];
+			if ((c == '=' || c == ':') && !precedingBackslash) {
+				valueStart = keyLength + 1;
+				hasSeparator = true;
+				break;
+			} else if ((c == ' ' || c == '\t' || c == '\f') && !precedingBackslash) {
+				valueStart = keyLength + 1;
+				break;
+			}
+			precedingBackslash = c == '\\' && !precedingBackslash;
+			keyLength++;
+		}
+		while (valueStart < limit) {
+			char c = chars[valueStart];
+			if (c != ' ' && c != '\t' && c != '\f') {
+				if (!hasSeparator && (c == '=' || c == ':')) {
+					hasSeparator = true;
+				} else {
+					break;
+				}
+			}
+			valueStart++;
+		}
+		line.keyLength = keyLength;
+		line.valueStart = valueStart;
+	}
+
+	private static String unescape(char[] chars, int offset, int length) {
+		char[] out = new char[length];
+		int count = 0;
+		int end = offset + length;
+		int i = offset;
+		while (i < end) {
+			char c = chars[i++];
+			if (c == '\\' && i < end) {
+				c = chars[i++];
+				if (c == 'u') {
+					c = hex(chars, i, end);
+					i += 4;
+				} else {
+					c = escaped(c);
+				}
+			}
+			out[count++] = c;
+		}
+		return new String(out, 0, count);
+	}
+
+	private static char escaped(char c) {
+		switch (c) {
+		case 't':
+			return '\t';
+		case 'r':
+			return '\r';
+		case 'n':
+			return '\n';
+		case 'f':
+			return '\f';
+		default:
+			return c;
+		}
+	}
+
+	private static char hex(char[] chars, int offset, int end) {
+		if (offset + 4 > end) {
+			throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+		}
+		int value = 0;
+		for (int i = offset; i < offset + 4; i++) {
+			int digit = Character.digit(chars[i], 16);
+			if (digit < 0) {
+				throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+			}
+			value = (value << 4) + digit;
+		}
+		return (char) value;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Reusable buffer holding one logical line.
+	 */
+	private static final class LineBuffer {
+		char[] chars = new char[128];
+		int length;
+		int start;
+		int keyLength;
+		int valueStart;
+
+		void append(char c) {
+			if (length == chars.length) {
+				chars = Arrays.copyOf(chars, length * 2);
+			}
+			chars[length++] = c;
+		}
+	}
+}
@@ -0,0 +1,632 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only view of a zip archive held in a single {@code ByteBuffer}, usually
+ * a memory mapped file. The central directory is parsed once into a set of
+ * primitive arrays sorted by entry name, so looking an entry up is a binary
+ * search and no {@code ZipEntry} objects are created.
+ * <br/>
+ * {@link ZipEntry#STORED} entries are returned as read-only slices of the
+ * archive buffer without copying, {@link ZipEntry#DEFLATED} entries are
+ * inflated directly out of the archive buffer.
+ * <br/>
+ * Archives are limited to 2GB, the most a single {@code MappedByteBuffer} can
+ * address.
+ */
+public class MappedZipArchive {
+	private static final int LOC_SIG = 0x04034b50;
+	private static final int CEN_SIG = 0x02014b50;
+	private static final int END_SIG = 0x06054b50;
+	private static final int ZIP64_LOC_SIG = 0x07064b50;
+	private static final int ZIP64_END_SIG = 0x06064b50;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+
+	private static final int LOC_HEADER = 30;
+	private static final int CEN_HEADER = 46;
+	private static final int END_HEADER = 22;
+	private static final int ZIP64_LOC_HEADER = 20;
+	private static final int MAX_COMMENT = 0xFFFF;
+
+	private static final int INFLATE_CHUNK = 8192;
+
+	private final String name;
+	private final ByteBuffer data;
+	private final int[] nameOffsets;
+	private final int[] nameLengths;
+	private final int[] localOffsets;
+	private final int[] compressedSizes;
+	private final long[] sizes;
+	private final int[] crcs;
+	private final short[] methods;
+
+	/**
+	 * Memory maps an archive and parses its central directory.
+	 *
+	 * @param archive The zip archive on disk.
+	 * @return A view of the archive.
+	 * @throws ZipException If the archive is malformed or larger than 2GB.
+	 * @throws IOException  If the archive could not be mapped.
+	 */
+	public static MappedZipArchive open(File archive) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(archive, "r"); FileChannel channel = raf.getChannel()) {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE) {
+				throw new ZipException("Archive '" + archive + "' is too large to be mapped");
+			}
+			return new MappedZipArchive(archive.getPath(), channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+		}
+	}
+
+	MappedZipArchive(String name, ByteBuffer buffer) throws ZipException {
+		this.name = name;
+		this.data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+		int end = findEnd();
+		long count = u16(end + 10);
+		long cenSize = u32(end + 12);
+		long cenOffset = u32(end + 16);
+		if (count == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL) {
+			int locator = end - ZIP64_LOC_HEADER;
+			if (locator >= 0 && data.getInt(locator) == ZIP64_LOC_SIG) {
+				int zip64End = checkedOffset(data.getLong(locator + 8));
+				if (zip64End + 56 > end || data.getInt(zip64End) != ZIP64_END_SIG) {
+					throw new ZipException("Invalid zip64 end header in '" + name + "'");
+				}
+				count = data.getLong(zip64End + 32);
+				cenSize = data.getLong(zip64End + 40);
+				cenOffset = data.getLong(zip64End + 48);
+			}
+		}
+		// Every header takes at least CEN_HEADER bytes, so a count the directory can't hold is corrupt
+		if (count < 0 || cenSize < 0 || cenOffset < 0 || cenOffset + cenSize > end || count > cenSize / CEN_HEADER) {
+			throw new ZipException("Invalid central directory in '" + name + "'");
+		}
+		int cenEnd = (int) (cenOffset + cenSize);
+
+		int entries = (int) count;
+		int[] nameOffsets = new int[entries];
+		int[] nameLengths = new int[entries];
+		int[] localOffsets = new int[entries];
+		int[] compressedSizes = new int[entries];
+		long[] sizes = new long[entries];
+		int[] crcs = new int[entries];
+		short[] methods = new short[entries];
+
+		int pos = (int) cenOffset;
+		for (int i = 0; i < entries; i++) {
+			if (pos + CEN_HEADER > cenEnd || data.getInt(pos) != CEN_SIG) {
+				throw new ZipException("Invalid central directory header in '" + name + "'");
+			}
+			int nameLength = u16(pos + 28);
+			int extraLength = u16(pos + 30);
+			int commentLength = u16(pos + 32);
+			int next = pos + CEN_HEADER + nameLength + extraLength + commentLength;
+			if (next > cenEnd) {
+				throw new ZipException("Central directory header overruns the directory in '" + name + "'");
+			}
+			long compressedSize = u32(pos + 20);
+			long size = u32(pos + 24);
+			long localOffset = u32(pos + 42);
+			if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+				int extra = pos + CEN_HEADER + nameLength;
+				int extraEnd = extra + extraLength;
+				while (extra + 4 <= extraEnd) {
+					int id = u16(extra);
+					int length = u16(extra + 2);
+					int fieldEnd = extra + 4 + length;
+					if (fieldEnd > extraEnd) {
+						throw new ZipException("Extra field overruns its header in '" + name + "'");
+					}
+					if (id == ZIP64_EXTRA_ID) {
+						int field = extra + 4;
+						if (size == 0xFFFFFFFFL) {
+							size = zip64Field(field, fieldEnd);
+							field += 8;
+						}
+						if (compressedSize == 0xFFFFFFFFL) {
+							compressedSize = zip64Field(field, fieldEnd);
+							field += 8;
+						}
+						if (localOffset == 0xFFFFFFFFL) {
+							localOffset = zip64Field(field, fieldEnd);
+						}
+						break;
+					}
+					extra += 4 + length;
+				}
+			}
+
+			methods[i] = (short) u16(pos + 10);
+			crcs[i] = data.getInt(pos + 16);
+			compressedSizes[i] = checkedOffset(compressedSize);
+			sizes[i] = size;
+			localOffsets[i] = checkedOffset(localOffset);
+			nameOffsets[i] = pos + CEN_HEADER;
+			nameLengths[i] = nameLength;
+			pos = next;
+		}
+
+		int[] order = new int[entries];
+		for (int i = 0; i < entries; i++) {
+			order[i] = i;
+		}
+		sortByName(order, new int[entries], 0, entries, nameOffsets, nameLengths);
+
+		this.nameOffsets = new int[entries];
+		this.nameLengths = new int[entries];
+		this.localOffsets = new int[entries];
+		this.compressedSizes = new int[entries];
+		this.sizes = new long[entries];
+		this.crcs = new int[entries];
+		this.methods = new short[entries];
+		for (int i = 0; i < entries; i++) {
+			int from = order[i];
+			this.nameOffsets[i] = nameOffsets[from];
+			this.nameLengths[i] = nameLengths[from];
+			this.localOffsets[i] = localOffsets[from];
+			this.compressedSizes[i] = compressedSizes[from];
+			this.sizes[i] = sizes[from];
+			this.crcs[i] = crcs[from];
+			this.methods[i] = methods[from];
+		}
+	}
+
+	/**
+	 * @return The name of the archive this view was created from.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The number of entries in the archive, including directories.
+	 */
+	public int size() {
+		return nameOffsets.length;
+	}
+
+	/**
+	 * @param entryName The name of the entry within the archive.
+	 * @return Whether or not the archive contains the entry.
+	 */
+	public boolean contains(String entryName) {
+		return indexOf(entryName) >= 0;
+	}
+
+	/**
+	 * @param entryName The name of the entry within the archive.
+	 * @return The uncompressed size of the entry, or -1 if the entry does not
+	 *         exist.
+	 */
+	public long entrySize(String entryName) {
+		int index = indexOf(entryName);
+		return index >= 0 ? sizes[index] : -1;
+	}
+
+	/**
+	 * Gets the contents of an entry. Stored entries are returned as a slice of
+	 * the archive buffer, deflated entries are inflated into a new buffer.
+	 *
+	 * @param entryName The name of the entry within the archive.
+	 * @return A read-only buffer holding the entry's contents, or null if the
+	 *         entry does not exist.
+	 * @throws ZipException If the entry is malformed or uses an unsupported
+	 *                      compression method.
+	 */
+	public ByteBuffer entryBuffer(String entryName) throws ZipException {
+		int index = indexOf(entryName);
+		return index >= 0 ? bufferAt(index) : null;
+	}
+
+	/**
+	 * Opens a stream over the contents of an entry. Deflated entries are inflated
+	 * as the stream is read.
+	 *
+	 * @param entryName The name of the entry within the archive.
+	 * @return An {@code InputStream} for the entry, or null if the entry does not
+	 *         exist.
+	 * @throws ZipException If the entry is malformed or uses an unsupported
+	 *                      compression method.
+	 */
+	public InputStream entryInputStream(String entryName) throws ZipException {
+		int index = indexOf(entryName);
+		return index >= 0 ? inputStreamAt(index) : null;
+	}
+
+	/**
+	 * Opens a zip archive stored as an entry of this one, without extracting it.
+	 * A {@link ZipEntry#STORED} entry is read in place, so a nested archive in a
+	 * mapped file is itself mapped. A compressed entry is inflated into memory
+	 * once, and the view is over that copy.
+	 *
+	 * @param entryName The name of the entry within the archive.
+	 * @return A view of the nested archive, or null if the entry does not exist.
+	 * @throws ZipException If the entry could not be read or is not a valid
+	 *                      archive.
+	 */
+	public MappedZipArchive nestedArchive(String entryName) throws ZipException {
+		int index = indexOf(entryName);
+		return index >= 0 ? new MappedZipArchive(name + "!/" + entryName, bufferAt(index)) : null;
+	}
+
+	/**
+	 * Checks every entry against the size and CRC32 recorded for it in the
+	 * central directory. Every entry is read, and deflated entries inflated.
+	 *
+	 * @return The names of the entries whose contents don't match what was
+	 *         recorded or that could not be read, in name order.
+	 */
+	public List<String> verify() {
+		List<String> corrupted = new ArrayList<>();
+		CRC32 crc = new CRC32();
+		for (int i = 0; i < nameOffsets.length; i++) {
+			if (isDirectoryAt(i)) {
+				continue;
+			}
+			try {
+				ByteBuffer contents = bufferAt(i);
+				crc.reset();
+				crc.update(contents);
+				if (contents.capacity() != sizes[i] || crc.getValue() != crcAt(i)) {
+					corrupted.add(nameAt(i));
+				}
+			} catch (ZipException zx) {
+				corrupted.add(nameAt(i));
+			}
+		}
+		return corrupted;
+	}
+
+	/**
+	 * Looks up an entry by name. Like {@code ZipFile.getEntry}, a name without a
+	 * trailing slash also matches a directory entry.
+	 */
+	int indexOf(String entryName) {
+		byte[] key = entryName.getBytes(StandardCharsets.UTF_8);
+		int index = search(key);
+		if (index < 0 && !entryName.endsWith("/")) {
+			byte[] dirKey = new byte[key.length + 1];
+			System.arraycopy(key, 0, dirKey, 0, key.length);
+			dirKey[key.length] = '/';
+			index = search(dirKey);
+		}
+		return index;
+	}
+
+	String nameAt(int index) {
+		byte[] bytes = new byte[nameLengths[index]];
+		ByteBuffer dup = data.duplicate();
+		dup.position(nameOffsets[index]);
+		dup.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	boolean isDirectoryAt(int index) {
+		return nameLengths[index] > 0 && data.get(nameOffsets[index] + nameLengths[index] - 1) == '/';
+	}
+
+	int methodAt(int index) {
+		return methods[index];
+	}
+
+	long sizeAt(int index) {
+		return sizes[index];
+	}
+
+	int compressedSizeAt(int index) {
+		return compressedSizes[index];
+	}
+
+	long crcAt(int index) {
+		return crcs[index] & 0xFFFFFFFFL;
+	}
+
+	int localHeaderOffsetAt(int index) {
+		return localOffsets[index];
+	}
+
+	/**
+	 * @return A read-only slice over the raw, possibly compressed, bytes of an
+	 *         entry.
+	 */
+	ByteBuffer rawBufferAt(int index) throws ZipException {
+		int local = localOffsets[index];
+		if (local + LOC_HEADER > data.capacity() || data.getInt(local) != LOC_SIG) {
+			throw new ZipException("Invalid local header for '" + nameAt(index) + "' in '" + name + "'");
+		}
+		int start = local + LOC_HEADER + u16(local + 26) + u16(local + 28);
+		if (start + compressedSizes[index] > data.capacity()) {
+			throw new ZipException("Truncated entry '" + nameAt(index) + "' in '" + name + "'");
+		}
+		return slice(start, compressedSizes[index]);
+	}
+
+	ByteBuffer bufferAt(int index) throws ZipException {
+		ByteBuffer raw = rawBufferAt(index);
+		switch (methods[index]) {
+		case ZipEntry.STORED:
+			return raw;
+		case ZipEntry.DEFLATED:
+			if (sizes[index] > Integer.MAX_VALUE) {
+				throw new ZipException("Entry '" + nameAt(index) + "' is too large to be buffered");
+			}
+			return ByteBuffer.wrap(inflate(raw, (int) sizes[index], index)).asReadOnlyBuffer();
+		default:
+			throw new ZipException("Unsupported compression method " + methods[index] + " for '" + nameAt(index) + "'");
+		}
+	}
+
+	InputStream inputStreamAt(int index) throws ZipException {
+		ByteBuffer raw = rawBufferAt(index);
+		switch (methods[index]) {
+		case ZipEntry.STORED:
+			return new ByteBufferInputStream(raw);
+		case ZipEntry.DEFLATED:
+			return new EntryInflaterInputStream(raw);
+		default:
+			throw new ZipException("Unsupported compression method " + methods[index] + " for '" + nameAt(index) + "'");
+		}
+	}
+
+	private byte[] inflate(ByteBuffer compressed, int size, int index) throws ZipException {
+		Inflater inflater = new Inflater(true);
+		try {
+			return inflate(compressed, size, index, inflater);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Inflates an entry with an inflater supplied by the caller, which must be
+	 * a fresh or reset inflater for raw deflate data and is left for the caller
+	 * to reset or end.
+	 */
+	byte[] inflate(ByteBuffer compressed, int size, int index, Inflater inflater) throws ZipException {
+		byte[] out = new byte[size];
+		byte[] chunk = new byte[compressed.hasArray() ? 1 : Math.max(1, Math.min(INFLATE_CHUNK, compressed.remaining()))];
+		int written = 0;
+		try {
+			while (written < size && !inflater.finished()) {
+				if (inflater.needsInput() && compressed.hasArray() && compressed.hasRemaining()) {
+					// Heap input is handed over whole rather than copied through the chunk
+					inflater.setInput(compressed.array(), compressed.arrayOffset() + compressed.position(),
+							compressed.remaining());
+					compressed.position(compressed.limit());
+				} else if (inflater.needsInput()) {
+					int count = Math.min(chunk.length, compressed.remaining());
+					if (count == 0) {
+						// Raw inflate may need one trailing byte past the end of the data
+						chunk[0] = 0;
+						count = 1;
+					} else {
+						compressed.get(chunk, 0, count);
+					}
+					inflater.setInput(chunk, 0, count);
+				}
+				int inflated = inflater.inflate(out, written, size - written);
+				if (inflated == 0 && inflater.needsDictionary()) {
+					break;
+				}
+				written += inflated;
+			}
+		} catch (DataFormatException dfx) {
+			ZipException zx = new ZipException("Invalid deflate data for '" + nameAt(index) + "' in '" + name + "'");
+			zx.initCause(dfx);
+			throw zx;
+		}
+		if (written != size) {
+			throw new ZipException("Entry '" + nameAt(index) + "' inflated to an unexpected size");
+		}
+		return out;
+	}
+
+	private ByteBuffer slice(int start, int length) {
+		ByteBuffer dup = data.duplicate();
+		dup.position(start);
+		dup.limit(start + length);
+		return dup.slice().asReadOnlyBuffer();
+	}
+
+	private int search(byte[] key) {
+		int low = 0;
+		int high = nameOffsets.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(nameOffsets[mid], nameLengths[mid], key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @return The index of the first entry whose name starts with the prefix, or
+	 *         would if there were one.
+	 */
+	int prefixStart(byte[] prefix) {
+		int index = search(prefix);
+		return index >= 0 ? index : -(index + 1);
+	}
+
+	/**
+	 * @return The index after the last entry whose name starts with the prefix.
+	 */
+	int prefixEnd(byte[] prefix, int start) {
+		int low = start;
+		int high = nameOffsets.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (nameLengths[mid] >= prefix.length && compare(nameOffsets[mid], prefix.length, prefix) == 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int compare(int offset, int length, byte[] key) {
+		int common = Math.min(length, key.length);
+		for (int i = 0; i < common; i++) {
+			int cmp = (data.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return length - key.length;
+	}
+
+	private int compare(int offsetA, int lengthA, int offsetB, int lengthB) {
+		int common = Math.min(lengthA, lengthB);
+		for (int i = 0; i < common; i++) {
+			int cmp = (data.get(offsetA + i) & 0xFF) - (data.get(offsetB + i) & 0xFF);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return lengthA - lengthB;
+	}
+
+	/**
+	 * Merge sort of an index permutation by entry name, avoiding the boxing a
+	 * {@code Comparator} over the indexes would need.
+	 */
+	private void sortByName(int[] order, int[] scratch, int from, int to, int[] offsets, int[] lengths) {
+		if (to - from < 2) {
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		sortByName(order, scratch, from, mid, offsets, lengths);
+		sortByName(order, scratch, mid, to, offsets, lengths);
+		int a = order[mid - 1];
+		int b = order[mid];
+		if (compare(offsets[a], lengths[a], offsets[b], lengths[b]) <= 0) {
+			return;
+		}
+		System.arraycopy(order, from, scratch, from, to - from);
+		int left = from;
+		int right = mid;
+		for (int i = from; i < to; i++) {
+			if (right >= to) {
+				order[i] = scratch[left++];
+			} else if (left >= mid) {
+				order[i] = scratch[right++];
+			} else {
+				int l = scratch[left];
+				int r = scratch[right];
+				order[i] = compare(offsets[l], lengths[l], offsets[r], lengths[r]) <= 0 ? scratch[left++] : scratch[right++];
+			}
+		}
+	}
+
+	private int findEnd() throws ZipException {
+		int last = data.capacity() - END_HEADER;
+		int stop = Math.max(0, last - MAX_COMMENT);
+		for (int pos = last; pos >= stop; pos--) {
+			if (data.getInt(pos) == END_SIG && pos + END_HEADER + u16(pos + 20) <= data.capacity()) {
+				return pos;
+			}
+		}
+		throw new ZipException("No end of central directory found in '" + name + "'");
+	}
+
+	/**
+	 * Reads an 8 byte value of a zip64 extra field, which must lie within the
+	 * field.
+	 */
+	private long zip64Field(int pos, int fieldEnd) throws ZipException {
+		if (pos + 8 > fieldEnd) {
+			throw new ZipException("Truncated zip64 extra field in '" + name + "'");
+		}
+		return data.getLong(pos);
+	}
+
+	private int checkedOffset(long value) throws ZipException {
+		if (value < 0 || value > data.capacity()) {
+			throw new ZipException("Invalid offset or size in '" + name + "'");
+		}
+		return (int) value;
+	}
+
+	private int u16(int pos) {
+		return data.getShort(pos) & 0xFFFF;
+	}
+
+	private long u32(int pos) {
+		return data.getInt(pos) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Inflates an entry as it is read, ending its {@code Inflater} on close.
+	 */
+	private static final class EntryInflaterInputStream extends InflaterInputStream {
+		private boolean eof = false;
+		private boolean closed = false;
+
+		EntryInflaterInputStream(ByteBuffer compressed) {
+			super(new ByteBufferInputStream(compressed), new Inflater(true), INFLATE_CHUNK);
+		}
+
+		@Override
+		protected void fill() throws IOException {
+			if (eof) {
+				throw new ZipException("Unexpected end of deflated entry");
+			}
+			len = in.read(buf, 0, buf.length);
+			if (len == -1) {
+				// Raw inflate may need one trailing byte past the end of the data
+				buf[0] = 0;
+				len = 1;
+				eof = true;
+			}
+			inf.setInput(buf, 0, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				inf.end();
+				super.close();
+			}
+		}
+	}
+}
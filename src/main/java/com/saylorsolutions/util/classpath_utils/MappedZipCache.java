@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Cache;
+
+/**
+ * Shared pool of {@link MappedZipArchive} views, keyed by the canonical path of
+ * the archive, or by the location of an archive nested in a jar.
+ * <br/>
+ * Each view remembers the size and modification time of the file on disk it
+ * was read from, and is checked against them whenever it is looked up. An
+ * archive that has been rebuilt or truncated is mapped again instead of being
+ * read through its stale central directory. Views already handed out keep
+ * reading the old mapping, so an archive should be replaced by a rename rather
+ * than rewritten in place while it is being read.
+ * <br/>
+ * Views are evicted in least recently used order once more than
+ * {@link #getMaxMapped()} are cached. The JVM can't unmap a file explicitly, so
+ * the mapping of an evicted view is released once the view and every buffer
+ * read from it have been collected.
+ */
+public class MappedZipCache {
+	public static final int DEFAULT_MAX_MAPPED = 64;
+
+	private final Map<String, Mapping> mappings = new LinkedHashMap<>(16, 0.75f, true);
+	private int maxMapped = DEFAULT_MAX_MAPPED;
+
+	/**
+	 * Gets a view of an archive, mapping it when it isn't cached or has changed
+	 * on disk since it was mapped.
+	 *
+	 * @param archive The zip archive on disk.
+	 * @return A view of the archive.
+	 * @throws ZipException If the archive is malformed or larger than 2GB.
+	 * @throws IOException  If the archive could not be mapped.
+	 */
+	public MappedZipArchive get(File archive) throws IOException {
+		File file = archive.getCanonicalFile();
+		return get(file.getPath(), file, () -> MappedZipArchive.open(file));
+	}
+
+	/**
+	 * Gets a cached view, opening it when it isn't cached or the file it was read
+	 * from has changed.
+	 *
+	 * @param key    The key of the view.
+	 * @param source The file on disk the view is read from.
+	 * @param opener Opens the view on a miss.
+	 * @return The view, or null if the opener found nothing to open.
+	 */
+	MappedZipArchive get(String key, File source, Opener opener) throws IOException {
+		// Stamped before opening, so a change while the view is read is caught next time
+		long length = source.length();
+		long modified = source.lastModified();
+		synchronized (this) {
+			Mapping mapping = mappings.get(key);
+			if (mapping != null) {
+				if (mapping.matches(length, modified)) {
+					ClasspathLoader.getMetrics().cacheHit(Cache.MAPPED_ZIP);
+					return mapping.archive;
+				}
+				mappings.remove(key);
+			}
+		}
+		ClasspathLoader.getMetrics().cacheMiss(Cache.MAPPED_ZIP);
+
+		// Mapping and parsing happen outside the lock so one archive doesn't stall the others
+		MappedZipArchive archive = opener.open();
+		if (archive == null) {
+			return null;
+		}
+		synchronized (this) {
+			Mapping mapping = mappings.get(key);
+			if (mapping != null && mapping.matches(length, modified)) {
+				return mapping.archive;
+			}
+			mappings.put(key, new Mapping(archive, source, length, modified));
+			evictOverflow();
+			return archive;
+		}
+	}
+
+	/**
+	 * Drops the view of an archive, along with the views of archives nested in
+	 * it.
+	 *
+	 * @param archive The zip archive on disk.
+	 */
+	public void invalidate(File archive) {
+		File file;
+		try {
+			file = archive.getCanonicalFile();
+		} catch (IOException iox) {
+			file = archive.getAbsoluteFile();
+		}
+		synchronized (this) {
+			Iterator<Mapping> iter = mappings.values().iterator();
+			while (iter.hasNext()) {
+				if (iter.next().source.equals(file)) {
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops every cached view.
+	 */
+	public synchronized void invalidateAll() {
+		mappings.clear();
+	}
+
+	/**
+	 * @return The number of views currently cached.
+	 */
+	public synchronized int size() {
+		return mappings.size();
+	}
+
+	/**
+	 * @return The maximum number of views kept in the cache.
+	 */
+	public synchronized int getMaxMapped() {
+		return maxMapped;
+	}
+
+	/**
+	 * Sets the maximum number of views kept in the cache. Least recently used
+	 * views are evicted to honor the new limit.
+	 *
+	 * @param maxMapped The new limit, must be at least 1.
+	 */
+	public synchronized void setMaxMapped(int maxMapped) {
+		if (maxMapped < 1) {
+			throw new IllegalArgumentException("maxMapped must be at least 1");
+		}
+		this.maxMapped = maxMapped;
+		evictOverflow();
+	}
+
+	private void evictOverflow() {
+		Iterator<Mapping> iter = mappings.values().iterator();
+		while (mappings.size() > maxMapped && iter.hasNext()) {
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	interface Opener {
+		MappedZipArchive open() throws IOException;
+	}
+
+	private static final class Mapping {
+		final MappedZipArchive archive;
+		final File source;
+		final long length;
+		final long modified;
+
+		Mapping(MappedZipArchive archive, File source, long length, long modified) {
+			this.archive = archive;
+			this.source = source;
+			this.length = length;
+			this.modified = modified;
+		}
+
+		boolean matches(long length, long modified) {
+			return this.length == length && this.modified == modified;
+		}
+	}
+}
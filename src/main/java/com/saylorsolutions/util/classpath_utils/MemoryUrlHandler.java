@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Map;
+
+/**
+ * Opens the {@code memory:} URLs handed out by
+ * {@link ResourceSource#memory(Map)}, reading the resource out of its map when
+ * the connection is made.
+ */
+final class MemoryUrlHandler extends URLStreamHandler {
+	static final String PROTOCOL = "memory";
+
+	private final Map<String, byte[]> resources;
+
+	MemoryUrlHandler(Map<String, byte[]> resources) {
+		this.resources = resources;
+	}
+
+	URL toURL(String name) throws MalformedURLException {
+		return new URL(PROTOCOL, null, -1, "/" + ClasspathIndex.encodePath(name), this);
+	}
+
+	@Override
+	protected URLConnection openConnection(URL url) throws IOException {
+		String name = ClasspathIndex.decodePath(url.getPath().substring(1));
+		return new URLConnection(url) {
+			private byte[] contents;
+
+			@Override
+			public void connect() throws IOException {
+				if (contents == null) {
+					contents = resources.get(name);
+					if (contents == null) {
+						throw new FileNotFoundException("In-memory resource '" + name + "' no longer exists");
+					}
+					connected = true;
+				}
+			}
+
+			@Override
+			public long getContentLengthLong() {
+				try {
+					connect();
+					return contents.length;
+				} catch (IOException iox) {
+					return -1L;
+				}
+			}
+
+			@Override
+			public InputStream getInputStream() throws IOException {
+				connect();
+				return new ByteArrayInputStream(contents);
+			}
+		};
+	}
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Operation;
+
+/**
+ * {@code InputStream} counting the bytes read through it and reporting them to
+ * {@link ClasspathMetrics} once, when it is closed. Only used while metrics are
+ * being collected.
+ */
+class MeteredInputStream extends FilterInputStream {
+	private final ClasspathMetrics metrics;
+	private final Operation operation;
+	private long count = 0L;
+	private boolean reported = false;
+
+	MeteredInputStream(InputStream in, ClasspathMetrics metrics, Operation operation) {
+		super(in);
+		this.metrics = metrics;
+		this.operation = operation;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			count++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+		if (read > 0) {
+			count += read;
+		}
+		return read;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			if (!reported) {
+				reported = true;
+				metrics.bytesRead(operation, count);
+			}
+		}
+	}
+}
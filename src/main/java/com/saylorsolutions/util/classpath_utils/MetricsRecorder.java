@@ -0,0 +1,412 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Keeps counters and latency histograms of everything reported through
+ * {@link ClasspathMetrics}, and can publish them as JMX MBeans. Recording
+ * never locks.
+ * <br/>
+ * <pre>
+ * MetricsRecorder recorder = new MetricsRecorder();
+ * ClasspathLoader.setMetrics(recorder);
+ * recorder.registerMBeans();
+ * </pre>
+ * The MBeans are registered under the {@value #JMX_DOMAIN} domain, one named
+ * {@code type=ClasspathMetrics} with cache, handle and parse failure totals,
+ * and one per operation named
+ * {@code type=ClasspathMetrics,operation=fileInputStream} and so on.
+ */
+public class MetricsRecorder implements ClasspathMetrics {
+	public static final String JMX_DOMAIN = "com.saylorsolutions.util.classpath_utils";
+
+	private final Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+	private final Map<Cache, LongAdder> cacheHits = new EnumMap<>(Cache.class);
+	private final Map<Cache, LongAdder> cacheMisses = new EnumMap<>(Cache.class);
+	private final AtomicInteger openZipFiles = new AtomicInteger();
+	private final LongAdder parseFailures = new LongAdder();
+	private final List<ObjectName> registered = new ArrayList<>();
+
+	public MetricsRecorder() {
+		for (Operation operation : Operation.values()) {
+			operations.put(operation, new OperationStats());
+		}
+		for (Cache cache : Cache.values()) {
+			cacheHits.put(cache, new LongAdder());
+			cacheMisses.put(cache, new LongAdder());
+		}
+	}
+
+	@Override
+	public void operation(Operation operation, long elapsedNanos, boolean found) {
+		OperationStats stats = operations.get(operation);
+		stats.latency.record(elapsedNanos);
+		if (!found) {
+			stats.misses.increment();
+		}
+	}
+
+	@Override
+	public void bytesRead(Operation operation, long bytes) {
+		operations.get(operation).bytes.add(bytes);
+	}
+
+	@Override
+	public void failure(Operation operation, Throwable error) {
+		operations.get(operation).failures.increment();
+	}
+
+	@Override
+	public void cacheHit(Cache cache) {
+		cacheHits.get(cache).increment();
+	}
+
+	@Override
+	public void cacheMiss(Cache cache) {
+		cacheMisses.get(cache).increment();
+	}
+
+	@Override
+	public void openZipFiles(int open) {
+		openZipFiles.set(open);
+	}
+
+	@Override
+	public void parseFailure(Class<?> type) {
+		parseFailures.increment();
+	}
+
+	/**
+	 * @param operation The operation.
+	 * @return How many times the operation ran.
+	 */
+	public long count(Operation operation) {
+		return operations.get(operation).latency.count();
+	}
+
+	/**
+	 * @param operation The operation.
+	 * @return How many times the operation didn't find its resource.
+	 */
+	public long misses(Operation operation) {
+		return operations.get(operation).misses.sum();
+	}
+
+	/**
+	 * @param operation The operation.
+	 * @return How many times the operation failed with an exception.
+	 */
+	public long failures(Operation operation) {
+		return operations.get(operation).failures.sum();
+	}
+
+	/**
+	 * @param operation The operation.
+	 * @return The total number of bytes the operation read.
+	 */
+	public long bytesRead(Operation operation) {
+		return operations.get(operation).bytes.sum();
+	}
+
+	/**
+	 * @param operation The operation.
+	 * @return The mean time the operation took, in nanoseconds.
+	 */
+	public double meanLatencyNanos(Operation operation) {
+		return operations.get(operation).latency.mean();
+	}
+
+	/**
+	 * @param operation  The operation.
+	 * @param percentile The percentile, between 0 and 100.
+	 * @return The time within which the given percentage of runs finished, in
+	 *         nanoseconds, accurate to within 12.5%.
+	 */
+	public long latencyNanos(Operation operation, double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+		return operations.get(operation).latency.percentile(percentile);
+	}
+
+	/**
+	 * @param cache The cache.
+	 * @return How many lookups the cache answered.
+	 */
+	public long cacheHits(Cache cache) {
+		return cacheHits.get(cache).sum();
+	}
+
+	/**
+	 * @param cache The cache.
+	 * @return How many lookups the cache had to load.
+	 */
+	public long cacheMisses(Cache cache) {
+		return cacheMisses.get(cache).sum();
+	}
+
+	/**
+	 * @return The last reported number of open {@code ZipFile} handles.
+	 */
+	public int openZipFiles() {
+		return openZipFiles.get();
+	}
+
+	/**
+	 * @return How many property values failed to parse in a typed getter.
+	 */
+	public long parseFailures() {
+		return parseFailures.sum();
+	}
+
+	/**
+	 * Zeroes all counters and histograms. The open handle count is kept, since
+	 * it is a level rather than a total.
+	 */
+	public void reset() {
+		for (OperationStats stats : operations.values()) {
+			stats.latency.reset();
+			stats.misses.reset();
+			stats.failures.reset();
+			stats.bytes.reset();
+		}
+		cacheHits.values().forEach(LongAdder::reset);
+		cacheMisses.values().forEach(LongAdder::reset);
+		parseFailures.reset();
+	}
+
+	/**
+	 * Publishes these metrics as MBeans on the platform MBean server.
+	 *
+	 * @throws JMException If the MBeans can't be registered, such as when another
+	 *                     recorder has already registered them.
+	 */
+	public synchronized void registerMBeans() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			register(server, new ObjectName(JMX_DOMAIN + ":type=ClasspathMetrics"),
+					new StandardMBean(new Summary(), SummaryMBean.class));
+			for (Operation operation : Operation.values()) {
+				register(server, new ObjectName(JMX_DOMAIN + ":type=ClasspathMetrics,operation=" + operation),
+						new StandardMBean(new OperationView(operation), OperationMBean.class));
+			}
+		} catch (JMException jmx) {
+			unregisterMBeans();
+			throw jmx;
+		}
+	}
+
+	/**
+	 * Removes the MBeans published by {@link #registerMBeans()}.
+	 */
+	public synchronized void unregisterMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : registered) {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException jmx) {
+				/* Already gone */
+			}
+		}
+		registered.clear();
+	}
+
+	private void register(MBeanServer server, ObjectName name, Object mbean) throws JMException {
+		server.registerMBean(mbean, name);
+		registered.add(name);
+	}
+
+	/**
+	 * Totals across all operations.
+	 */
+	public interface SummaryMBean {
+		long getResourceLookupCacheHits();
+
+		long getResourceLookupCacheMisses();
+
+		long getResourceBytesCacheHits();
+
+		long getResourceBytesCacheMisses();
+
+		long getZipFileCacheHits();
+
+		long getZipFileCacheMisses();
+
+		long getMappedZipCacheHits();
+
+		long getMappedZipCacheMisses();
+
+		int getOpenZipFiles();
+
+		long getParseFailures();
+
+		void reset();
+	}
+
+	/**
+	 * Counters and latency percentiles of a single operation. Latencies are in
+	 * microseconds.
+	 */
+	public interface OperationMBean {
+		long getCount();
+
+		long getMisses();
+
+		long getFailures();
+
+		long getBytesRead();
+
+		double getMeanLatencyMicros();
+
+		double getP50LatencyMicros();
+
+		double getP90LatencyMicros();
+
+		double getP99LatencyMicros();
+
+		double getMaxLatencyMicros();
+	}
+
+	private static final class OperationStats {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final LongAdder misses = new LongAdder();
+		final LongAdder failures = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+	}
+
+	private final class Summary implements SummaryMBean {
+		@Override
+		public long getResourceLookupCacheHits() {
+			return cacheHits(Cache.RESOURCE_LOOKUP);
+		}
+
+		@Override
+		public long getResourceLookupCacheMisses() {
+			return cacheMisses(Cache.RESOURCE_LOOKUP);
+		}
+
+		@Override
+		public long getResourceBytesCacheHits() {
+			return cacheHits(Cache.RESOURCE_BYTES);
+		}
+
+		@Override
+		public long getResourceBytesCacheMisses() {
+			return cacheMisses(Cache.RESOURCE_BYTES);
+		}
+
+		@Override
+		public long getZipFileCacheHits() {
+			return cacheHits(Cache.ZIP_FILE);
+		}
+
+		@Override
+		public long getZipFileCacheMisses() {
+			return cacheMisses(Cache.ZIP_FILE);
+		}
+
+		@Override
+		public long getMappedZipCacheHits() {
+			return cacheHits(Cache.MAPPED_ZIP);
+		}
+
+		@Override
+		public long getMappedZipCacheMisses() {
+			return cacheMisses(Cache.MAPPED_ZIP);
+		}
+
+		@Override
+		public int getOpenZipFiles() {
+			return openZipFiles();
+		}
+
+		@Override
+		public long getParseFailures() {
+			return parseFailures();
+		}
+
+		@Override
+		public void reset() {
+			MetricsRecorder.this.reset();
+		}
+	}
+
+	private final class OperationView implements OperationMBean {
+		private final Operation operation;
+
+		OperationView(Operation operation) {
+			this.operation = operation;
+		}
+
+		@Override
+		public long getCount() {
+			return count(operation);
+		}
+
+		@Override
+		public long getMisses() {
+			return misses(operation);
+		}
+
+		@Override
+		public long getFailures() {
+			return failures(operation);
+		}
+
+		@Override
+		public long getBytesRead() {
+			return bytesRead(operation);
+		}
+
+		@Override
+		public double getMeanLatencyMicros() {
+			return meanLatencyNanos(operation) / 1000.0;
+		}
+
+		@Override
+		public double getP50LatencyMicros() {
+			return latencyNanos(operation, 50) / 1000.0;
+		}
+
+		@Override
+		public double getP90LatencyMicros() {
+			return latencyNanos(operation, 90) / 1000.0;
+		}
+
+		@Override
+		public double getP99LatencyMicros() {
+			return latencyNanos(operation, 99) / 1000.0;
+		}
+
+		@Override
+		public double getMaxLatencyMicros() {
+			return operations.get(operation).latency.max() / 1000.0;
+		}
+	}
+}
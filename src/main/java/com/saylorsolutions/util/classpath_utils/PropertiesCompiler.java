@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Compiles properties files into binary snapshots that
+ * {@link ClasspathProperties} opens in place of the text, skipping
+ * {@code Properties.load} altogether. A snapshot is written next to its source
+ * with a {@code .snapshot} suffix and records a checksum of
+ * the source, so a snapshot that no longer matches its source is ignored
+ * rather than served.
+ * <br/>
+ * Snapshots can be compiled at build time, by running this class with the
+ * files to compile as arguments, or on first run with
+ * {@link #compile(String)}.
+ */
+public final class PropertiesCompiler {
+	private PropertiesCompiler() {
+	}
+
+	/**
+	 * Compiles each properties file named on the command line.
+	 *
+	 * @param args The paths of the properties files.
+	 * @throws IOException If a file could not be compiled.
+	 */
+	public static void main(String[] args) throws IOException {
+		for (String arg : args) {
+			System.out.println("Compiled '" + arg + "' into '" + compile(new File(arg)) + "'");
+		}
+	}
+
+	/**
+	 * Compiles a properties file into a snapshot next to it.
+	 *
+	 * @param source The properties file.
+	 * @return The snapshot file.
+	 * @throws IOException If the file could not be read or the snapshot written.
+	 */
+	public static File compile(File source) throws IOException {
+		File target = new File(source.getPath() + PropertiesSnapshot.SUFFIX);
+		compile(source, target);
+		return target;
+	}
+
+	/**
+	 * Compiles a properties file into a snapshot. The snapshot is written to a
+	 * temporary file and moved into place, so readers never see a partial
+	 * snapshot.
+	 *
+	 * @param source The properties file.
+	 * @param target The snapshot file to write.
+	 * @throws IOException If the file could not be read or the snapshot written.
+	 */
+	public static void compile(File source, File target) throws IOException {
+		ByteBuffer contents = PropertiesSnapshot.map(source);
+		Properties props = new Properties();
+		props.load(new ByteBufferInputStream(contents));
+		ByteBuffer snapshot = PropertiesSnapshot.compile(contents, PropertyTable.of(props));
+
+		Path targetPath = target.getAbsoluteFile().toPath();
+		Path temp = Files.createTempFile(targetPath.getParent(), target.getName(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while (snapshot.hasRemaining()) {
+					channel.write(snapshot);
+				}
+			}
+			Files.move(temp, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Compiles a properties resource into a snapshot next to it, so later
+	 * loads of the resource use the snapshot. Only resources that are plain
+	 * files can be compiled this way.
+	 *
+	 * @param resourceName The filename of the properties on the classpath.
+	 * @return Whether or not the snapshot was written.
+	 */
+	public static boolean compile(String resourceName) {
+		File source = ClasspathLoader.fileReference(resourceName);
+		if (source == null) {
+			System.err.println(PropertiesCompiler.class.getSimpleName() + ": Classpath resource '" + resourceName
+					+ "' is not a plain file and can't be compiled");
+			return false;
+		}
+		try {
+			compile(source);
+			ClasspathLoader.resourceCache().invalidate(resourceName + PropertiesSnapshot.SUFFIX);
+			return true;
+		} catch (IOException | IllegalArgumentException ex) {
+			System.err.println(PropertiesCompiler.class.getSimpleName() + ": Failed to compile '" + resourceName + "'");
+			ex.printStackTrace();
+		}
+		return false;
+	}
+}
@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Property store over a compiled binary snapshot of a properties file, read
+ * in place from a mapped or loaded buffer. Nothing is parsed when a snapshot
+ * is opened; keys and values are decoded the first time they are looked up.
+ * <br/>
+ * A snapshot is laid out as:
+ * <ul>
+ * <li>a header with the length and CRC-32 of the source it was compiled from,
+ * the number of entries, the size of the hash table and the CRC-32 of the
+ * snapshot itself,</li>
+ * <li>an open addressing hash table of entry numbers, probed linearly from the
+ * spread {@code String.hashCode} of the key,</li>
+ * <li>fixed size entries holding the key hash, the offsets and lengths of the
+ * key and value in the string table, and the value pre-parsed as a
+ * {@code long} and a {@code double} where it parses as one,</li>
+ * <li>a string table of UTF-8 keys and values.</li>
+ * </ul>
+ * Booleans are not pre-parsed. As with properties parsed from text, they are
+ * matched against {@link ClasspathProperties#TRUTHY} and
+ * {@link ClasspathProperties#FALSY} the first time a key is read as one.
+ * <br/>
+ * A snapshot is checked against its own CRC-32 when it is opened, so a
+ * corrupted one is ignored rather than failing reads later on.
+ *
+ * @see PropertiesCompiler
+ */
+final class PropertiesSnapshot implements PropertyStore {
+	static final String SUFFIX = ".snapshot";
+
+	private static final int MAGIC = 0x43505053;
+	private static final int VERSION = 2;
+	private static final int CRC_OFFSET = 32;
+	private static final int HEADER_SIZE = 40;
+	private static final int ENTRY_SIZE = 40;
+	private static final int LONG_PARSED = 1;
+	private static final int DOUBLE_PARSED = 2;
+	private static final int MAP_THRESHOLD = 64 * 1024;
+
+	private final ByteBuffer data;
+	private final int capacity;
+	private final int mask;
+	private final int size;
+	private final int entriesOffset;
+	private final int stringsOffset;
+	private final String[] keys;
+	private final String[] values;
+	private final TypedValue[] typedValues;
+
+	private PropertiesSnapshot(ByteBuffer data) throws IOException {
+		this.data = data.slice();
+		if (this.data.limit() < HEADER_SIZE || this.data.getInt(0) != MAGIC || this.data.getInt(4) != VERSION) {
+			throw new IOException("Not a properties snapshot, or one of an unknown version");
+		}
+		this.size = this.data.getInt(24);
+		this.capacity = this.data.getInt(28);
+		if (size < 0 || capacity <= size || Integer.bitCount(capacity) != 1) {
+			throw new IOException("Properties snapshot is corrupt");
+		}
+		this.mask = capacity - 1;
+		this.entriesOffset = HEADER_SIZE + capacity * 4;
+		this.stringsOffset = entriesOffset + size * ENTRY_SIZE;
+		if (stringsOffset < 0 || stringsOffset > this.data.limit()) {
+			throw new IOException("Properties snapshot is truncated");
+		}
+		if (this.data.getLong(CRC_OFFSET) != bodyChecksum(this.data)) {
+			throw new IOException("Properties snapshot is corrupt");
+		}
+		this.keys = new String[size];
+		this.values = new String[size];
+		this.typedValues = new TypedValue[size];
+	}
+
+	/**
+	 * Opens the snapshot compiled from a source, if there is one and it was
+	 * compiled from the source as it is now.
+	 *
+	 * @param source   The source's contents.
+	 * @param snapshot The snapshot's contents.
+	 * @return The snapshot, or null if it is stale or can't be read.
+	 */
+	static PropertiesSnapshot open(ByteBuffer source, ByteBuffer snapshot) {
+		try {
+			PropertiesSnapshot opened = new PropertiesSnapshot(snapshot);
+			if (opened.data.getLong(8) == source.remaining() && opened.data.getLong(16) == checksum(source)) {
+				return opened;
+			}
+		} catch (IOException | RuntimeException ex) {
+			System.err.println(PropertiesSnapshot.class.getSimpleName() + ": Ignoring unreadable snapshot, " + ex.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Compiles properties into a snapshot.
+	 *
+	 * @param source     The contents the properties were loaded from.
+	 * @param properties The loaded properties.
+	 * @return The snapshot's contents.
+	 */
+	static ByteBuffer compile(ByteBuffer source, PropertyStore properties) {
+		List<byte[]> keyBytes = new ArrayList<>(properties.size());
+		List<byte[]> valueBytes = new ArrayList<>(properties.size());
+		List<String> valueStrings = new ArrayList<>(properties.size());
+		int[] hashes = new int[properties.size()];
+		properties.forEach((key, value) -> {
+			hashes[keyBytes.size()] = spread(key.hashCode());
+			keyBytes.add(key.getBytes(StandardCharsets.UTF_8));
+			valueBytes.add(value.getBytes(StandardCharsets.UTF_8));
+			valueStrings.add(value);
+		});
+		int count = keyBytes.size();
+		int capacity = Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1;
+		long stringsSize = 0;
+		for (int i = 0; i < count; i++) {
+			stringsSize += keyBytes.get(i).length + valueBytes.get(i).length;
+		}
+		long total = HEADER_SIZE + capacity * 4L + (long) count * ENTRY_SIZE + stringsSize;
+		if (total > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Properties are too large for a snapshot");
+		}
+
+		ByteBuffer out = ByteBuffer.allocate((int) total);
+		out.putInt(MAGIC).putInt(VERSION).putLong(source.remaining()).putLong(checksum(source));
+		// The snapshot's own checksum is filled in once the rest is written
+		out.putInt(count).putInt(capacity).putLong(0L);
+
+		int[] table = new int[capacity];
+		for (int i = 0; i < count; i++) {
+			int slot = hashes[i] & (capacity - 1);
+			while (table[slot] != 0) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			table[slot] = i + 1;
+		}
+		for (int entry : table) {
+			out.putInt(entry);
+		}
+
+		int stringOffset = 0;
+		for (int i = 0; i < count; i++) {
+			int keyLength = keyBytes.get(i).length;
+			int valueLength = valueBytes.get(i).length;
+			String value = valueStrings.get(i);
+
+			// Parsed as TypedValue would, only successes are recorded. Booleans are left to TypedValue,
+			// which matches them against the word lists in use when they are first read
+			int flags = 0;
+			long longValue = 0L;
+			double doubleValue = 0.0;
+			try {
+				longValue = Integer.parseInt(value);
+				flags |= LONG_PARSED;
+			} catch (NumberFormatException nfx) {
+				/* Parsed again, and reported, if it is ever read */
+			}
+			try {
+				doubleValue = Double.parseDouble(value);
+				flags |= DOUBLE_PARSED;
+			} catch (NumberFormatException nfx) {
+				/* Parsed again, and reported, if it is ever read */
+			}
+			out.putInt(hashes[i]).putInt(stringOffset).putInt(keyLength).putInt(stringOffset + keyLength)
+					.putInt(valueLength).putInt(flags).putLong(longValue).putDouble(doubleValue);
+			stringOffset += keyLength + valueLength;
+		}
+		for (int i = 0; i < count; i++) {
+			out.put(keyBytes.get(i)).put(valueBytes.get(i));
+		}
+		out.flip();
+		out.putLong(CRC_OFFSET, bodyChecksum(out));
+		return out;
+	}
+
+	/**
+	 * Maps a file read-only. Small files are read instead, since setting up a
+	 * mapping costs more than reading a few pages.
+	 */
+	static ByteBuffer map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File '" + file + "' is too large to be mapped");
+			}
+			if (size >= MAP_THRESHOLD) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				/* Keep reading */
+			}
+			buffer.flip();
+			return buffer;
+		}
+	}
+
+	/**
+	 * Checksums a whole snapshot apart from the slot its checksum is stored in.
+	 */
+	private static long bodyChecksum(ByteBuffer snapshot) {
+		CRC32 crc = new CRC32();
+		ByteBuffer view = snapshot.duplicate();
+		view.position(0).limit(CRC_OFFSET);
+		crc.update(view);
+		view.limit(snapshot.limit()).position(HEADER_SIZE);
+		crc.update(view);
+		return crc.getValue();
+	}
+
+	static long checksum(ByteBuffer source) {
+		CRC32 crc = new CRC32();
+		crc.update(source.duplicate());
+		return crc.getValue();
+	}
+
+	@Override
+	public String get(String key) {
+		int entry = entry(key);
+		return entry >= 0 ? value(entry) : null;
+	}
+
+	@Override
+	public TypedValue typedValue(String key) {
+		int entry = entry(key);
+		if (entry < 0) {
+			return TypedValue.EMPTY;
+		}
+		TypedValue value = typedValues[entry];
+		if (value == null) {
+			int at = entriesOffset + entry * ENTRY_SIZE;
+			int flags = data.getInt(at + 20);
+			value = new TypedValue(value(entry), (flags & LONG_PARSED) != 0, data.getLong(at + 24),
+					(flags & DOUBLE_PARSED) != 0, data.getDouble(at + 32));
+			typedValues[entry] = value;
+		}
+		return value;
+	}
+
+	@Override
+	public void forEach(BiConsumer<String, String> action) {
+		for (int entry = 0; entry < size; entry++) {
+			action.accept(key(entry), value(entry));
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private int entry(String key) {
+		int hash = spread(key.hashCode());
+		int slot = hash & mask;
+		int entry;
+		while ((entry = data.getInt(HEADER_SIZE + slot * 4) - 1) >= 0) {
+			if (data.getInt(entriesOffset + entry * ENTRY_SIZE) == hash && key(entry).equals(key)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private String key(int entry) {
+		String key = keys[entry];
+		if (key == null) {
+			int at = entriesOffset + entry * ENTRY_SIZE;
+			key = string(data.getInt(at + 4), data.getInt(at + 8));
+			keys[entry] = key;
+		}
+		return key;
+	}
+
+	private String value(int entry) {
+		String value = values[entry];
+		if (value == null) {
+			int at = entriesOffset + entry * ENTRY_SIZE;
+			value = string(data.getInt(at + 12), data.getInt(at + 16));
+			values[entry] = value;
+		}
+		return value;
+	}
+
+	private String string(int offset, int length) {
+		int start = stringsOffset + offset;
+		if (data.hasArray()) {
+			return new String(data.array(), data.arrayOffset() + start, length, StandardCharsets.UTF_8);
+		}
+		byte[] bytes = new byte[length];
+		ByteBuffer view = data.duplicate();
+		view.position(start);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the backing files of reloadable {@code ClasspathProperties} for
+ * changes to their modification time or size, on a single shared daemon
+ * thread. Watched instances are only weakly referenced, so an instance that is
+ * no longer used stops being polled.
+ */
+final class PropertiesWatcher {
+	private static ScheduledExecutorService scheduler;
+
+	private PropertiesWatcher() {
+	}
+
+	/**
+	 * Starts polling files, reloading the properties whenever any of them
+	 * changes. Null entries are skipped.
+	 *
+	 * @return The scheduled poll, cancel it to stop watching.
+	 */
+	static ScheduledFuture<?> watch(ClasspathProperties props, File[] files, long pollIntervalMillis) {
+		PollTask task = new PollTask(props, files);
+		task.future = scheduler().scheduleWithFixedDelay(task, pollIntervalMillis, pollIntervalMillis,
+				TimeUnit.MILLISECONDS);
+		return task.future;
+	}
+
+	private static synchronized ScheduledExecutorService scheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "classpath-properties-watcher");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return scheduler;
+	}
+
+	private static final class PollTask implements Runnable {
+		private final WeakReference<ClasspathProperties> props;
+		private final File[] files;
+		private final long[] lastModified;
+		private final long[] length;
+		volatile ScheduledFuture<?> future;
+
+		PollTask(ClasspathProperties props, File[] files) {
+			this.props = new WeakReference<>(props);
+			this.files = files;
+			this.lastModified = new long[files.length];
+			this.length = new long[files.length];
+			for (int i = 0; i < files.length; i++) {
+				if (files[i] != null) {
+					lastModified[i] = files[i].lastModified();
+					length[i] = files[i].length();
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			ClasspathProperties target = props.get();
+			if (target == null) {
+				ScheduledFuture<?> scheduled = future;
+				if (scheduled != null) {
+					scheduled.cancel(false);
+				}
+				return;
+			}
+			File changed = null;
+			for (int i = 0; i < files.length; i++) {
+				if (files[i] == null) {
+					continue;
+				}
+				long modified = files[i].lastModified();
+				long size = files[i].length();
+				if (modified != lastModified[i] || size != length[i]) {
+					lastModified[i] = modified;
+					length[i] = size;
+					changed = files[i];
+				}
+			}
+			if (changed != null) {
+				try {
+					target.reload();
+				} catch (RuntimeException rx) {
+					// Keep polling, a later edit may fix whatever went wrong
+					System.err.println(PropertiesWatcher.class.getSimpleName() + ": Failed to reload '" + changed + "'");
+					rx.printStackTrace();
+				}
+			}
+		}
+	}
+}
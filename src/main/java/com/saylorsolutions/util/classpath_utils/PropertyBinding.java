@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathProperties.Default;
+import com.saylorsolutions.util.classpath_utils.ClasspathProperties.Key;
+
+/**
+ * Implements a configuration interface over a set of properties. Every value
+ * is converted to its accessor's return type, by the same rules as the typed
+ * getters, when the binding is created and again on each update. The results
+ * are kept boxed in an array indexed like the accessors, so a call is a scan
+ * of a few method references and an array read.
+ * <br/>
+ * An update whose values don't all convert is rejected as a whole, leaving the
+ * previous values in place.
+ */
+final class PropertyBinding<T> implements InvocationHandler {
+	private final Class<T> type;
+	private final Method[] accessors;
+	private final String[] keys;
+	private final String[] defaults;
+	private final T proxy;
+	private volatile Object[] values;
+
+	private PropertyBinding(Class<T> type, Method[] accessors) {
+		this.type = type;
+		this.accessors = accessors;
+		this.keys = new String[accessors.length];
+		this.defaults = new String[accessors.length];
+		for (int i = 0; i < accessors.length; i++) {
+			Key key = accessors[i].getAnnotation(Key.class);
+			keys[i] = (key != null ? key.value() : keyOf(accessors[i].getName()));
+			Default defaultValue = accessors[i].getAnnotation(Default.class);
+			defaults[i] = (defaultValue != null ? defaultValue.value() : null);
+		}
+		this.proxy = type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, this));
+	}
+
+	/**
+	 * Checks that a type can be bound and prepares its accessors.
+	 *
+	 * @throws IllegalArgumentException If the type isn't an interface, or has
+	 *                                  methods that aren't value accessors.
+	 */
+	static <T> PropertyBinding<T> of(Class<T> type) {
+		if (!type.isInterface()) {
+			throw new IllegalArgumentException(type.getName() + " is not an interface");
+		}
+		List<Method> accessors = new ArrayList<>();
+		for (Method method : type.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers())) {
+				continue;
+			}
+			if (method.isDefault()) {
+				throw new IllegalArgumentException("Default method " + method.getName() + " can't be bound");
+			}
+			if (method.getParameterCount() != 0) {
+				throw new IllegalArgumentException("Method " + method.getName() + " takes parameters");
+			}
+			if (!isSupported(method.getReturnType())) {
+				throw new IllegalArgumentException(
+						"Method " + method.getName() + " returns unsupported type " + method.getReturnType().getName());
+			}
+			accessors.add(method);
+		}
+		return new PropertyBinding<>(type, accessors.toArray(new Method[0]));
+	}
+
+	T proxy() {
+		return proxy;
+	}
+
+	/**
+	 * Converts the values of every accessor's key.
+	 *
+	 * @return Whether or not every value converted. Nothing changes if any
+	 *         didn't, and the problems are reported to {@code System.err}.
+	 */
+	boolean update(PropertyStore store) {
+		Object[] converted = new Object[accessors.length];
+		List<String> problems = new ArrayList<>();
+		for (int i = 0; i < accessors.length; i++) {
+			String raw = store.get(keys[i]);
+			TypedValue value = (raw != null ? store.typedValue(keys[i]) : null);
+			if (raw == null && defaults[i] != null) {
+				raw = defaults[i];
+				value = new TypedValue(raw);
+			}
+			if (raw == null) {
+				problems.add("'" + keys[i] + "' is missing");
+				continue;
+			}
+			// Converted as the typed getters parse values, which also report failures
+			Class<?> target = accessors[i].getReturnType();
+			converted[i] = (target == String.class ? raw : value.convert(target));
+			if (converted[i] == null) {
+				problems.add("'" + keys[i] + "' value '" + raw + "' is not a valid " + target.getSimpleName());
+			}
+		}
+		if (!problems.isEmpty()) {
+			System.err.println(ClasspathProperties.class.getSimpleName() + ": Can't bind " + type.getName() + ": "
+					+ String.join(", ", problems));
+			return false;
+		}
+		values = converted;
+		return true;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) {
+		Method[] accessors = this.accessors;
+		for (int i = 0; i < accessors.length; i++) {
+			if (accessors[i] == method) {
+				return values[i];
+			}
+		}
+		for (int i = 0; i < accessors.length; i++) {
+			if (accessors[i].equals(method)) {
+				return values[i];
+			}
+		}
+		switch (method.getName()) {
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "toString":
+			return toString();
+		default:
+			throw new UnsupportedOperationException(method.toString());
+		}
+	}
+
+	@Override
+	public String toString() {
+		Object[] current = values;
+		StringBuilder sb = new StringBuilder(type.getSimpleName()).append('{');
+		for (int i = 0; i < keys.length; i++) {
+			sb.append(i > 0 ? ", " : "").append(keys[i]).append('=').append(current[i]);
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Derives a key from an accessor name, dropping a {@code get} or {@code is}
+	 * prefix and separating words with dots, so {@code getPoolSize} reads
+	 * {@code pool.size}.
+	 */
+	static String keyOf(String methodName) {
+		String name = methodName;
+		if (name.length() > 3 && name.startsWith("get") && Character.isUpperCase(name.charAt(3))) {
+			name = name.substring(3);
+		} else if (name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2))) {
+			name = name.substring(2);
+		}
+		StringBuilder key = new StringBuilder(name.length() + 4);
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (Character.isUpperCase(c)) {
+				if (i > 0) {
+					key.append('.');
+				}
+				key.append(Character.toLowerCase(c));
+			} else {
+				key.append(c);
+			}
+		}
+		return key.toString();
+	}
+
+	private static boolean isSupported(Class<?> type) {
+		return type == String.class || type == boolean.class || type == Boolean.class || type == int.class
+				|| type == Integer.class || type == long.class || type == Long.class || type == double.class
+				|| type == Double.class || type == BigInteger.class || type == BigDecimal.class;
+	}
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable, thread safe key to value storage behind a
+ * {@code ClasspathProperties} snapshot.
+ */
+interface PropertyStore {
+	/**
+	 * @return The value of the key, or null if the key is not present.
+	 */
+	String get(String key);
+
+	/**
+	 * @return The typed interpretations of the key's value, or
+	 *         {@link TypedValue#EMPTY} if the key is not present.
+	 */
+	TypedValue typedValue(String key);
+
+	/**
+	 * Visits every key and value, in no particular order.
+	 */
+	void forEach(BiConsumer<String, String> action);
+
+	/**
+	 * @return The number of distinct keys.
+	 */
+	int size();
+}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable open addressing hash table of property keys to values, built once
+ * after loading. Lookups are a hash, a probe over parallel arrays and a string
+ * compare; nothing is locked, unlike the {@code Hashtable} behind
+ * {@code Properties}.
+ * <br/>
+ * The typed values parsed from each value are kept in a slot parallel to the
+ * value. They are created lazily, and a racing creation only costs a
+ * duplicate parse.
+ * <br/>
+ * An {@linkplain #interpolated(PropertyStore) interpolated} table holds a
+ * compiled {@link PropertyTemplate} in place of each value with placeholders,
+ * and replaces it with the resolved text the first time it is read. Later
+ * reads of the key are the same single lookup as for any other value.
+ */
+final class PropertyTable implements PropertyStore {
+	static final PropertyTable EMPTY = new PropertyTable(new String[0], new String[0]);
+
+	private static final byte UNVISITED = 0;
+	private static final byte VISITING = 1;
+	private static final byte VISITED = 2;
+
+	private final String[] keys;
+	private final Object[] values;
+	private final int[] hashes;
+	private final TypedValue[] typedValues;
+	private final int mask;
+	private final int size;
+
+	private PropertyTable(String[] keys, Object[] values) {
+		int capacity = Integer.highestOneBit(Math.max(2, keys.length * 2 - 1)) << 1;
+		this.keys = new String[capacity];
+		this.values = new Object[capacity];
+		this.hashes = new int[capacity];
+		this.typedValues = new TypedValue[capacity];
+		this.mask = capacity - 1;
+
+		int count = 0;
+		for (int i = 0; i < keys.length; i++) {
+			int hash = spread(keys[i].hashCode());
+			int slot = hash & mask;
+			while (this.keys[slot] != null && !(hashes[slot] == hash && this.keys[slot].equals(keys[i]))) {
+				slot = (slot + 1) & mask;
+			}
+			if (this.keys[slot] == null) {
+				count++;
+			}
+			this.keys[slot] = keys[i];
+			this.values[slot] = values[i];
+			this.hashes[slot] = hash;
+		}
+		this.size = count;
+	}
+
+	/**
+	 * Builds a table from loaded {@code Properties}, ignoring any entries that
+	 * aren't strings.
+	 */
+	static PropertyTable of(Properties props) {
+		String[] keys = new String[props.size()];
+		String[] values = new String[props.size()];
+		int count = 0;
+		for (Map.Entry<Object, Object> entry : props.entrySet()) {
+			if (entry.getKey() instanceof String && entry.getValue() instanceof String) {
+				keys[count] = (String) entry.getKey();
+				values[count] = (String) entry.getValue();
+				count++;
+			}
+		}
+		return of(keys, values, count);
+	}
+
+	/**
+	 * Builds a table from parallel key and value arrays. Later duplicates of a
+	 * key replace earlier ones.
+	 */
+	static PropertyTable of(String[] keys, String[] values, int count) {
+		if (count != keys.length) {
+			String[] trimmedKeys = new String[count];
+			String[] trimmedValues = new String[count];
+			System.arraycopy(keys, 0, trimmedKeys, 0, count);
+			System.arraycopy(values, 0, trimmedValues, 0, count);
+			return new PropertyTable(trimmedKeys, trimmedValues);
+		}
+		return new PropertyTable(keys, values);
+	}
+
+	/**
+	 * Builds a table serving the values of another store with their
+	 * placeholders resolved. Values are compiled here, once, and resolved the
+	 * first time they are read. Keys that refer to themselves through any chain
+	 * of placeholders are reported and served as written.
+	 *
+	 * @see PropertyTemplate
+	 */
+	static PropertyTable interpolated(PropertyStore source) {
+		String[] keys = new String[source.size()];
+		Object[] values = new Object[source.size()];
+		int[] count = { 0 };
+		source.forEach((key, value) -> {
+			PropertyTemplate template = PropertyTemplate.compile(value);
+			keys[count[0]] = key;
+			values[count[0]] = (template != null ? template : value);
+			count[0]++;
+		});
+		PropertyTable table = new PropertyTable(keys, values);
+		table.breakCycles();
+		return table;
+	}
+
+	@Override
+	public String get(String key) {
+		int slot = slot(key);
+		return slot >= 0 ? value(slot) : null;
+	}
+
+	@Override
+	public TypedValue typedValue(String key) {
+		int slot = slot(key);
+		if (slot < 0) {
+			return TypedValue.EMPTY;
+		}
+		TypedValue value = typedValues[slot];
+		if (value == null) {
+			value = new TypedValue(value(slot));
+			typedValues[slot] = value;
+		}
+		return value;
+	}
+
+	@Override
+	public void forEach(BiConsumer<String, String> action) {
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (keys[slot] != null) {
+				action.accept(keys[slot], value(slot));
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private String value(int slot) {
+		Object value = values[slot];
+		return (value instanceof String ? (String) value : resolve(slot));
+	}
+
+	/**
+	 * Resolves a template and publishes the result in its place. Racing
+	 * resolutions arrive at the same text, so the race is harmless.
+	 */
+	private String resolve(int slot) {
+		Object value = values[slot];
+		if (value instanceof String) {
+			return (String) value;
+		}
+		String resolved = ((PropertyTemplate) value).resolve(key -> {
+			int referenced = slot(key);
+			return (referenced >= 0 ? resolve(referenced) : null);
+		});
+		values[slot] = resolved;
+		return resolved;
+	}
+
+	/**
+	 * Finds keys whose templates refer back to themselves and replaces their
+	 * templates with the text as written, so resolution always terminates.
+	 */
+	private void breakCycles() {
+		byte[] state = new byte[keys.length];
+		List<Integer> path = new ArrayList<>();
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (values[slot] instanceof PropertyTemplate && state[slot] == UNVISITED) {
+				visit(slot, state, path);
+			}
+		}
+	}
+
+	private void visit(int slot, byte[] state, List<Integer> path) {
+		state[slot] = VISITING;
+		path.add(slot);
+		List<String> references = new ArrayList<>();
+		((PropertyTemplate) values[slot]).references(references);
+		for (String reference : references) {
+			int referenced = slot(reference);
+			if (referenced < 0 || !(values[referenced] instanceof PropertyTemplate)) {
+				continue;
+			}
+			if (state[referenced] == VISITING) {
+				for (int i = path.indexOf(referenced); i < path.size(); i++) {
+					int member = path.get(i);
+					if (values[member] instanceof PropertyTemplate) {
+						System.err.println(PropertyTable.class.getSimpleName() + ": Placeholders of '" + keys[member]
+								+ "' refer back to it and are not resolved");
+						values[member] = ((PropertyTemplate) values[member]).raw();
+					}
+				}
+			} else if (state[referenced] == UNVISITED) {
+				visit(referenced, state, path);
+			}
+		}
+		path.remove(path.size() - 1);
+		state[slot] = VISITED;
+	}
+
+	private int slot(String key) {
+		int hash = spread(key.hashCode());
+		int slot = hash & mask;
+		String found;
+		while ((found = keys[slot]) != null) {
+			if (hashes[slot] == hash && found.equals(key)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A property value compiled into literal text and placeholders, so resolving
+ * it never scans the value again.
+ * <br/>
+ * {@code ${key}} is replaced by the value of another key and
+ * {@code ${env:VAR}} by an environment variable. Either can be followed by
+ * {@code :-default}, used when the key or variable is missing; defaults may
+ * contain placeholders themselves. <code>$${</code> is a literal <code>${</code>. A
+ * placeholder that can't be resolved and has no default is kept as written.
+ */
+final class PropertyTemplate {
+	private static final String ENV_PREFIX = "env:";
+
+	private final String raw;
+	private final Object[] parts;
+
+	private PropertyTemplate(String raw, Object[] parts) {
+		this.raw = raw;
+		this.parts = parts;
+	}
+
+	/**
+	 * @return A template for the value, or null if it has no placeholders or
+	 *         escapes and can be served as is.
+	 */
+	static PropertyTemplate compile(String value) {
+		if (value.indexOf("${") < 0) {
+			return null;
+		}
+		return new PropertyTemplate(value, parse(value, 0, value.length()));
+	}
+
+	/**
+	 * @return The text as written, placeholders included.
+	 */
+	String raw() {
+		return raw;
+	}
+
+	/**
+	 * Adds the keys this template refers to, defaults included, to a list.
+	 */
+	void references(List<String> keys) {
+		references(parts, keys);
+	}
+
+	/**
+	 * @param lookup Resolves a key to its value, or null if there's no such key.
+	 */
+	String resolve(Function<String, String> lookup) {
+		StringBuilder builder = new StringBuilder(raw.length() + 16);
+		append(parts, lookup, builder);
+		return builder.toString();
+	}
+
+	private static Object[] parse(String value, int from, int to) {
+		List<Object> parts = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int i = from;
+		while (i < to) {
+			if (value.startsWith("$${", i) && i + 3 <= to) {
+				literal.append("${");
+				i += 3;
+				continue;
+			}
+			if (value.startsWith("${", i) && i + 2 <= to) {
+				int end = closingBrace(value, i + 2, to);
+				if (end >= 0) {
+					if (literal.length() > 0) {
+						parts.add(literal.toString());
+						literal.setLength(0);
+					}
+					parts.add(reference(value, i, i + 2, end));
+					i = end + 1;
+					continue;
+				}
+			}
+			literal.append(value.charAt(i++));
+		}
+		if (literal.length() > 0) {
+			parts.add(literal.toString());
+		}
+		return parts.toArray();
+	}
+
+	private static Reference reference(String value, int start, int from, int end) {
+		int depth = 0;
+		int split = -1;
+		for (int i = from; i < end; i++) {
+			if (value.startsWith("${", i)) {
+				depth++;
+				i++;
+			} else if (value.charAt(i) == '}') {
+				depth--;
+			} else if (depth == 0 && value.startsWith(":-", i)) {
+				split = i;
+				break;
+			}
+		}
+		String name = value.substring(from, split >= 0 ? split : end);
+		Object[] defaultValue = (split >= 0 ? parse(value, split + 2, end) : null);
+		boolean env = name.startsWith(ENV_PREFIX);
+		return new Reference(env ? name.substring(ENV_PREFIX.length()) : name, env, defaultValue,
+				value.substring(start, end + 1));
+	}
+
+	/**
+	 * @return The index of the brace closing a placeholder opened just before
+	 *         {@code from}, or -1 if it isn't closed.
+	 */
+	private static int closingBrace(String value, int from, int to) {
+		int depth = 0;
+		for (int i = from; i < to; i++) {
+			if (value.startsWith("${", i)) {
+				depth++;
+				i++;
+			} else if (value.charAt(i) == '}') {
+				if (depth == 0) {
+					return i;
+				}
+				depth--;
+			}
+		}
+		return -1;
+	}
+
+	private static void references(Object[] parts, List<String> keys) {
+		for (Object part : parts) {
+			if (part instanceof Reference) {
+				Reference reference = (Reference) part;
+				if (!reference.env) {
+					keys.add(reference.name);
+				}
+				if (reference.defaultValue != null) {
+					references(reference.defaultValue, keys);
+				}
+			}
+		}
+	}
+
+	private static void append(Object[] parts, Function<String, String> lookup, StringBuilder builder) {
+		for (Object part : parts) {
+			if (!(part instanceof Reference)) {
+				builder.append((String) part);
+				continue;
+			}
+			Reference reference = (Reference) part;
+			String value = (reference.env ? System.getenv(reference.name) : lookup.apply(reference.name));
+			if (value != null) {
+				builder.append(value);
+			} else if (reference.defaultValue != null) {
+				append(reference.defaultValue, lookup, builder);
+			} else {
+				builder.append(reference.text);
+			}
+		}
+	}
+
+	private static final class Reference {
+		final String name;
+		final boolean env;
+		final Object[] defaultValue;
+		final String text;
+
+		Reference(String name, boolean env, Object[] defaultValue, String text) {
+			this.name = name;
+			this.env = env;
+			this.defaultValue = defaultValue;
+			this.text = text;
+		}
+	}
+}
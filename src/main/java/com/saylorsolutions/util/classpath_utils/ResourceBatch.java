@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathLoader.ZipReaderMode;
+
+/**
+ * Reads many classpath resources at once. Plain files are read in parallel
+ * runs. Entries that resolve into the same archive are grouped so the archive
+ * is opened once, and are read in the order they are laid out in the archive,
+ * split into runs that are read in parallel.
+ */
+final class ResourceBatch {
+	/**
+	 * How many resources one task reads, enough to amortize scheduling without
+	 * starving the other workers.
+	 */
+	static final int RUN_LENGTH = 32;
+
+	private ResourceBatch() {
+	}
+
+	/**
+	 * Reads every resource, transforming the contents on the reading thread.
+	 *
+	 * @return The transformed contents of each resource that could be read,
+	 *         keyed by name in the order the names were given.
+	 */
+	static <T> CompletableFuture<Map<String, T>> load(Collection<String> filenames, Function<byte[], T> transform,
+			Executor executor) {
+		LinkedHashSet<String> names = new LinkedHashSet<>(filenames);
+		List<String> files = new ArrayList<>();
+		Map<File, List<String>> archives = new LinkedHashMap<>();
+		for (String name : names) {
+			URL url = ClasspathLoader.resourceCache().resolve(name);
+			if (url != null) {
+				File archive = archiveOf(url);
+				if (archive != null) {
+					archives.computeIfAbsent(archive, a -> new ArrayList<>()).add(name);
+				} else {
+					files.add(name);
+				}
+			}
+		}
+
+		Map<String, T> results = new ConcurrentHashMap<>();
+		List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		for (int from = 0; from < files.size(); from += RUN_LENGTH) {
+			List<String> run = files.subList(from, Math.min(files.size(), from + RUN_LENGTH));
+			tasks.add(CompletableFuture.runAsync(() -> readFiles(run, transform, results), executor));
+		}
+		for (Map.Entry<File, List<String>> group : archives.entrySet()) {
+			File archive = group.getKey();
+			List<String> entries = inArchiveOrder(archive, group.getValue());
+			for (int from = 0; from < entries.size(); from += RUN_LENGTH) {
+				List<String> run = entries.subList(from, Math.min(entries.size(), from + RUN_LENGTH));
+				tasks.add(CompletableFuture.runAsync(() -> readEntries(archive, run, transform, results), executor));
+			}
+		}
+
+		return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()])).thenApply(done -> {
+			Map<String, T> ordered = new LinkedHashMap<>();
+			for (String name : names) {
+				T value = results.get(name);
+				if (value != null) {
+					ordered.put(name, value);
+				}
+			}
+			return ordered;
+		});
+	}
+
+	/**
+	 * @return An executor that starts a virtual thread per task when the JDK has
+	 *         them, or the common {@code ForkJoinPool}.
+	 */
+	static Executor defaultExecutor() {
+		try {
+			return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			return ForkJoinPool.commonPool();
+		}
+	}
+
+	private static <T> void readFiles(List<String> run, Function<byte[], T> transform, Map<String, T> results) {
+		for (String name : run) {
+			byte[] bytes = ClasspathLoader.fileBytes(name);
+			if (bytes != null) {
+				results.put(name, transform.apply(bytes));
+			}
+		}
+	}
+
+	private static <T> void readEntries(File archive, List<String> run, Function<byte[], T> transform,
+			Map<String, T> results) {
+		if (ClasspathLoader.getZipReaderMode() == ZipReaderMode.MAPPED) {
+			MappedZipArchive mapped = ClasspathLoader.mappedZip(archive);
+			if (mapped == null) {
+				return;
+			}
+			for (String name : run) {
+				try {
+					ByteBuffer buffer = mapped.entryBuffer(name);
+					if (buffer != null) {
+						byte[] bytes = new byte[buffer.remaining()];
+						buffer.get(bytes);
+						results.put(name, transform.apply(bytes));
+					}
+				} catch (ZipException zx) {
+					System.err.println("Exception occurred while reading '" + name + "' from the mapped zip archive");
+					zx.printStackTrace();
+				}
+			}
+			return;
+		}
+
+		ZipFileCache cache = ClasspathLoader.zipFileCache();
+		ZipFileCache.Handle handle;
+		try {
+			handle = cache.acquire(archive);
+		} catch (IOException iox) {
+			System.err.println("Exception occurred while opening the ZipFile '" + archive + "'");
+			iox.printStackTrace();
+			return;
+		}
+		try {
+			for (String name : run) {
+				ZipEntry entry = handle.zipFile.getEntry(name);
+				if (entry == null) {
+					continue;
+				}
+				try (InputStream is = handle.zipFile.getInputStream(entry)) {
+					results.put(name, transform.apply(Streams.readFully(is, entry.getSize())));
+				} catch (IOException iox) {
+					System.err.println("Exception occurred while reading '" + name + "' from the ZipFile");
+					iox.printStackTrace();
+				}
+			}
+		} finally {
+			cache.release(handle);
+		}
+	}
+
+	/**
+	 * Sorts entry names by where their data is within the archive, so each run
+	 * reads forward through the file. Offsets come from the classpath index or
+	 * the mapped archive when either is in use; otherwise larger groups follow
+	 * the central directory, which archivers write in offset order.
+	 */
+	private static List<String> inArchiveOrder(File archive, List<String> entries) {
+		if (entries.size() < 2) {
+			return entries;
+		}
+		Map<String, Long> positions = new HashMap<>();
+		ClasspathIndex index = ClasspathLoader.getClasspathIndex();
+		if (index != null) {
+			for (String name : entries) {
+				ClasspathIndex.Location location = index.find(name);
+				if (location != null && location.isArchiveEntry()) {
+					positions.put(name, location.getOffset());
+				}
+			}
+		} else if (ClasspathLoader.getZipReaderMode() == ZipReaderMode.MAPPED) {
+			MappedZipArchive mapped = ClasspathLoader.mappedZip(archive);
+			if (mapped != null) {
+				for (String name : entries) {
+					int i = mapped.indexOf(name);
+					if (i >= 0) {
+						positions.put(name, (long) mapped.localHeaderOffsetAt(i));
+					}
+				}
+			}
+		} else if (entries.size() >= RUN_LENGTH) {
+			centralDirectoryPositions(archive, entries, positions);
+		}
+		if (positions.isEmpty()) {
+			return entries;
+		}
+
+		List<String> sorted = new ArrayList<>(entries);
+		sorted.sort((a, b) -> Long.compare(positions.getOrDefault(a, Long.MAX_VALUE),
+				positions.getOrDefault(b, Long.MAX_VALUE)));
+		return sorted;
+	}
+
+	private static void centralDirectoryPositions(File archive, List<String> entries, Map<String, Long> positions) {
+		LinkedHashSet<String> wanted = new LinkedHashSet<>(entries);
+		ZipFileCache cache = ClasspathLoader.zipFileCache();
+		try {
+			ZipFileCache.Handle handle = cache.acquire(archive);
+			try {
+				Enumeration<? extends ZipEntry> all = handle.zipFile.entries();
+				for (long position = 0; all.hasMoreElements() && positions.size() < wanted.size(); position++) {
+					String name = all.nextElement().getName();
+					if (wanted.contains(name)) {
+						positions.put(name, position);
+					}
+				}
+			} finally {
+				cache.release(handle);
+			}
+		} catch (IOException iox) {
+			// The entries will be read in the order given, and the error reported then
+		}
+	}
+
+	/**
+	 * @return The archive on disk holding a {@code jar:} resource, or null if the
+	 *         resource is a plain file or is nested within another archive.
+	 */
+	static File archiveOf(URL url) {
+		if (!"jar".equals(url.getProtocol())) {
+			return null;
+		}
+		String path = url.getPath();
+		int separator = path.indexOf("!/");
+		if (separator < 0 || path.indexOf("!/", separator + 2) >= 0) {
+			return null;
+		}
+		try {
+			URL archive = new URL(path.substring(0, separator));
+			return "file".equals(archive.getProtocol()) ? new File(archive.toURI()) : null;
+		} catch (MalformedURLException | URISyntaxException | IllegalArgumentException ex) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,506 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Cache;
+
+/**
+ * Cache of resource contents, bounded by the total number of bytes held rather
+ * than by the number of resources. Hits return read-only views of the cached
+ * bytes without copying them.
+ * <br/>
+ * Eviction is segmented LRU: new entries go into a probation segment and are
+ * promoted to a protected segment, holding up to 80% of the budget, when they
+ * are read again. Room is made by evicting from probation first, so a one-off
+ * read of many resources can't flush the ones that are read over and over.
+ * <br/>
+ * In off-heap mode contents are kept in direct buffers, keeping large blobs out
+ * of the garbage collected heap. Their memory is released when the last view
+ * of an evicted entry is collected.
+ * <br/>
+ * In deduplicating mode resources with identical contents, such as the same
+ * license or schema packaged in many jars, share a single buffer. Contents are
+ * keyed by length and CRC32, taken from the zip directory for jar entries or
+ * computed while the resource is read, and confirmed byte for byte before
+ * being shared. The budget still counts every resource at its full size.
+ * <br/>
+ * The cache is disabled by default.
+ */
+public class ResourceByteCache {
+	public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+	private static final int PROTECTED_PERCENT = 80;
+
+	private final Loader loader;
+	private final Map<Long, Shared> interned = new HashMap<>();
+	private final Map<ByteBuffer, Shared> owners = new IdentityHashMap<>();
+	private long retainedBytes = 0L;
+	private long sharedCount = 0L;
+	private volatile boolean deduplicating = false;
+	private final LinkedHashMap<String, ByteBuffer> probation = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<String, ByteBuffer> protect = new LinkedHashMap<>(16, 0.75f, true);
+	private long probationBytes = 0L;
+	private long protectedBytes = 0L;
+	private long maxBytes = DEFAULT_MAX_BYTES;
+	private boolean offHeap = false;
+	private volatile boolean enabled = false;
+	private long hits = 0L;
+	private long misses = 0L;
+
+	/**
+	 * Bumped whenever contents are dropped or caching is switched, so a load that
+	 * was running at the time doesn't store what it read.
+	 */
+	private long generation = 0L;
+
+	/**
+	 * @param loader Reads the contents of a resource, returning null when the
+	 *               resource does not exist or can't be read.
+	 */
+	public ResourceByteCache(Function<String, byte[]> loader) {
+		this((Loader) name -> {
+			byte[] bytes = loader.apply(name);
+			return (bytes != null ? new Loaded(bytes, -1L) : null);
+		});
+	}
+
+	private ResourceByteCache(Loader loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * Creates a cache whose loader can report the CRC32 of what it read, so
+	 * deduplication doesn't need another pass over the contents.
+	 */
+	static ResourceByteCache checksummed(Function<String, Loaded> loader) {
+		return new ResourceByteCache(loader::apply);
+	}
+
+	/**
+	 * Reads the contents of a resource along with their CRC32, when known.
+	 */
+	private interface Loader {
+		Loaded load(String name);
+	}
+
+	/**
+	 * Contents read by a loader along with their CRC32, or {@code -1} if the
+	 * loader didn't compute it.
+	 */
+	static final class Loaded {
+		final byte[] bytes;
+		final long crc;
+
+		Loaded(byte[] bytes, long crc) {
+			this.bytes = bytes;
+			this.crc = crc;
+		}
+	}
+
+	/**
+	 * Gets the contents of a resource, loading and caching them on a miss.
+	 * Resources larger than the whole budget are returned without being cached.
+	 *
+	 * @param name The name of the resource.
+	 * @return A read-only view of the contents, positioned at the start, or null
+	 *         if the resource does not exist.
+	 */
+	public ByteBuffer get(String name) {
+		if (!enabled) {
+			Loaded loaded = loader.load(name);
+			return (loaded != null ? ByteBuffer.wrap(loaded.bytes).asReadOnlyBuffer() : null);
+		}
+		long started;
+		synchronized (this) {
+			ByteBuffer cached = lookup(name);
+			if (cached != null) {
+				hits++;
+				ClasspathLoader.getMetrics().cacheHit(Cache.RESOURCE_BYTES);
+				return cached.asReadOnlyBuffer();
+			}
+			misses++;
+			started = generation;
+		}
+		ClasspathLoader.getMetrics().cacheMiss(Cache.RESOURCE_BYTES);
+
+		// Loading happens outside the lock so a slow read doesn't stall hits
+		Loaded loaded = loader.load(name);
+		if (loaded == null) {
+			return null;
+		}
+		byte[] bytes = loaded.bytes;
+		long crc = (deduplicating && loaded.crc < 0 ? checksum(bytes) : loaded.crc);
+		synchronized (this) {
+			if (!enabled || generation != started) {
+				// Dropped or disabled while loading, what was read may already be stale
+				return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+			}
+			ByteBuffer cached = lookup(name);
+			if (cached == null) {
+				if (bytes.length > maxBytes) {
+					return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+				}
+				cached = store(bytes, crc);
+				probation.put(name, cached);
+				probationBytes += bytes.length;
+				evictOverflow();
+			}
+			return cached.asReadOnlyBuffer();
+		}
+	}
+
+	/**
+	 * Drops the cached contents of a single resource.
+	 *
+	 * @param name The name of the resource.
+	 */
+	public synchronized void invalidate(String name) {
+		generation++;
+		ByteBuffer removed = probation.remove(name);
+		if (removed != null) {
+			probationBytes -= removed.capacity();
+			release(removed);
+		}
+		removed = protect.remove(name);
+		if (removed != null) {
+			protectedBytes -= removed.capacity();
+			release(removed);
+		}
+	}
+
+	/**
+	 * Drops all cached contents.
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		probation.clear();
+		protect.clear();
+		probationBytes = 0L;
+		protectedBytes = 0L;
+		interned.clear();
+		owners.clear();
+		retainedBytes = 0L;
+	}
+
+	/**
+	 * Re-reads every cached resource and compares it to the cached contents,
+	 * dropping entries that no longer match, such as a resource changed on disk
+	 * or a jar replaced since it was cached. Every resource is read again, so
+	 * this is meant for diagnostics and health checks.
+	 *
+	 * @return The names of the entries that didn't match, which have been
+	 *         dropped.
+	 */
+	public List<String> verify() {
+		List<String> names;
+		synchronized (this) {
+			names = new ArrayList<>(probation.keySet());
+			names.addAll(protect.keySet());
+		}
+		List<String> mismatched = new ArrayList<>();
+		for (String name : names) {
+			ByteBuffer cached;
+			synchronized (this) {
+				cached = probation.containsKey(name) ? probation.get(name) : protect.get(name);
+			}
+			if (cached == null) {
+				continue;
+			}
+			Loaded current = loader.load(name);
+			if (current == null || !ByteBuffer.wrap(current.bytes).equals(cached.duplicate())) {
+				synchronized (this) {
+					// Leave the entry alone if it was replaced while we were reading
+					if (probation.get(name) == cached || protect.get(name) == cached) {
+						invalidate(name);
+						mismatched.add(name);
+					}
+				}
+			}
+		}
+		return mismatched;
+	}
+
+	/**
+	 * @return The number of resources cached.
+	 */
+	public synchronized int size() {
+		return probation.size() + protect.size();
+	}
+
+	/**
+	 * @return The total size of the cached contents in bytes.
+	 */
+	public synchronized long weight() {
+		return probationBytes + protectedBytes;
+	}
+
+	/**
+	 * @return The bytes actually held, counting shared contents once. Without
+	 *         deduplication this is the same as {@link #weight()}.
+	 */
+	public synchronized long retainedBytes() {
+		return retainedBytes;
+	}
+
+	/**
+	 * @return The number of times loaded contents were found to be identical
+	 *         to contents already cached, and shared instead of stored again.
+	 */
+	public synchronized long sharedCount() {
+		return sharedCount;
+	}
+
+	/**
+	 * @return The number of reads served from the cache.
+	 */
+	public synchronized long hitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return The number of reads that had to load the resource.
+	 */
+	public synchronized long missCount() {
+		return misses;
+	}
+
+	/**
+	 * @return The most bytes of content the cache holds.
+	 */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Sets the most bytes of content the cache holds. Entries are evicted to
+	 * honor the new budget.
+	 *
+	 * @param maxBytes The new budget, must not be negative.
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes must not be negative");
+		}
+		this.maxBytes = maxBytes;
+		evictOverflow();
+	}
+
+	/**
+	 * @return Whether or not contents are kept in direct buffers.
+	 */
+	public synchronized boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Sets whether contents are kept in direct buffers, outside of the garbage
+	 * collected heap. Changing the mode drops all cached contents.
+	 *
+	 * @param offHeap Whether or not to use direct buffers.
+	 */
+	public synchronized void setOffHeap(boolean offHeap) {
+		if (this.offHeap != offHeap) {
+			this.offHeap = offHeap;
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * @return Whether or not identical contents share one buffer.
+	 */
+	public boolean isDeduplicating() {
+		return deduplicating;
+	}
+
+	/**
+	 * Sets whether resources with identical contents share one buffer.
+	 * Changing the mode drops all cached contents.
+	 *
+	 * @param deduplicating Whether or not to share identical contents.
+	 */
+	public synchronized void setDeduplicating(boolean deduplicating) {
+		if (this.deduplicating != deduplicating) {
+			this.deduplicating = deduplicating;
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * @return Whether or not contents are being cached.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables caching. Disabling drops all cached contents and
+	 * resets the hit, miss and shared counts.
+	 *
+	 * @param enabled Whether or not contents should be cached.
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		generation++;
+		if (!enabled) {
+			invalidateAll();
+			hits = 0L;
+			misses = 0L;
+			sharedCount = 0L;
+		}
+	}
+
+	/**
+	 * Finds a cached entry, promoting it out of probation on its second read.
+	 */
+	private ByteBuffer lookup(String name) {
+		ByteBuffer buffer = protect.get(name);
+		if (buffer != null) {
+			return buffer;
+		}
+		buffer = probation.remove(name);
+		if (buffer != null) {
+			probationBytes -= buffer.capacity();
+			protect.put(name, buffer);
+			protectedBytes += buffer.capacity();
+
+			// Demoted entries get another chance in probation before eviction
+			long protectedMax = maxBytes * PROTECTED_PERCENT / 100;
+			Iterator<Map.Entry<String, ByteBuffer>> iter = protect.entrySet().iterator();
+			while (protectedBytes > protectedMax && protect.size() > 1 && iter.hasNext()) {
+				Map.Entry<String, ByteBuffer> eldest = iter.next();
+				iter.remove();
+				protectedBytes -= eldest.getValue().capacity();
+				probation.put(eldest.getKey(), eldest.getValue());
+				probationBytes += eldest.getValue().capacity();
+			}
+		}
+		return buffer;
+	}
+
+	private ByteBuffer store(byte[] bytes, long crc) {
+		Long key = null;
+		if (deduplicating && crc >= 0) {
+			key = (crc << 32) ^ bytes.length;
+			ByteBuffer contents = ByteBuffer.wrap(bytes);
+			for (Shared shared = interned.get(key); shared != null; shared = shared.next) {
+				// Equal checksums are confirmed, so a collision can't serve the wrong bytes
+				if (shared.buffer.capacity() == bytes.length && contents.equals(shared.buffer.duplicate())) {
+					shared.references++;
+					sharedCount++;
+					return shared.buffer;
+				}
+			}
+		}
+		ByteBuffer buffer;
+		if (!offHeap) {
+			buffer = ByteBuffer.wrap(bytes);
+		} else {
+			buffer = ByteBuffer.allocateDirect(bytes.length);
+			buffer.put(bytes);
+			buffer.flip();
+		}
+		retainedBytes += bytes.length;
+		if (key != null) {
+			Shared shared = new Shared(key, buffer, interned.get(key));
+			interned.put(key, shared);
+			owners.put(buffer, shared);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Lets go of an entry's buffer, which is only dropped once no other entry
+	 * shares it.
+	 */
+	private void release(ByteBuffer buffer) {
+		Shared shared = owners.get(buffer);
+		if (shared == null) {
+			retainedBytes -= buffer.capacity();
+			return;
+		}
+		if (--shared.references > 0) {
+			return;
+		}
+		owners.remove(buffer);
+		retainedBytes -= buffer.capacity();
+		Shared head = interned.get(shared.key);
+		if (head == shared) {
+			if (shared.next != null) {
+				interned.put(shared.key, shared.next);
+			} else {
+				interned.remove(shared.key);
+			}
+		} else {
+			while (head.next != shared) {
+				head = head.next;
+			}
+			head.next = shared.next;
+		}
+	}
+
+	private static long checksum(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return crc.getValue();
+	}
+
+	private void evictOverflow() {
+		evictOverflow(probation, true);
+		evictOverflow(protect, false);
+	}
+
+	private void evictOverflow(LinkedHashMap<String, ByteBuffer> segment, boolean isProbation) {
+		Iterator<ByteBuffer> iter = segment.values().iterator();
+		while (probationBytes + protectedBytes > maxBytes && iter.hasNext()) {
+			ByteBuffer eldest = iter.next();
+			iter.remove();
+			if (isProbation) {
+				probationBytes -= eldest.capacity();
+			} else {
+				protectedBytes -= eldest.capacity();
+			}
+			release(eldest);
+		}
+	}
+
+	/**
+	 * Buffer shared by every cached resource with the same contents. Buffers
+	 * whose key collides but whose contents differ are chained.
+	 */
+	private static final class Shared {
+		final Long key;
+		final ByteBuffer buffer;
+		Shared next;
+		int references = 1;
+
+		Shared(Long key, ByteBuffer buffer, Shared next) {
+			this.key = key;
+			this.buffer = buffer;
+			this.next = next;
+		}
+	}
+}
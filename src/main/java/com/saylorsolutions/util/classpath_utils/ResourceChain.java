@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered chain of {@link ResourceSource}s with its own resolution cache. A
+ * name is looked for in each source in turn the first time it is looked up,
+ * and after that the resolved {@code URL}, or the fact that no source has the
+ * name, is served from the cache without asking the sources again.
+ * <br/>
+ * When the chain is installed with
+ * {@link ClasspathLoader#setResourceSource(ResourceSource)}, the loader's
+ * {@linkplain ClasspathLoader#resourceCache() resource cache} takes the place
+ * of the chain's own.
+ */
+public final class ResourceChain implements ResourceSource {
+	private final ResourceSource[] sources;
+	private final ResourceLookupCache cache;
+
+	ResourceChain(ResourceSource... sources) {
+		if (sources.length == 0) {
+			throw new IllegalArgumentException("At least one source is required");
+		}
+		this.sources = sources.clone();
+		for (ResourceSource source : this.sources) {
+			if (source == null) {
+				throw new IllegalArgumentException("Sources must not be null");
+			}
+		}
+		this.cache = new ResourceLookupCache(this::resolve);
+	}
+
+	/**
+	 * @param name The name of the resource.
+	 * @return A {@code URL} from the first source that has the resource, or null
+	 *         if none of them do.
+	 */
+	@Override
+	public URL find(String name) {
+		return cache.resolve(name);
+	}
+
+	/**
+	 * @return The sources, from highest to lowest priority.
+	 */
+	public List<ResourceSource> getSources() {
+		return Collections.unmodifiableList(Arrays.asList(sources));
+	}
+
+	/**
+	 * @return The cache of this chain's resolutions, for tuning and for
+	 *         invalidating names whose source changed.
+	 */
+	public ResourceLookupCache cache() {
+		return cache;
+	}
+
+	/**
+	 * Walks the sources without consulting the cache.
+	 */
+	URL resolve(String name) {
+		for (ResourceSource source : sources) {
+			URL url = source.find(name);
+			if (url != null) {
+				return url;
+			}
+		}
+		return null;
+	}
+}
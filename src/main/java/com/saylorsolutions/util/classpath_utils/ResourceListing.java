@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Lazily enumerates resource names matching a {@link ResourcePattern}. Only
+ * the names under the pattern's literal prefix are visited: a range of the
+ * sorted names of a {@code ClasspathIndex} or a mapped archive, or a walk of
+ * the prefix's directory within a directory root.
+ */
+final class ResourceListing {
+	private ResourceListing() {
+	}
+
+	/**
+	 * Streams the matching resources on the classpath. With an index the names
+	 * come from the index. Otherwise the roots holding the pattern's base
+	 * directory are found through the class loader, one inner stream per root,
+	 * and names found on more than one root are only listed once.
+	 */
+	static Stream<String> list(ResourcePattern pattern, ClasspathIndex index) {
+		if (index != null) {
+			return index.fileNames(pattern.prefix()).filter(pattern::matches);
+		}
+
+		String base = pattern.baseDirectory();
+		List<URL> roots;
+		try {
+			roots = Collections.list(ClasspathLoader.class.getClassLoader().getResources(base));
+		} catch (IOException iox) {
+			System.err.println("Exception occurred while finding classpath roots for '" + pattern + "'");
+			iox.printStackTrace();
+			return Stream.empty();
+		}
+		return roots.stream().flatMap(root -> list(root, pattern)).distinct();
+	}
+
+	/**
+	 * Streams the matching entries of an archive, leaving out directories.
+	 */
+	static Stream<String> entries(MappedZipArchive archive, ResourcePattern pattern) {
+		byte[] prefix = pattern.prefix().getBytes(StandardCharsets.UTF_8);
+		int start = archive.prefixStart(prefix);
+		int end = archive.prefixEnd(prefix, start);
+		return IntStream.range(start, end).filter(i -> !archive.isDirectoryAt(i)).mapToObj(archive::nameAt)
+				.filter(pattern::matches);
+	}
+
+	private static Stream<String> list(URL root, ResourcePattern pattern) {
+		if ("file".equals(root.getProtocol())) {
+			try {
+				return walk(new File(root.toURI()).toPath(), pattern);
+			} catch (URISyntaxException | IllegalArgumentException ex) {
+				System.err.println("Failed to get a File reference to the classpath root '" + root + "'");
+				ex.printStackTrace();
+				return Stream.empty();
+			}
+		}
+		File archive = ResourceBatch.archiveOf(root);
+		if (archive != null) {
+			MappedZipArchive mapped = ClasspathLoader.mappedZip(archive);
+			return (mapped != null ? entries(mapped, pattern) : Stream.empty());
+		}
+		return Stream.empty();
+	}
+
+	private static Stream<String> walk(Path directory, ResourcePattern pattern) {
+		String base = pattern.baseDirectory();
+		try {
+			return Files.find(directory, pattern.maxDepth(), (path, attrs) -> attrs.isRegularFile())
+					.map(path -> base + directory.relativize(path).toString().replace(File.separatorChar, '/'))
+					.filter(pattern::matches);
+		} catch (IOException iox) {
+			System.err.println("Exception occurred while listing the directory '" + directory + "'");
+			iox.printStackTrace();
+			return Stream.empty();
+		}
+	}
+}
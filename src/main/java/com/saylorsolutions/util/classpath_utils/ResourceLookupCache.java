@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Cache;
+
+/**
+ * Concurrent cache of resource name to resolved {@code URL}. Names that could
+ * not be resolved are cached as well, so repeated lookups of missing resources
+ * don't search the class loader again.
+ * <br/>
+ * Lookups never lock. When the cache grows past {@link #getMaxSize()} the least
+ * recently used tenth of the entries is evicted in one pass. Entries can
+ * optionally expire after {@link #getTtlMillis()}.
+ */
+public class ResourceLookupCache {
+	public static final int DEFAULT_MAX_SIZE = 4096;
+
+	private final Function<String, URL> resolver;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile int maxSize = DEFAULT_MAX_SIZE;
+	private volatile long ttlMillis = 0L;
+	private volatile boolean enabled = true;
+
+	/**
+	 * @param resolver Resolves a resource name to a {@code URL}, returning null
+	 *                 when the resource does not exist.
+	 */
+	public ResourceLookupCache(Function<String, URL> resolver) {
+		this.resolver = resolver;
+	}
+
+	/**
+	 * Resolves a resource name, consulting the cache first.
+	 *
+	 * @param name The name of the resource.
+	 * @return The resolved {@code URL}, or null if the resource does not exist.
+	 */
+	public URL resolve(String name) {
+		if (!enabled) {
+			return resolver.apply(name);
+		}
+		long now = System.currentTimeMillis();
+		Entry entry = entries.get(name);
+		if (entry != null && entry.expiresAt > now) {
+			entry.lastAccess = System.nanoTime();
+			ClasspathLoader.getMetrics().cacheHit(Cache.RESOURCE_LOOKUP);
+			return entry.url;
+		}
+		ClasspathLoader.getMetrics().cacheMiss(Cache.RESOURCE_LOOKUP);
+
+		URL url = resolver.apply(name);
+		long ttl = ttlMillis;
+		entries.put(name, new Entry(url, System.nanoTime(), ttl > 0 ? now + ttl : Long.MAX_VALUE));
+		if (entries.size() > maxSize) {
+			evict();
+		}
+		return url;
+	}
+
+	/**
+	 * Drops the cached resolution of a single resource.
+	 *
+	 * @param name The name of the resource.
+	 */
+	public void invalidate(String name) {
+		entries.remove(name);
+	}
+
+	/**
+	 * Drops every cached resolution.
+	 */
+	public void invalidateAll() {
+		entries.clear();
+	}
+
+	/**
+	 * @return The number of cached resolutions, including misses.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return The number of resolutions kept before eviction starts.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @param maxSize The number of resolutions kept before eviction starts, must
+	 *                be at least 1.
+	 */
+	public void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be at least 1");
+		}
+		this.maxSize = maxSize;
+		if (entries.size() > maxSize) {
+			evict();
+		}
+	}
+
+	/**
+	 * @return How long a resolution stays cached, or {@code 0} if resolutions
+	 *         never expire.
+	 */
+	public long getTtlMillis() {
+		return ttlMillis;
+	}
+
+	/**
+	 * Sets how long a resolution stays cached. Applies to resolutions cached
+	 * after the call.
+	 *
+	 * @param ttlMillis The time to live in milliseconds, or {@code 0} to never
+	 *                  expire resolutions.
+	 */
+	public void setTtlMillis(long ttlMillis) {
+		if (ttlMillis < 0) {
+			throw new IllegalArgumentException("ttlMillis must not be negative");
+		}
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * @return Whether or not resolutions are being cached.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Used to enable/disable caching. Disabling the cache also clears it.
+	 *
+	 * @param enabled Whether or not resolutions should be cached.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled) {
+			entries.clear();
+		}
+	}
+
+	private synchronized void evict() {
+		int limit = maxSize;
+		if (entries.size() <= limit) {
+			return;
+		}
+		// Access times keep moving while we sort, so sort a copy of them
+		List<Candidate> candidates = new ArrayList<>(entries.size());
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+		}
+		candidates.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+		int target = limit - limit / 10;
+		int excess = candidates.size() - target;
+		for (int i = 0; i < excess; i++) {
+			Candidate eldest = candidates.get(i);
+			entries.remove(eldest.name, eldest.entry);
+		}
+	}
+
+	private static final class Candidate {
+		final String name;
+		final Entry entry;
+		final long lastAccess;
+
+		Candidate(String name, Entry entry) {
+			this.name = name;
+			this.entry = entry;
+			this.lastAccess = entry.lastAccess;
+		}
+	}
+
+	private static final class Entry {
+		final URL url;
+		final long expiresAt;
+		volatile long lastAccess;
+
+		Entry(URL url, long lastAccess, long expiresAt) {
+			this.url = url;
+			this.lastAccess = lastAccess;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
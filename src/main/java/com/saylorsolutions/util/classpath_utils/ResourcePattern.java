@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.util.regex.Pattern;
+
+/**
+ * A compiled glob over resource names, which always use {@code /} as the
+ * separator. {@code *} matches within a directory, {@code **} matches across
+ * directories, {@code ?} matches one character, {@code [abc]} and
+ * {@code [!abc]} match a character class, {@code {a,b}} matches either
+ * alternative and {@code \} escapes the next character.
+ * <br/>
+ * The literal text before the first wildcard is kept as a prefix, so only the
+ * names under it need to be looked at.
+ */
+final class ResourcePattern {
+	private final String glob;
+	private final String prefix;
+	private final Pattern regex;
+	private final boolean recursive;
+
+	private ResourcePattern(String glob, String prefix, Pattern regex, boolean recursive) {
+		this.glob = glob;
+		this.prefix = prefix;
+		this.regex = regex;
+		this.recursive = recursive;
+	}
+
+	static ResourcePattern compile(String glob) {
+		if (glob.startsWith("/")) {
+			glob = glob.substring(1);
+		}
+		StringBuilder prefix = new StringBuilder();
+		int i = 0;
+		while (i < glob.length() && "*?[{".indexOf(glob.charAt(i)) < 0) {
+			char c = glob.charAt(i++);
+			if (c == '\\' && i < glob.length()) {
+				c = glob.charAt(i++);
+			}
+			prefix.append(c);
+		}
+		if (i == glob.length()) {
+			return new ResourcePattern(glob, prefix.toString(), null, false);
+		}
+		return new ResourcePattern(glob, prefix.toString(), Pattern.compile(toRegex(glob)), glob.contains("**"));
+	}
+
+	/**
+	 * @return The literal text every matching name starts with.
+	 */
+	String prefix() {
+		return prefix;
+	}
+
+	/**
+	 * @return The deepest directory every matching name is under, ending with
+	 *         {@code /}, or {@code ""} for the root.
+	 */
+	String baseDirectory() {
+		return prefix.substring(0, prefix.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * @return How many directory levels below {@link #baseDirectory()} a
+	 *         matching name can be.
+	 */
+	int maxDepth() {
+		if (recursive) {
+			return Integer.MAX_VALUE;
+		}
+		int depth = 1;
+		for (int i = baseDirectory().length(); i < glob.length(); i++) {
+			if (glob.charAt(i) == '/') {
+				depth++;
+			}
+		}
+		return depth;
+	}
+
+	boolean matches(String name) {
+		if (regex == null) {
+			return prefix.equals(name);
+		}
+		return name.startsWith(prefix) && regex.matcher(name).matches();
+	}
+
+	@Override
+	public String toString() {
+		return glob;
+	}
+
+	private static String toRegex(String glob) {
+		StringBuilder regex = new StringBuilder(glob.length() * 2);
+		int alternatives = 0;
+		boolean inClass = false;
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (inClass) {
+				if (c == ']') {
+					inClass = false;
+					regex.append(']');
+				} else if (c == '\\' || c == '[' || c == '&') {
+					regex.append('\\').append(c);
+				} else {
+					regex.append(c);
+				}
+				continue;
+			}
+			switch (c) {
+			case '*':
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+					i++;
+					if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+						// "a/**/b" also matches "a/b"
+						i++;
+						regex.append("(?:.*/)?");
+					} else {
+						regex.append(".*");
+					}
+				} else {
+					regex.append("[^/]*");
+				}
+				break;
+			case '?':
+				regex.append("[^/]");
+				break;
+			case '[':
+				inClass = true;
+				regex.append('[');
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+					i++;
+					regex.append('^');
+				}
+				break;
+			case '{':
+				alternatives++;
+				regex.append("(?:");
+				break;
+			case '}':
+				if (alternatives > 0) {
+					alternatives--;
+					regex.append(')');
+				} else {
+					regex.append("\\}");
+				}
+				break;
+			case ',':
+				regex.append(alternatives > 0 ? "|" : ",");
+				break;
+			case '\\':
+				if (i + 1 < glob.length()) {
+					regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+				} else {
+					regex.append("\\\\");
+				}
+				break;
+			default:
+				if ("().+^$|".indexOf(c) >= 0) {
+					regex.append('\\');
+				}
+				regex.append(c);
+			}
+		}
+		if (inClass || alternatives > 0) {
+			throw new IllegalArgumentException("Unterminated group in resource pattern '" + glob + "'");
+		}
+		return regex.toString();
+	}
+}
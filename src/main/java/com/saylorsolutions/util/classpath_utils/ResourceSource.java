@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Somewhere resources can be found by name, such as a class loader, a
+ * directory or a jar. Sources are combined with {@link #chain(ResourceSource...)}
+ * and installed with {@link ClasspathLoader#setResourceSource(ResourceSource)}.
+ * <br/>
+ * Names are relative and use {@code /} as the separator, as with
+ * {@code ClassLoader.getResource}.
+ */
+@FunctionalInterface
+public interface ResourceSource {
+	/**
+	 * @param name The name of the resource.
+	 * @return A {@code URL} the resource can be read from, or null if this
+	 *         source doesn't have it.
+	 */
+	URL find(String name);
+
+	/**
+	 * @param loader The class loader to search.
+	 * @return A source searching a class loader.
+	 */
+	static ResourceSource classLoader(ClassLoader loader) {
+		return loader::getResource;
+	}
+
+	/**
+	 * @return A source searching whichever context class loader the looking up
+	 *         thread has at the time, or none if it has none.
+	 */
+	static ResourceSource contextClassLoader() {
+		return name -> {
+			ClassLoader loader = Thread.currentThread().getContextClassLoader();
+			return (loader != null ? loader.getResource(name) : null);
+		};
+	}
+
+	/**
+	 * @param directory The directory resource names are relative to.
+	 * @return A source of the plain files under a directory. Names that would
+	 *         resolve outside of the directory are not found.
+	 */
+	static ResourceSource directory(File directory) {
+		File root = directory.getAbsoluteFile();
+		String rootPath = root.toPath().normalize().toString();
+		return name -> {
+			File file = new File(root, name);
+			if (!file.isFile() || !file.toPath().normalize().startsWith(rootPath)) {
+				return null;
+			}
+			try {
+				return file.toURI().toURL();
+			} catch (MalformedURLException mux) {
+				System.err.println("Failed to create URL for the file '" + file + "'");
+				mux.printStackTrace();
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * The archive's central directory is read once, when the first name is
+	 * looked up, and entries are found with a binary search.
+	 * 
+	 * @param jar A jar or zip archive on disk.
+	 * @return A source of the entries of an archive, not including directories.
+	 * @see ClasspathLoader#mappedZip(String)
+	 */
+	static ResourceSource jar(File jar) {
+		return name -> {
+			MappedZipArchive archive = ClasspathLoader.mappedZip(jar);
+			if (archive == null) {
+				return null;
+			}
+			int index = archive.indexOf(name);
+			if (index < 0 || archive.isDirectoryAt(index)) {
+				return null;
+			}
+			try {
+				return new URL("jar:" + jar.toURI().toURL() + "!/" + ClasspathIndex.encodePath(name));
+			} catch (MalformedURLException mux) {
+				System.err.println("Failed to create URL for '" + name + "' in '" + jar + "'");
+				mux.printStackTrace();
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * @param index The index to consult.
+	 * @return A source of the resources in a {@code ClasspathIndex}.
+	 */
+	static ResourceSource index(ClasspathIndex index) {
+		return name -> {
+			ClasspathIndex.Location location = index.find(name);
+			return (location != null ? location.toURL() : null);
+		};
+	}
+
+	/**
+	 * Serves resources held in memory, for overlays and tests. The map is read
+	 * when a name is looked up and when its {@code URL} is opened, so entries can
+	 * be changed later, though a chain keeps serving names it has already
+	 * resolved until its cache is invalidated.
+	 * 
+	 * @param resources The contents of each resource by name, which should be a
+	 *                  concurrent map if it is changed while in use.
+	 * @return A source of the resources in the map.
+	 */
+	static ResourceSource memory(Map<String, byte[]> resources) {
+		MemoryUrlHandler handler = new MemoryUrlHandler(resources);
+		return name -> {
+			if (!resources.containsKey(name)) {
+				return null;
+			}
+			try {
+				return handler.toURL(name);
+			} catch (IOException iox) {
+				System.err.println("Failed to create URL for the in-memory resource '" + name + "'");
+				iox.printStackTrace();
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Combines sources into one, which looks a name up in each source in order
+	 * and takes the first it is found in. Resolutions are cached, so each name
+	 * is only looked for once.
+	 * 
+	 * @param sources The sources, from highest to lowest priority.
+	 * @return A cached chain of the sources.
+	 */
+	static ResourceChain chain(ResourceSource... sources) {
+		return new ResourceChain(sources);
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Bulk stream reading shared by the byte oriented loader methods.
+ */
+final class Streams {
+	private static final int CHUNK = 8192;
+	private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+	private Streams() {
+	}
+
+	/**
+	 * Reads a stream to its end. When the length is known the result is read
+	 * straight into an array of exactly that size.
+	 *
+	 * @param is             The stream to read, not closed by this method.
+	 * @param expectedLength The length of the stream, or a negative value if it
+	 *                       isn't known.
+	 * @return Everything left in the stream.
+	 */
+	static byte[] readFully(InputStream is, long expectedLength) throws IOException {
+		if (expectedLength > MAX_ARRAY) {
+			throw new IOException("Resource of " + expectedLength + " bytes is too large to be read into an array");
+		}
+		byte[] bytes = new byte[expectedLength >= 0 ? (int) expectedLength : CHUNK];
+		int count = 0;
+		while (true) {
+			if (count == bytes.length) {
+				// Either the length wasn't known or was wrong, check for more before growing
+				int next = is.read();
+				if (next < 0) {
+					return bytes;
+				}
+				if (bytes.length == MAX_ARRAY) {
+					throw new IOException("Resource is too large to be read into an array");
+				}
+				bytes = Arrays.copyOf(bytes, (int) Math.min(MAX_ARRAY, Math.max(CHUNK, (long) bytes.length * 2)));
+				bytes[count++] = (byte) next;
+			}
+			int read = is.read(bytes, count, bytes.length - count);
+			if (read < 0) {
+				return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+			}
+			count += read;
+		}
+	}
+
+	/**
+	 * Reads a stream to its end into a buffer.
+	 *
+	 * @param is  The stream to read, not closed by this method.
+	 * @param dst The buffer to fill, its position is advanced past the bytes
+	 *            read.
+	 * @return The number of bytes read.
+	 * @throws BufferOverflowException If the stream holds more bytes than the
+	 *                                 buffer has remaining.
+	 */
+	static int readFully(InputStream is, ByteBuffer dst) throws IOException {
+		ReadableByteChannel channel = dst.hasArray() ? null : Channels.newChannel(is);
+		int count = 0;
+		while (true) {
+			if (!dst.hasRemaining()) {
+				if (is.read() >= 0) {
+					throw new BufferOverflowException();
+				}
+				return count;
+			}
+			int read;
+			if (channel == null) {
+				// Heap buffers are read into directly, skipping the channel's copy
+				read = is.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+				if (read > 0) {
+					dst.position(dst.position() + read);
+				}
+			} else {
+				read = channel.read(dst);
+			}
+			if (read < 0) {
+				return count;
+			}
+			count += read;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Memoized typed interpretations of a single property value. Each type is
+ * parsed the first time it is asked for, failures included, so later reads of
+ * the same type are a flag check and a field read.
+ * <br/>
+ * Two threads may parse the same type at once; both arrive at the same result,
+ * and the parse state is published atomically so the race is harmless.
+ */
+final class TypedValue {
+	static final TypedValue EMPTY = new TypedValue("");
+
+	private static final int LONG = 0;
+	private static final int DOUBLE = 2;
+	private static final int BIG_INTEGER = 4;
+	private static final int BIG_DECIMAL = 6;
+	private static final int BOOLEAN = 8;
+	private static final int BOOLEAN_TRUE = 1 << 10;
+
+	private static final AtomicIntegerFieldUpdater<TypedValue> STATE = AtomicIntegerFieldUpdater
+			.newUpdater(TypedValue.class, "state");
+
+	final String raw;
+
+	/**
+	 * Two bits per type, parsed and valid, plus the parsed boolean value.
+	 */
+	private volatile int state = 0;
+	private long longValue;
+	private double doubleValue;
+	private BigInteger bigIntegerValue;
+	private BigDecimal bigDecimalValue;
+
+	TypedValue(String raw) {
+		this.raw = raw;
+	}
+
+	/**
+	 * Creates typed values with the numeric types already parsed, as they are
+	 * stored in a compiled snapshot. Types that didn't parse are left to be
+	 * parsed, and reported, when they are first read.
+	 */
+	TypedValue(String raw, boolean longParsed, long longValue, boolean doubleParsed, double doubleValue) {
+		this.raw = raw;
+		int parsed = 0;
+		if (longParsed) {
+			this.longValue = longValue;
+			parsed |= 3 << LONG;
+		}
+		if (doubleParsed) {
+			this.doubleValue = doubleValue;
+			parsed |= 3 << DOUBLE;
+		}
+		this.state = parsed;
+	}
+
+	long longValue(long defaultValue, boolean showStacktraces) {
+		int current = state;
+		if (!isParsed(current, LONG)) {
+			try {
+				longValue = Integer.parseInt(raw);
+				current = publish(LONG, true, 0);
+			} catch (NumberFormatException nfx) {
+				if (showStacktraces) {
+					nfx.printStackTrace();
+				}
+				ClasspathLoader.getMetrics().parseFailure(Long.class);
+				current = publish(LONG, false, 0);
+			}
+		}
+		return isValid(current, LONG) ? longValue : defaultValue;
+	}
+
+	double doubleValue(double defaultValue, boolean showStacktraces) {
+		int current = state;
+		if (!isParsed(current, DOUBLE)) {
+			try {
+				doubleValue = Double.parseDouble(raw);
+				current = publish(DOUBLE, true, 0);
+			} catch (NumberFormatException nfx) {
+				if (showStacktraces) {
+					nfx.printStackTrace();
+				}
+				ClasspathLoader.getMetrics().parseFailure(Double.class);
+				current = publish(DOUBLE, false, 0);
+			}
+		}
+		return isValid(current, DOUBLE) ? doubleValue : defaultValue;
+	}
+
+	BigInteger bigIntegerValue(BigInteger defaultValue, boolean showStacktraces) {
+		int current = state;
+		if (!isParsed(current, BIG_INTEGER)) {
+			try {
+				bigIntegerValue = new BigInteger(raw);
+				current = publish(BIG_INTEGER, true, 0);
+			} catch (NumberFormatException nfx) {
+				if (showStacktraces) {
+					nfx.printStackTrace();
+				}
+				ClasspathLoader.getMetrics().parseFailure(BigInteger.class);
+				current = publish(BIG_INTEGER, false, 0);
+			}
+		}
+		return isValid(current, BIG_INTEGER) ? bigIntegerValue : defaultValue;
+	}
+
+	BigDecimal bigDecimalValue(BigDecimal defaultValue, boolean showStacktraces) {
+		int current = state;
+		if (!isParsed(current, BIG_DECIMAL)) {
+			try {
+				bigDecimalValue = new BigDecimal(raw);
+				current = publish(BIG_DECIMAL, true, 0);
+			} catch (NumberFormatException nfx) {
+				if (showStacktraces) {
+					nfx.printStackTrace();
+				}
+				ClasspathLoader.getMetrics().parseFailure(BigDecimal.class);
+				current = publish(BIG_DECIMAL, false, 0);
+			}
+		}
+		return isValid(current, BIG_DECIMAL) ? bigDecimalValue : defaultValue;
+	}
+
+	boolean booleanValue(boolean defaultValue) {
+		int current = state;
+		if (!isParsed(current, BOOLEAN)) {
+			current = parseBoolean();
+		}
+		return isValid(current, BOOLEAN) ? (current & BOOLEAN_TRUE) != 0 : defaultValue;
+	}
+
+	/**
+	 * Converts to a type a bound accessor returns, by the same rules as the
+	 * typed getters. An {@code int} is read as the getters read a {@code long}.
+	 *
+	 * @param type A primitive or boxed boolean, int, long or double, or
+	 *             {@code BigInteger} or {@code BigDecimal}.
+	 * @return The converted value, or null if the value doesn't parse as the
+	 *         type.
+	 */
+	Object convert(Class<?> type) {
+		if (type == int.class || type == Integer.class || type == long.class || type == Long.class) {
+			long value = longValue(0L, false);
+			if (!isValid(state, LONG)) {
+				return null;
+			}
+			if (type == int.class || type == Integer.class) {
+				return Integer.valueOf((int) value);
+			}
+			return Long.valueOf(value);
+		} else if (type == double.class || type == Double.class) {
+			double value = doubleValue(0.0, false);
+			return (isValid(state, DOUBLE) ? Double.valueOf(value) : null);
+		} else if (type == BigInteger.class) {
+			return bigIntegerValue(null, false);
+		} else if (type == BigDecimal.class) {
+			return bigDecimalValue(null, false);
+		}
+		boolean value = booleanValue(false);
+		return (isValid(state, BOOLEAN) ? Boolean.valueOf(value) : null);
+	}
+
+	private int parseBoolean() {
+		for (String truth : ClasspathProperties.TRUTHY) {
+			if (raw.equalsIgnoreCase(truth)) {
+				return publish(BOOLEAN, true, BOOLEAN_TRUE);
+			}
+		}
+		for (String fals3 : ClasspathProperties.FALSY) {
+			if (raw.equalsIgnoreCase(fals3)) {
+				return publish(BOOLEAN, true, 0);
+			}
+		}
+		ClasspathLoader.getMetrics().parseFailure(Boolean.class);
+		return publish(BOOLEAN, false, 0);
+	}
+
+	private int publish(int type, boolean valid, int extra) {
+		int bits = (1 << type) | (valid ? 2 << type : 0) | extra;
+		while (true) {
+			int current = state;
+			int next = current | bits;
+			if (current == next || STATE.compareAndSet(this, current, next)) {
+				return next;
+			}
+		}
+	}
+
+	private static boolean isParsed(int state, int type) {
+		return (state & (1 << type)) != 0;
+	}
+
+	private static boolean isValid(int state, int type) {
+		return (state & (2 << type)) != 0;
+	}
+}
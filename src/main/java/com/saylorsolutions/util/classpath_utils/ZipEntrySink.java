@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Receives the entries extracted by
+ * {@link ClasspathLoader#zipExtract(String, String, ZipEntrySink)}. Entries
+ * are extracted in parallel, so a sink is called from several threads at once
+ * and in no particular order.
+ */
+@FunctionalInterface
+public interface ZipEntrySink {
+	/**
+	 * @param entryName The name of the entry within the archive.
+	 * @param contents  A read-only buffer holding the entry's contents.
+	 * @throws IOException If the contents could not be stored. The entry is
+	 *                     reported as failed and extraction goes on.
+	 */
+	void accept(String entryName, ByteBuffer contents) throws IOException;
+
+	/**
+	 * Writes each entry to a file under a directory, at the entry's path within
+	 * the archive, creating directories as needed. Existing files are replaced.
+	 * Entries whose names would resolve outside of the directory are refused.
+	 *
+	 * @param directory The directory to extract into.
+	 * @return A sink writing into the directory.
+	 */
+	static ZipEntrySink toDirectory(File directory) {
+		Path root = directory.toPath().toAbsolutePath().normalize();
+		return (entryName, contents) -> {
+			Path target = root.resolve(entryName).normalize();
+			if (!target.startsWith(root) || target.equals(root)) {
+				throw new IOException("Entry '" + entryName + "' is outside of '" + root + "'");
+			}
+			Files.createDirectories(target.getParent());
+			try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (contents.hasRemaining()) {
+					channel.write(contents);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Copies each entry into a map, keyed by entry name. The map is
+	 * synchronized on while it is updated.
+	 *
+	 * @param map The map to fill.
+	 * @return A sink filling the map.
+	 */
+	static ZipEntrySink toMap(Map<String, byte[]> map) {
+		return (entryName, contents) -> {
+			byte[] bytes = new byte[contents.remaining()];
+			contents.get(bytes);
+			synchronized (map) {
+				map.put(entryName, bytes);
+			}
+		};
+	}
+}
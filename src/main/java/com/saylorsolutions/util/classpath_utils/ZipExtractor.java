@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Operation;
+
+/**
+ * Extracts many entries of a mapped archive at once. A single reader walks
+ * the selected entries in the order their data is laid out in the archive,
+ * copying out each compressed entry, so the archive is read front to back and
+ * the operating system can read ahead in large sequential requests. Inflating
+ * and handing entries to the sink is done in parallel, with inflaters
+ * borrowed from a shared pool.
+ * <br/>
+ * The reader waits while the entries it has read but which haven't reached the
+ * sink, counted compressed and inflated, would exceed the memory limit, or
+ * while twice as many entries as there are processors are waiting on workers.
+ * With a single processor entries are inflated on the reading thread.
+ */
+final class ZipExtractor {
+	static final long DEFAULT_MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
+	private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+	private static final int MAX_POOLED_INFLATERS = PARALLELISM * 2;
+	private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger POOLED = new AtomicInteger();
+
+	private final MappedZipArchive archive;
+	private final ZipEntrySink sink;
+	private final Executor executor;
+	private final long maxBufferedBytes;
+	private final AtomicLong extracted = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private long buffered = 0L;
+	private int running = 0;
+
+	private ZipExtractor(MappedZipArchive archive, ZipEntrySink sink, Executor executor, long maxBufferedBytes) {
+		this.archive = archive;
+		this.sink = sink;
+		// With a single processor handing entries to another thread only adds switches
+		this.executor = (PARALLELISM > 1 ? executor : Runnable::run);
+		this.maxBufferedBytes = maxBufferedBytes;
+	}
+
+	/**
+	 * Extracts the matching entries, leaving out directories, and returns once
+	 * every one has been handed to the sink or has failed.
+	 *
+	 * @return The number of entries handed to the sink without failing.
+	 */
+	static long extract(MappedZipArchive archive, ResourcePattern pattern, ZipEntrySink sink, Executor executor,
+			long maxBufferedBytes) {
+		ClasspathMetrics metrics = ClasspathLoader.getMetrics();
+		long start = (metrics != ClasspathMetrics.NONE ? System.nanoTime() : 0L);
+		ZipExtractor extractor = new ZipExtractor(archive, sink, executor, maxBufferedBytes);
+		extractor.run(inArchiveOrder(archive, pattern));
+		if (metrics != ClasspathMetrics.NONE) {
+			metrics.operation(Operation.ZIP_EXTRACT, System.nanoTime() - start, true);
+			metrics.bytesRead(Operation.ZIP_EXTRACT, extractor.bytes.get());
+		}
+		return extractor.extracted.get();
+	}
+
+	/**
+	 * @return The indexes of the matching entries, sorted by the offset of
+	 *         their local headers.
+	 */
+	static int[] inArchiveOrder(MappedZipArchive archive, ResourcePattern pattern) {
+		byte[] prefix = pattern.prefix().getBytes(StandardCharsets.UTF_8);
+		int start = archive.prefixStart(prefix);
+		int end = archive.prefixEnd(prefix, start);
+		long[] keyed = new long[end - start];
+		int count = 0;
+		for (int i = start; i < end; i++) {
+			if (!archive.isDirectoryAt(i) && pattern.matches(archive.nameAt(i))) {
+				keyed[count++] = ((long) archive.localHeaderOffsetAt(i) << 32) | i;
+			}
+		}
+		Arrays.sort(keyed, 0, count);
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = (int) keyed[i];
+		}
+		return order;
+	}
+
+	private void run(int[] order) {
+		List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		for (int index : order) {
+			long cost = costOf(index);
+			reserve(cost);
+			ByteBuffer input;
+			try {
+				input = read(index);
+			} catch (ZipException zx) {
+				release(cost);
+				report(index, zx);
+				continue;
+			}
+			Runnable task = () -> {
+				try {
+					deliver(index, input);
+				} finally {
+					release(cost);
+				}
+			};
+			try {
+				tasks.add(CompletableFuture.runAsync(task, executor));
+			} catch (RejectedExecutionException rex) {
+				task.run();
+			}
+		}
+		CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()])).join();
+	}
+
+	/**
+	 * Copies a compressed entry out of the archive. Stored entries are passed
+	 * on as slices, there is nothing to gain from copying them.
+	 */
+	private ByteBuffer read(int index) throws ZipException {
+		ByteBuffer raw = archive.rawBufferAt(index);
+		if (archive.methodAt(index) != ZipEntry.DEFLATED) {
+			return raw;
+		}
+		byte[] compressed = new byte[raw.remaining()];
+		raw.get(compressed);
+		return ByteBuffer.wrap(compressed);
+	}
+
+	private void deliver(int index, ByteBuffer input) {
+		String name = archive.nameAt(index);
+		try {
+			ByteBuffer contents;
+			switch (archive.methodAt(index)) {
+			case ZipEntry.STORED:
+				contents = input;
+				break;
+			case ZipEntry.DEFLATED:
+				if (archive.sizeAt(index) > Integer.MAX_VALUE) {
+					throw new ZipException("Entry '" + name + "' is too large to be buffered");
+				}
+				Inflater inflater = borrowInflater();
+				try {
+					contents = ByteBuffer.wrap(archive.inflate(input, (int) archive.sizeAt(index), index, inflater))
+							.asReadOnlyBuffer();
+				} finally {
+					returnInflater(inflater);
+				}
+				break;
+			default:
+				throw new ZipException("Unsupported compression method " + archive.methodAt(index) + " for '" + name + "'");
+			}
+			int size = contents.remaining();
+			sink.accept(name, contents);
+			extracted.incrementAndGet();
+			bytes.addAndGet(size);
+		} catch (IOException | RuntimeException ex) {
+			report(index, ex);
+		}
+	}
+
+	private long costOf(int index) {
+		long size = archive.sizeAt(index);
+		return (archive.methodAt(index) == ZipEntry.DEFLATED ? archive.compressedSizeAt(index) + size : size);
+	}
+
+	/**
+	 * Waits until an entry fits within the memory limit and the workers' queue
+	 * has room. An entry larger than the whole limit waits until nothing else
+	 * is buffered.
+	 */
+	private synchronized void reserve(long cost) {
+		boolean interrupted = false;
+		while (running > 0 && (running >= PARALLELISM * 2 || buffered + cost > maxBufferedBytes)) {
+			try {
+				wait();
+			} catch (InterruptedException ix) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		running++;
+		buffered += cost;
+	}
+
+	private synchronized void release(long cost) {
+		running--;
+		buffered -= cost;
+		notifyAll();
+	}
+
+	private void report(int index, Exception ex) {
+		System.err.println("Exception occurred while extracting '" + archive.nameAt(index) + "' from '" + archive.getName()
+				+ "'");
+		ex.printStackTrace();
+		ClasspathLoader.getMetrics().failure(Operation.ZIP_EXTRACT, ex);
+	}
+
+	private static Inflater borrowInflater() {
+		Inflater inflater = INFLATERS.poll();
+		if (inflater == null) {
+			return new Inflater(true);
+		}
+		POOLED.decrementAndGet();
+		return inflater;
+	}
+
+	private static void returnInflater(Inflater inflater) {
+		if (POOLED.incrementAndGet() <= MAX_POOLED_INFLATERS) {
+			inflater.reset();
+			INFLATERS.offer(inflater);
+		} else {
+			POOLED.decrementAndGet();
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Cache;
+
+/**
+ * Shared pool of open {@link ZipFile} handles, keyed by the canonical path of
+ * the archive. Each stream handed out holds a reference on its archive; an
+ * archive that has been evicted is only closed once the last of its streams has
+ * been closed.
+ * <br/>
+ * Archives are evicted in least recently used order once more than
+ * {@link #getMaxOpen()} are cached, and unreferenced archives are evicted after
+ * sitting idle for longer than {@link #getIdleTimeoutMillis()}. Idle eviction
+ * is checked whenever the cache is used, no background thread is started.
+ */
+public class ZipFileCache {
+	public static final int DEFAULT_MAX_OPEN = 32;
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000L;
+
+	private final Map<String, Handle> handles = new LinkedHashMap<>(16, 0.75f, true);
+	private int maxOpen = DEFAULT_MAX_OPEN;
+	private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+	private int openCount = 0;
+
+	/**
+	 * Opens a stream for an entry within the given archive, reusing an already
+	 * open {@code ZipFile} when one is cached.
+	 *
+	 * @param archive   The archive on disk.
+	 * @param entryName The name of the entry within the archive.
+	 * @return An {@code InputStream} for the entry that releases the archive
+	 *         handle when closed, or null if the entry does not exist.
+	 * @throws IOException If the archive could not be opened or read.
+	 */
+	public InputStream entryInputStream(File archive, String entryName) throws IOException {
+		Handle handle = acquire(archive);
+		try {
+			ZipEntry entry = handle.zipFile.getEntry(entryName);
+			if (entry != null) {
+				InputStream is = handle.zipFile.getInputStream(entry);
+				if (is != null) {
+					return new HandleInputStream(is, handle);
+				}
+			}
+		} catch (IOException | RuntimeException ex) {
+			release(handle);
+			throw ex;
+		}
+		release(handle);
+		return null;
+	}
+
+	/**
+	 * Reads the whole contents of an entry within the given archive into an
+	 * array sized from the entry's recorded size.
+	 *
+	 * @param archive   The archive on disk.
+	 * @param entryName The name of the entry within the archive.
+	 * @return The entry's contents, or null if the entry does not exist.
+	 * @throws IOException If the archive could not be opened or read.
+	 */
+	public byte[] entryBytes(File archive, String entryName) throws IOException {
+		Handle handle = acquire(archive);
+		try {
+			ZipEntry entry = handle.zipFile.getEntry(entryName);
+			if (entry == null) {
+				return null;
+			}
+			try (InputStream is = handle.zipFile.getInputStream(entry)) {
+				return Streams.readFully(is, entry.getSize());
+			}
+		} finally {
+			release(handle);
+		}
+	}
+
+	/**
+	 * Evicts every unreferenced archive that has been idle for longer than the
+	 * idle timeout.
+	 */
+	public synchronized void evictIdle() {
+		long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+		Iterator<Handle> iter = handles.values().iterator();
+		while (iter.hasNext()) {
+			Handle handle = iter.next();
+			if (handle.refCount == 0 && handle.lastUsed <= cutoff) {
+				iter.remove();
+				evict(handle);
+			}
+		}
+	}
+
+	/**
+	 * Evicts every cached archive. Archives with open streams are closed as soon
+	 * as their last stream is closed.
+	 */
+	public synchronized void clear() {
+		List<Handle> all = new ArrayList<>(handles.values());
+		handles.clear();
+		for (Handle handle : all) {
+			evict(handle);
+		}
+	}
+
+	/**
+	 * @return The number of archives currently cached.
+	 */
+	public synchronized int size() {
+		return handles.size();
+	}
+
+	/**
+	 * @return The number of {@code ZipFile} handles that are still open,
+	 *         including evicted handles that are waiting on open streams.
+	 */
+	public synchronized int openCount() {
+		return openCount;
+	}
+
+	/**
+	 * @return The maximum number of archives kept in the cache.
+	 */
+	public synchronized int getMaxOpen() {
+		return maxOpen;
+	}
+
+	/**
+	 * Sets the maximum number of archives kept in the cache. Least recently used
+	 * archives are evicted to honor the new limit.
+	 *
+	 * @param maxOpen The new limit, must be at least 1.
+	 */
+	public synchronized void setMaxOpen(int maxOpen) {
+		if (maxOpen < 1) {
+			throw new IllegalArgumentException("maxOpen must be at least 1");
+		}
+		this.maxOpen = maxOpen;
+		evictOverflow();
+	}
+
+	/**
+	 * @return How long an unreferenced archive may stay idle before eviction.
+	 */
+	public synchronized long getIdleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	/**
+	 * Sets how long an unreferenced archive may stay idle before eviction.
+	 *
+	 * @param idleTimeoutMillis The timeout in milliseconds, must not be negative.
+	 */
+	public synchronized void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		if (idleTimeoutMillis < 0) {
+			throw new IllegalArgumentException("idleTimeoutMillis must not be negative");
+		}
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	Handle acquire(File archive) throws IOException {
+		String key = archive.getCanonicalPath();
+		synchronized (this) {
+			Handle handle = handles.get(key);
+			if (handle != null) {
+				handle.refCount++;
+				ClasspathLoader.getMetrics().cacheHit(Cache.ZIP_FILE);
+				return handle;
+			}
+		}
+		ClasspathLoader.getMetrics().cacheMiss(Cache.ZIP_FILE);
+
+		// Reading the central directory happens outside the lock so that opening one
+		// archive doesn't stall streams being handed out for the others.
+		ZipFile zipFile = new ZipFile(archive);
+		synchronized (this) {
+			Handle handle = handles.get(key);
+			if (handle == null) {
+				handle = new Handle(zipFile);
+				handles.put(key, handle);
+				openCount++;
+				ClasspathLoader.getMetrics().openZipFiles(openCount);
+				evictOverflow();
+			} else {
+				closeQuietly(zipFile);
+			}
+			handle.refCount++;
+			return handle;
+		}
+	}
+
+	synchronized void release(Handle handle) {
+		handle.refCount--;
+		handle.lastUsed = System.currentTimeMillis();
+		if (handle.evicted && handle.refCount == 0) {
+			close(handle);
+		}
+		evictIdle();
+	}
+
+	private void evictOverflow() {
+		Iterator<Handle> iter = handles.values().iterator();
+		while (handles.size() > maxOpen && iter.hasNext()) {
+			Handle handle = iter.next();
+			iter.remove();
+			evict(handle);
+		}
+	}
+
+	private void evict(Handle handle) {
+		handle.evicted = true;
+		if (handle.refCount == 0) {
+			close(handle);
+		}
+	}
+
+	private void close(Handle handle) {
+		if (!handle.closed) {
+			handle.closed = true;
+			openCount--;
+			ClasspathLoader.getMetrics().openZipFiles(openCount);
+			closeQuietly(handle.zipFile);
+		}
+	}
+
+	private static void closeQuietly(ZipFile zipFile) {
+		try {
+			zipFile.close();
+		} catch (IOException iox) {
+			System.err.println("Exception occurred while closing the ZipFile '" + zipFile.getName() + "'");
+			iox.printStackTrace();
+		}
+	}
+
+	static final class Handle {
+		final ZipFile zipFile;
+		int refCount = 0;
+		long lastUsed = System.currentTimeMillis();
+		boolean evicted = false;
+		boolean closed = false;
+
+		Handle(ZipFile zipFile) {
+			this.zipFile = zipFile;
+		}
+	}
+
+	private final class HandleInputStream extends FilterInputStream {
+		private final Handle handle;
+		private boolean released = false;
+
+		HandleInputStream(InputStream in, Handle handle) {
+			super(in);
+			this.handle = handle;
+		}
+
+		@Override
+		public void close() throws IOException {
+			boolean first;
+			synchronized (this) {
+				first = !released;
+				released = true;
+			}
+			try {
+				super.close();
+			} finally {
+				if (first) {
+					release(handle);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class AsyncReaderTest {
+
+	@AfterEach
+	void after() {
+		ClasspathLoader.setClasspathIndex(null);
+		ClasspathLoader.asyncReader().setMaxInFlight(AsyncReader.DEFAULT_MAX_IN_FLIGHT);
+		ClasspathLoader.asyncReader().setMaxPending(AsyncReader.DEFAULT_MAX_PENDING);
+	}
+
+	@Test
+	void testReadAsync() throws Exception {
+		ByteBuffer file3 = ClasspathLoader.readAsync("folder/Test File 3").get(5, TimeUnit.SECONDS);
+		assertArrayEquals(ClasspathLoader.fileBytes("folder/Test File 3"), bytes(file3));
+		assertNull(ClasspathLoader.readAsync("This file doesn't exist").get(5, TimeUnit.SECONDS));
+
+		ByteBuffer entry = ClasspathLoader.zipEntryAsync("archive.zip", "Test File 1").get(5, TimeUnit.SECONDS);
+		assertEquals("Test File 1", new String(bytes(entry), StandardCharsets.UTF_8).trim());
+		assertNull(ClasspathLoader.zipEntryAsync("archive.zip", "This file doesn't exist").get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testReadAsyncFromJar() throws Exception {
+		File jar = File.createTempFile("async", ".jar");
+		jar.deleteOnExit();
+		byte[] content = new byte[100_000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+			zos.putNextEntry(new ZipEntry("large.bin"));
+			zos.write(content);
+			zos.closeEntry();
+		}
+		ClasspathLoader.setClasspathIndex(ClasspathIndex.build(Collections.singletonList(jar)));
+
+		assertArrayEquals(content, bytes(ClasspathLoader.readAsync("large.bin").get(5, TimeUnit.SECONDS)));
+		ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+		long total = ClasspathLoader.readChunkedAsync("large.bin", 4096, chunk -> {
+			assertTrue(chunk.remaining() <= 4096);
+			chunks.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+			return null;
+		}).get(5, TimeUnit.SECONDS);
+		assertEquals(content.length, total);
+		assertArrayEquals(content, chunks.toByteArray());
+	}
+
+	@Test
+	void testReadChunkedAsync() throws Exception {
+		byte[] expected = ClasspathLoader.fileBytes("test.properties");
+		ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+		long total = ClasspathLoader.readChunkedAsync("test.properties", 7, chunk -> {
+			chunks.write(bytes(chunk), 0, chunk.remaining());
+			return CompletableFuture.completedFuture(null);
+		}).get(5, TimeUnit.SECONDS);
+		assertEquals(expected.length, total);
+		assertArrayEquals(expected, chunks.toByteArray());
+
+		assertEquals(-1L, ClasspathLoader.readChunkedAsync("This file doesn't exist", 7, chunk -> null).get(5,
+				TimeUnit.SECONDS).longValue());
+
+		CompletableFuture<Long> failing = ClasspathLoader.readChunkedAsync("test.properties", 7, chunk -> {
+			throw new IllegalStateException("Consumer failed");
+		});
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+		assertTrue(ex.getCause() instanceof IllegalStateException);
+	}
+
+	@Test
+	void testInFlightLimit() throws Exception {
+		AsyncReader reader = ClasspathLoader.asyncReader();
+		reader.setMaxInFlight(1);
+
+		// A chunked read holds its slot until its consumer lets it continue
+		CompletableFuture<Void> gate = new CompletableFuture<>();
+		CompletableFuture<Long> chunked = ClasspathLoader.readChunkedAsync("Test File 1", 1024, chunk -> gate);
+		CompletableFuture<ByteBuffer> queued = ClasspathLoader.readAsync("Test File 2");
+		Thread.sleep(100);
+		assertFalse(queued.isDone());
+		assertEquals(1, reader.inFlight());
+		assertEquals(1, reader.pending());
+
+		gate.complete(null);
+		assertNotNull(chunked.get(5, TimeUnit.SECONDS));
+		assertNotNull(queued.get(5, TimeUnit.SECONDS));
+		assertEquals(0, reader.pending());
+		assertThrows(IllegalArgumentException.class, () -> reader.setMaxInFlight(0));
+	}
+
+	@Test
+	void testPendingLimit() throws Exception {
+		AsyncReader reader = ClasspathLoader.asyncReader();
+		reader.setMaxInFlight(1);
+		reader.setMaxPending(2);
+
+		CompletableFuture<Void> gate = new CompletableFuture<>();
+		CompletableFuture<Long> chunked = ClasspathLoader.readChunkedAsync("Test File 1", 1024, chunk -> gate);
+		CompletableFuture<ByteBuffer> first = ClasspathLoader.readAsync("Test File 2");
+		CompletableFuture<ByteBuffer> second = ClasspathLoader.zipEntryAsync("archive.zip", "Test File 1");
+		CompletableFuture<ByteBuffer> rejected = ClasspathLoader.readAsync("Test File 2");
+		assertEquals(2, reader.pending());
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+		assertTrue(ex.getCause() instanceof RejectedExecutionException);
+
+		gate.complete(null);
+		assertNotNull(chunked.get(5, TimeUnit.SECONDS));
+		assertNotNull(first.get(5, TimeUnit.SECONDS));
+		assertNotNull(second.get(5, TimeUnit.SECONDS));
+		assertEquals(0, reader.pending());
+
+		// Once reads have finished there is room again
+		assertNotNull(ClasspathLoader.readAsync("Test File 2").get(5, TimeUnit.SECONDS));
+		assertThrows(IllegalArgumentException.class, () -> reader.setMaxPending(-1));
+	}
+
+	private static byte[] bytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
+	}
+}
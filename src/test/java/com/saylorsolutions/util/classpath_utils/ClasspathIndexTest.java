@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ClasspathIndexTest {
+	private File resources;
+	private File jar;
+
+	@BeforeEach
+	void before() throws Exception {
+		resources = ClasspathLoader.fileReference("Test File 1").getParentFile();
+		jar = File.createTempFile("index", ".jar");
+		jar.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+			zos.putNextEntry(new ZipEntry("Test File 1"));
+			zos.write("Shadowed".getBytes(StandardCharsets.UTF_8));
+			zos.closeEntry();
+			zos.putNextEntry(new ZipEntry("jar/"));
+			zos.closeEntry();
+			zos.putNextEntry(new ZipEntry("jar/In Jar.txt"));
+			zos.write("In Jar".getBytes(StandardCharsets.UTF_8));
+			zos.closeEntry();
+		}
+	}
+
+	@Test
+	void testDirectoryAndArchiveRoots() throws Exception {
+		ClasspathIndex index = ClasspathIndex.build(Arrays.asList(resources, jar));
+
+		ClasspathIndex.Location file3 = index.find("folder/Test File 3");
+		assertNotNull(file3);
+		assertFalse(file3.isArchiveEntry());
+		assertEquals(resources, file3.getRoot());
+		assertEquals("Test File 3", read(file3.toURL()));
+		assertTrue(index.contains("folder"));
+		assertTrue(index.contains("folder/"));
+		assertTrue(index.find("folder").isDirectory());
+		assertFalse(file3.isDirectory());
+
+		// The first root wins
+		assertEquals(resources, index.find("Test File 1").getRoot());
+
+		ClasspathIndex.Location inJar = index.find("jar/In Jar.txt");
+		assertTrue(inJar.isArchiveEntry());
+		assertEquals(ZipEntry.DEFLATED, inJar.getMethod());
+		assertEquals(6, inJar.getSize());
+		assertTrue(inJar.getOffset() > 0);
+		assertEquals("In Jar", read(inJar.toURL()));
+		assertTrue(index.contains("jar/"));
+		assertTrue(index.find("jar/").isDirectory());
+		assertFalse(inJar.isDirectory());
+
+		assertNull(index.find("This file doesn't exist"));
+	}
+
+	@Test
+	void testWriteAndLoad() throws Exception {
+		List<File> roots = Arrays.asList(jar, resources);
+		ClasspathIndex built = ClasspathIndex.build(roots);
+		File indexFile = File.createTempFile("classpath", ".idx");
+		indexFile.deleteOnExit();
+		built.write(indexFile);
+
+		ClasspathIndex loaded = ClasspathIndex.load(indexFile, roots);
+		assertNotNull(loaded);
+		assertEquals(built.size(), loaded.size());
+		assertEquals("Shadowed", read(loaded.find("Test File 1").toURL()));
+		assertEquals(built.find("jar/In Jar.txt").getOffset(), loaded.find("jar/In Jar.txt").getOffset());
+		assertNotNull(loaded.find("folder/Test File 3"));
+
+		assertNull(ClasspathIndex.load(indexFile, Collections.singletonList(resources)));
+		assertNull(ClasspathIndex.load(new File(indexFile.getPath() + ".missing"), roots));
+	}
+
+	@Test
+	void testLoaderConsultsIndex() throws Exception {
+		ClasspathLoader.setClasspathIndex(ClasspathIndex.build(Arrays.asList(jar, resources)));
+		try {
+			assertEquals("Shadowed", ClasspathLoader.fileContents("Test File 1"));
+			assertEquals("In Jar", ClasspathLoader.fileContents("jar/In Jar.txt"));
+			assertNull(ClasspathLoader.fileInputStream("This file doesn't exist"));
+		} finally {
+			ClasspathLoader.setClasspathIndex(null);
+		}
+		assertEquals("Test File 1", ClasspathLoader.fileContents("Test File 1"));
+	}
+
+	private static String read(URL url) throws Exception {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+			return reader.readLine();
+		}
+	}
+}
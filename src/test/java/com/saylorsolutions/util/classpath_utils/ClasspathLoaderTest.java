@@ -19,9 +19,18 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.Test;
 
@@ -94,4 +103,97 @@ class ClasspathLoaderTest {
 		assertNotNull(line);
 		assertEquals("Test File 3", line);
 	}
+
+	@Test
+	void testFileBytes() throws Exception {
+		byte[] file3 = ClasspathLoader.fileBytes("folder/Test File 3");
+		assertNotNull(file3);
+		assertEquals(ClasspathLoader.fileReference("folder/Test File 3").length(), file3.length);
+		assertEquals("Test File 3", new String(file3, StandardCharsets.UTF_8).trim());
+		assertNull(ClasspathLoader.fileBytes("This file doesn't exist"));
+	}
+
+	@Test
+	void testFileContentsWithCharset() throws Exception {
+		String props = ClasspathLoader.fileContents("test.properties", StandardCharsets.ISO_8859_1);
+		assertTrue(props.startsWith("# String props\n") || props.startsWith("# String props\r\n"));
+		assertEquals("", ClasspathLoader.fileContents("This file doesn't exist", StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testFileContentsIntoBuffer() throws Exception {
+		ByteBuffer dst = ByteBuffer.allocate(64);
+		int read = ClasspathLoader.fileContents("Test File 1", dst);
+		assertEquals(ClasspathLoader.fileBytes("Test File 1").length, read);
+		assertEquals(read, dst.position());
+		assertEquals(-1, ClasspathLoader.fileContents("This file doesn't exist", dst));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(read);
+		assertEquals(read, ClasspathLoader.fileContents("Test File 1", direct));
+
+		assertThrows(BufferOverflowException.class, () -> ClasspathLoader.fileContents("Test File 1", ByteBuffer.allocate(2)));
+	}
+
+	@Test
+	void testFileContentsOverflowDoesNotLeak() throws Exception {
+		File fds = new File("/proc/self/fd");
+		int before = (fds.isDirectory() ? fds.list().length : 0);
+		for (int i = 0; i < 2000; i++) {
+			assertThrows(BufferOverflowException.class, () -> ClasspathLoader.fileContents("Test File 1", ByteBuffer.allocate(2)));
+		}
+		if (fds.isDirectory()) {
+			// Leaked descriptors would number in the thousands, allow for unrelated ones
+			assertTrue(fds.list().length < before + 100);
+		}
+	}
+
+	@Test
+	void testZipFileBytes() throws Exception {
+		byte[] bytes = ClasspathLoader.zipFileBytes("archive.zip", "folder/Test File 3");
+		assertNotNull(bytes);
+		assertEquals("Test File 3", new String(bytes, StandardCharsets.UTF_8).trim());
+		assertNull(ClasspathLoader.zipFileBytes("archive.zip", "This file doesn't exist"));
+	}
+
+	@Test
+	void testNestedArchives() throws Exception {
+		byte[] inner = Files.readAllBytes(ClasspathLoader.fileReference("archive.zip").toPath());
+		File outer = File.createTempFile("outer", ".jar");
+		outer.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(outer))) {
+			ZipEntry stored = new ZipEntry("lib/stored.zip");
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(inner.length);
+			CRC32 crc = new CRC32();
+			crc.update(inner);
+			stored.setCrc(crc.getValue());
+			zos.putNextEntry(stored);
+			zos.write(inner);
+			zos.closeEntry();
+			zos.putNextEntry(new ZipEntry("lib/deflated.zip"));
+			zos.write(inner);
+			zos.closeEntry();
+		}
+
+		ClasspathLoader.setClasspathIndex(ClasspathIndex.build(Collections.singletonList(outer)));
+		try {
+			assertNull(ClasspathLoader.fileReference("lib/stored.zip"));
+			assertNull(ClasspathLoader.zip("lib/stored.zip"));
+			for (String nested : new String[] { "lib/stored.zip", "lib/deflated.zip" }) {
+				byte[] bytes = ClasspathLoader.zipFileBytes(nested, "folder/Test File 3");
+				assertEquals("Test File 3", new String(bytes, StandardCharsets.UTF_8).trim());
+				try (BufferedReader reader = ClasspathLoader.zipFileBufferedReader(nested, "Test File 1")) {
+					assertEquals("Test File 1", reader.readLine());
+				}
+				assertEquals(3, ClasspathLoader.zipEntries(nested, "**").count());
+				assertSame(ClasspathLoader.mappedZip(nested), ClasspathLoader.mappedZip(nested));
+			}
+			// Stored archives are read straight out of the outer mapping
+			assertTrue(ClasspathLoader.mappedZip("lib/stored.zip").rawBufferAt(0).isDirect());
+			assertFalse(ClasspathLoader.mappedZip("lib/deflated.zip").rawBufferAt(0).isDirect());
+			assertNull(ClasspathLoader.zipFileBytes("lib/missing.zip", "Test File 1"));
+		} finally {
+			ClasspathLoader.setClasspathIndex(null);
+		}
+	}
 }
@@ -16,10 +16,19 @@
 package com.saylorsolutions.util.classpath_utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -58,6 +67,22 @@ public class ClasspathPropertiesTest {
 		assertEquals("some_prop_test", props.getProperty("some.prop.test"));
 	}
 	
+	@Test
+	@DisplayName("Lazily indexed props read the same as loaded props")
+	public void testLazyLoad() {
+		ClasspathProperties lazy = ClasspathProperties.lazy("test.properties");
+		assertEquals("test_prop_1", lazy.getProperty("test.prop.1"));
+		assertEquals("some_prop_test", lazy.getProperty("some.prop.test"));
+		assertEquals(2020, lazy.getIntegerProperty("int2"));
+		assertTrue(lazy.getBooleanProperty("bool1"));
+		assertEquals("", lazy.getProperty("missing"));
+		assertTrue(lazy.reload());
+
+		lazy = ClasspathProperties.lazy("some_nonexistant_file");
+		assertEquals("", lazy.getProperty("test.prop.1"));
+		assertFalse(lazy.reload());
+	}
+	
 	@Test
 	@DisplayName("Test loading of int and BigInteger classpath props")
 	public void testLoadIntegerProps() {
@@ -91,4 +116,161 @@ public class ClasspathPropertiesTest {
 		assertEquals(BigDecimal.ZERO, props.getBigDecimalProperty("baddec1"));
 		props.setShowStacktraces(true);
 	}
+
+	@Test
+	@DisplayName("Test loading of boolean classpath props")
+	public void testLoadBooleanProps() {
+		assertTrue(props.getBooleanProperty("bool1"));
+		assertFalse(props.getBooleanProperty("bool2", true));
+		assertTrue(props.getBooleanProperty("badbool", true));
+		assertFalse(props.getBooleanProperty("badbool"));
+		assertTrue(props.getBooleanProperty("missing.bool", true));
+	}
+
+	@Test
+	@DisplayName("Typed values are remembered, including failures")
+	public void testTypedValuesRemembered() {
+		props.setShowStacktraces(false);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(1010, props.getIntegerProperty("int1"));
+			assertEquals(7, props.getIntegerProperty("badint2", 7));
+			assertEquals(1010.0, props.getDecimalProperty("int1"));
+			assertEquals(2.5, props.getDecimalProperty("baddec1", 2.5));
+			assertEquals(9, props.getIntegerProperty("missing.int", 9));
+		}
+		assertSame(props.getBigIntegerProperty("int2"), props.getBigIntegerProperty("int2"));
+		assertSame(props.getBigDecimalProperty("dec2"), props.getBigDecimalProperty("dec2"));
+		props.setShowStacktraces(true);
+	}
+
+	@Test
+	@DisplayName("Reloading swaps in new values and notifies listeners")
+	public void testReload() throws Exception {
+		File file = new File(ClasspathLoader.fileReference("test.properties").getParentFile(), "reload.properties");
+		Files.write(file.toPath(), "reload.int=1\nreload.same=x\n".getBytes(StandardCharsets.ISO_8859_1));
+		try {
+			ClasspathProperties reloadable = new ClasspathProperties("reload.properties");
+			List<String> changes = new ArrayList<>();
+			reloadable.addChangeListener("reload.int", (key, oldValue, newValue) -> changes.add(key + ":" + oldValue + "->" + newValue));
+			reloadable.addChangeListener("reload.same", (key, oldValue, newValue) -> changes.add(key));
+			assertEquals(1, reloadable.getIntegerProperty("reload.int"));
+
+			Files.write(file.toPath(), "reload.int=2\nreload.same=x\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertTrue(reloadable.reload());
+			assertEquals(2, reloadable.getIntegerProperty("reload.int"));
+			assertEquals(1, changes.size());
+			assertEquals("reload.int:1->2", changes.get(0));
+
+			assertTrue(reloadable.enableReloading(10));
+			assertTrue(reloadable.isReloading());
+			Files.write(file.toPath(), "reload.int=300\nreload.same=x\n".getBytes(StandardCharsets.ISO_8859_1));
+			long deadline = System.currentTimeMillis() + 5000;
+			while (reloadable.getIntegerProperty("reload.int") != 300 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(300, reloadable.getIntegerProperty("reload.int"));
+			reloadable.disableReloading();
+			assertFalse(reloadable.isReloading());
+		} finally {
+			file.delete();
+			ClasspathLoader.resourceCache().invalidate("reload.properties");
+		}
+	}
+
+	@Test
+	@DisplayName("Reloading reads past the byte cache")
+	public void testReloadWithByteCache() throws Exception {
+		File file = new File(ClasspathLoader.fileReference("test.properties").getParentFile(), "cached-reload.properties");
+		Files.write(file.toPath(), "reload.int=1\n".getBytes(StandardCharsets.ISO_8859_1));
+		ClasspathLoader.byteCache().setEnabled(true);
+		try {
+			ClasspathProperties reloadable = new ClasspathProperties("cached-reload.properties");
+			ClasspathProperties layered = ClasspathProperties.layered("test.properties", "cached-reload.properties");
+			List<String> changes = new ArrayList<>();
+			reloadable.addChangeListener("reload.int", (key, oldValue, newValue) -> changes.add(oldValue + "->" + newValue));
+			assertEquals(1, reloadable.getIntegerProperty("reload.int"));
+			assertEquals(1, layered.getIntegerProperty("reload.int"));
+			assertNotNull(ClasspathLoader.fileBuffer("cached-reload.properties"));
+
+			Files.write(file.toPath(), "reload.int=2\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertTrue(reloadable.reload());
+			assertEquals(2, reloadable.getIntegerProperty("reload.int"));
+			assertEquals(1, changes.size());
+			assertEquals("1->2", changes.get(0));
+			assertTrue(layered.reload());
+			assertEquals(2, layered.getIntegerProperty("reload.int"));
+		} finally {
+			ClasspathLoader.byteCache().setEnabled(false);
+			file.delete();
+			ClasspathLoader.resourceCache().invalidate("cached-reload.properties");
+		}
+	}
+
+	@Test
+	@DisplayName("Layers are flattened with later layers taking precedence")
+	public void testLayered() throws Exception {
+		File file = new File(ClasspathLoader.fileReference("test.properties").getParentFile(), "override.properties");
+		Files.write(file.toPath(), "int1=3030\nlayer.only=here\n".getBytes(StandardCharsets.ISO_8859_1));
+		try {
+			ClasspathProperties layered = ClasspathProperties.layered("test.properties", "some_nonexistant_file",
+					"override.properties");
+			assertEquals(3030, layered.getIntegerProperty("int1"));
+			assertEquals(2020, layered.getIntegerProperty("int2"));
+			assertEquals("here", layered.getProperty("layer.only"));
+			assertEquals("", layered.getProperty("missing"));
+
+			assertEquals("override.properties", layered.getPropertySource("int1"));
+			assertEquals("test.properties", layered.getPropertySource("int2"));
+			assertNull(layered.getPropertySource("missing"));
+			assertEquals("test.properties", props.getPropertySource("int1"));
+
+			Files.write(file.toPath(), "layer.only=changed\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertTrue(layered.enableReloading(10));
+			assertTrue(layered.reload());
+			assertEquals(1010, layered.getIntegerProperty("int1"));
+			assertEquals("changed", layered.getProperty("layer.only"));
+			assertEquals("test.properties", layered.getPropertySource("int1"));
+			layered.disableReloading();
+		} finally {
+			file.delete();
+			ClasspathLoader.resourceCache().invalidate("override.properties");
+		}
+	}
+
+	@Test
+	@DisplayName("Placeholders are resolved once interpolation is enabled")
+	public void testInterpolation() throws Exception {
+		String variable = System.getenv().keySet().iterator().next();
+		File file = new File(ClasspathLoader.fileReference("test.properties").getParentFile(), "interpolate.properties");
+		Files.write(file.toPath(), ("base=${int1}0\nenv=${env:" + variable + "}\n").getBytes(StandardCharsets.ISO_8859_1));
+		try {
+			ClasspathProperties layered = ClasspathProperties.layered("test.properties", "interpolate.properties");
+			assertFalse(layered.isInterpolating());
+			assertEquals("${int1}0", layered.getProperty("base"));
+
+			layered.setInterpolating(true);
+			assertEquals(10100, layered.getIntegerProperty("base"));
+			assertEquals(System.getenv(variable), layered.getProperty("env"));
+
+			Files.write(file.toPath(), "base=${int2}0\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertTrue(layered.reload());
+			assertEquals(20200, layered.getIntegerProperty("base"));
+
+			layered.setInterpolating(false);
+			assertEquals("${int2}0", layered.getProperty("base"));
+		} finally {
+			file.delete();
+			ClasspathLoader.resourceCache().invalidate("interpolate.properties");
+		}
+	}
+
+	@Test
+	@DisplayName("Resources that aren't plain files can't be watched")
+	public void testReloadMissingResource() {
+		props.setShowStacktraces(false);
+		props = new ClasspathProperties("some_nonexistant_file");
+		assertFalse(props.enableReloading(1000));
+		assertFalse(props.reload());
+		assertEquals("", props.getProperty("anything"));
+	}
 }
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+class InterpolatingStoreTest {
+	private static final String SOURCE = "host=example.com\n"
+			+ "port=8080\n"
+			+ "url=http://${host}:${port}/${path:-index}\n"
+			+ "nested=${missing:-${url}}\n"
+			+ "unresolved=${missing} and ${env:CLASSPATH_UTILS_UNSET:-fallback}\n"
+			+ "escaped=$${host}\n"
+			+ "a=${b}\n"
+			+ "b=x${a}\n"
+			+ "c=${a}\n";
+
+	@Test
+	void testResolvesLikeAnInterpolatedTable() throws Exception {
+		InterpolatingStore store = new InterpolatingStore(index(SOURCE));
+		assertEquals("http://example.com:8080/index", store.get("url"));
+		assertSame(store.get("url"), store.get("url"));
+		assertEquals("http://example.com:8080/index", store.get("nested"));
+		assertEquals("${missing} and fallback", store.get("unresolved"));
+		assertEquals("${host}", store.get("escaped"));
+		assertEquals(8080, store.typedValue("port").longValue(0, false));
+		assertNull(store.get("missing"));
+		assertSame(TypedValue.EMPTY, store.typedValue("missing"));
+
+		// Keys in a cycle are served as written, keys outside of it still resolve
+		assertEquals("${b}", store.get("c"));
+		assertEquals("${b}", store.get("a"));
+		assertEquals("x${a}", store.get("b"));
+
+		PropertyTable table = PropertyTable.interpolated(PropertyTable.of(load(SOURCE)));
+		Map<String, String> expected = new HashMap<>();
+		table.forEach(expected::put);
+		Map<String, String> actual = new HashMap<>();
+		new InterpolatingStore(index(SOURCE)).forEach(actual::put);
+		assertEquals(expected, actual);
+		assertEquals(table.size(), store.size());
+	}
+
+	@Test
+	void testOnlyReadValuesAreKept() {
+		InterpolatingStore store = new InterpolatingStore(index(SOURCE));
+		assertEquals(0, store.resolvedCount());
+		store.get("url");
+		// The url and the two keys it refers to
+		assertEquals(3, store.resolvedCount());
+		store.get("missing");
+		assertEquals(3, store.resolvedCount());
+	}
+
+	@Test
+	void testLazyPropertiesInterpolateOnRead() throws Exception {
+		File file = new File(ClasspathLoader.fileReference("test.properties").getParentFile(), "lazy-interpolate.properties");
+		Files.write(file.toPath(), "base=one\nderived=${base}-two\n".getBytes(StandardCharsets.ISO_8859_1));
+		try {
+			ClasspathProperties lazy = ClasspathProperties.lazy("lazy-interpolate.properties");
+			lazy.setInterpolating(true);
+			assertEquals("one-two", lazy.getProperty("derived"));
+
+			Files.write(file.toPath(), "base=three\nderived=${base}-four\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertTrue(lazy.reload());
+			assertEquals("three-four", lazy.getProperty("derived"));
+			lazy.setInterpolating(false);
+			assertEquals("${base}-four", lazy.getProperty("derived"));
+		} finally {
+			file.delete();
+			ClasspathLoader.resourceCache().invalidate("lazy-interpolate.properties");
+		}
+	}
+
+	private static LazyPropertyIndex index(String contents) {
+		return new LazyPropertyIndex(ByteBuffer.wrap(contents.getBytes(StandardCharsets.ISO_8859_1)));
+	}
+
+	private static Properties load(String contents) throws IOException {
+		Properties props = new Properties();
+		props.load(new StringReader(contents));
+		return props;
+	}
+}
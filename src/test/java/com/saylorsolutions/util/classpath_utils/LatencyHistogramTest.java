@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+	@Test
+	void testBuckets() {
+		long previous = -1;
+		for (long value : new long[] { 0, 1, 7, 8, 9, 15, 16, 100, 1_000_000, Long.MAX_VALUE }) {
+			int index = LatencyHistogram.indexOf(value);
+			long upper = LatencyHistogram.upperBoundOf(index);
+			assertTrue(upper >= value);
+			assertTrue(upper - value <= value / 8, "value " + value + " bucket bound " + upper);
+			assertTrue(index > previous || value == 0);
+			previous = index;
+		}
+	}
+
+	@Test
+	void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.percentile(50));
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(1000, histogram.count());
+		assertEquals(500_500.0, histogram.mean(), 0.001);
+		assertEquals(1_000_000, histogram.max());
+		long p50 = histogram.percentile(50);
+		assertTrue(p50 >= 500_000 && p50 <= 500_000 * 9 / 8, "p50 " + p50);
+		long p99 = histogram.percentile(99);
+		assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99 " + p99);
+
+		histogram.reset();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.percentile(99));
+	}
+}
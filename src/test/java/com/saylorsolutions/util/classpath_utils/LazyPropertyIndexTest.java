@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+class LazyPropertyIndexTest {
+	private static final String TRICKY = "# comment\n"
+			+ "! also a comment \\\n"
+			+ "plain=value\n"
+			+ "   indented : spaced value  \n"
+			+ "no.separator\n"
+			+ "white space\tvalue\n"
+			+ "equals==value\n"
+			+ "esc\\=aped\\:key\\ name=x\n"
+			+ "unicode=caf\\u00e9 \\t\\n\\r\\f\\\\\n"
+			+ "continued=one, \\\n"
+			+ "    two, \\\r\n"
+			+ "\tthree\r\n"
+			+ "\r\n"
+			+ "\n"
+			+ "duplicate=first\n"
+			+ "duplicate=second\n"
+			+ "Aa=collides\n"
+			+ "BB=with Aa\n"
+			+ "latin1=\u00e9\u00ff\n"
+			+ "\\#not.comment=kept\n"
+			+ "empty=\n"
+			+ "trailing=ends without newline";
+
+	@Test
+	void testMatchesPropertiesLoad() throws IOException {
+		byte[] bytes = TRICKY.getBytes(StandardCharsets.ISO_8859_1);
+		Properties expected = new Properties();
+		expected.load(new ByteArrayInputStream(bytes));
+
+		LazyPropertyIndex index = new LazyPropertyIndex(ByteBuffer.wrap(bytes));
+		assertEquals(expected.size(), index.size());
+		for (String key : expected.stringPropertyNames()) {
+			assertEquals(expected.getProperty(key), index.get(key), key);
+		}
+		Properties visited = new Properties();
+		index.forEach(visited::setProperty);
+		assertEquals(expected, visited);
+		assertNull(index.get("missing"));
+		assertNull(index.get("# comment"));
+	}
+
+	@Test
+	void testTypedValues() {
+		LazyPropertyIndex index = new LazyPropertyIndex(ByteBuffer.wrap("int=42".getBytes(StandardCharsets.ISO_8859_1)));
+		assertSame(index.typedValue("int"), index.typedValue("int"));
+		assertEquals(42, index.typedValue("int").longValue(0, false));
+		assertSame(TypedValue.EMPTY, index.typedValue("missing"));
+		assertEquals(0, new LazyPropertyIndex(ByteBuffer.allocate(0)).size());
+	}
+
+	@Test
+	void testMalformedEscape() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new LazyPropertyIndex(ByteBuffer.wrap("bad\\u00zz=1".getBytes(StandardCharsets.ISO_8859_1))));
+	}
+
+	@Test
+	void testMappedFile() throws IOException {
+		File file = File.createTempFile("lazy", ".properties");
+		file.deleteOnExit();
+		Properties expected = new Properties();
+		for (int i = 0; i < 10000; i++) {
+			expected.setProperty("key." + i, "value " + i + " \u00e9");
+		}
+		try (OutputStream os = new FileOutputStream(file)) {
+			expected.store(os, null);
+		}
+
+		LazyPropertyIndex index = LazyPropertyIndex.map(file);
+		assertEquals(expected.size(), index.size());
+		for (String key : expected.stringPropertyNames()) {
+			assertEquals(expected.getProperty(key), index.get(key));
+		}
+	}
+}
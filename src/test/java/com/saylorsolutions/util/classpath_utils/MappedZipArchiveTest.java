@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathLoader.ZipReaderMode;
+
+class MappedZipArchiveTest {
+
+	@Test
+	void testReadClasspathArchive() throws Exception {
+		MappedZipArchive archive = ClasspathLoader.mappedZip("archive.zip");
+		assertNotNull(archive);
+		assertSame(archive, ClasspathLoader.mappedZip("archive.zip"));
+		assertEquals(4, archive.size());
+		assertTrue(archive.contains("folder"));
+		assertFalse(archive.contains("This file doesn't exist"));
+		assertNull(archive.entryBuffer("This file doesn't exist"));
+
+		ByteBuffer buffer = ClasspathLoader.zipFileBuffer("archive.zip", "folder/Test File 3");
+		assertNotNull(buffer);
+		assertTrue(buffer.isReadOnly());
+		assertEquals("Test File 3", StandardCharsets.UTF_8.decode(buffer).toString().trim());
+	}
+
+	@Test
+	void testMappedReaderMode() throws Exception {
+		ClasspathLoader.setZipReaderMode(ZipReaderMode.MAPPED);
+		try {
+			BufferedReader br = ClasspathLoader.zipFileBufferedReader("archive.zip", "Test File 2");
+			assertNotNull(br);
+			assertEquals("Test File 2", br.readLine());
+			br.close();
+		} finally {
+			ClasspathLoader.setZipReaderMode(null);
+		}
+		assertEquals(ZipReaderMode.ZIP_FILE, ClasspathLoader.getZipReaderMode());
+	}
+
+	@Test
+	void testStoredAndDeflatedEntries() throws Exception {
+		byte[] payload = new byte[100_000];
+		new Random(42).nextBytes(payload);
+		byte[] text = repeat("compressible text ", 5_000);
+		File zip = File.createTempFile("mapped", ".zip");
+		zip.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+			ZipEntry stored = new ZipEntry("stored.bin");
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(payload.length);
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			stored.setCrc(crc.getValue());
+			zos.putNextEntry(stored);
+			zos.write(payload);
+			zos.closeEntry();
+
+			zos.putNextEntry(new ZipEntry("deflated.txt"));
+			zos.write(text);
+			zos.closeEntry();
+
+			zos.putNextEntry(new ZipEntry("empty.txt"));
+			zos.closeEntry();
+		}
+
+		MappedZipArchive archive = MappedZipArchive.open(zip);
+		assertEquals(3, archive.size());
+
+		ByteBuffer storedBuffer = archive.entryBuffer("stored.bin");
+		assertTrue(storedBuffer.isReadOnly());
+		assertEquals(ByteBuffer.wrap(payload), storedBuffer);
+		assertArrayEquals(payload, readAll(archive.entryInputStream("stored.bin")));
+
+		assertEquals(text.length, archive.entrySize("deflated.txt"));
+		assertEquals(ByteBuffer.wrap(text), archive.entryBuffer("deflated.txt"));
+		assertArrayEquals(text, readAll(archive.entryInputStream("deflated.txt")));
+
+		assertEquals(0, archive.entryBuffer("empty.txt").remaining());
+		assertEquals(-1, archive.entryInputStream("empty.txt").read());
+	}
+
+	@Test
+	void testLookupAcrossManyEntries() throws Exception {
+		File zip = File.createTempFile("mapped-many", ".zip");
+		zip.deleteOnExit();
+		int entries = 2_000;
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+			// Written in reverse so the index has to sort them
+			for (int i = entries - 1; i >= 0; i--) {
+				zos.putNextEntry(new ZipEntry("dir" + (i % 7) + "/entry-" + i + ".txt"));
+				zos.write(("value " + i).getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+		}
+
+		MappedZipArchive archive = MappedZipArchive.open(zip);
+		assertEquals(entries, archive.size());
+		for (int i = 0; i < entries; i++) {
+			String name = "dir" + (i % 7) + "/entry-" + i + ".txt";
+			assertEquals("value " + i, StandardCharsets.UTF_8.decode(archive.entryBuffer(name)).toString());
+		}
+		for (int i = 1; i < entries; i++) {
+			assertTrue(archive.nameAt(i - 1).compareTo(archive.nameAt(i)) < 0);
+		}
+	}
+
+	@Test
+	void testNotAZip() throws Exception {
+		assertNull(ClasspathLoader.mappedZip("notazip.zip"));
+	}
+
+	@Test
+	void testUnsupportedLocation() throws Exception {
+		Map<String, byte[]> memory = new ConcurrentHashMap<>();
+		memory.put("memory.zip", Files.readAllBytes(ClasspathLoader.fileReference("archive.zip").toPath()));
+		ClasspathLoader.setResourceSource(ResourceSource.memory(memory));
+		PrintStream err = System.err;
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(log, true));
+		try {
+			assertNull(ClasspathLoader.mappedZip("memory.zip"));
+		} finally {
+			System.setErr(err);
+			ClasspathLoader.setResourceSource(null);
+		}
+		String logged = log.toString();
+		assertTrue(logged.startsWith("Unsupported location"), logged);
+		assertFalse(logged.contains("Exception"), logged);
+	}
+
+	@Test
+	void testCorruptCentralDirectoryRejected() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ZipOutputStream zos = new ZipOutputStream(out)) {
+			ZipEntry entry = new ZipEntry("entry.txt");
+			entry.setExtra(new byte[] { (byte) 0xFE, (byte) 0xCA, 0, 0 });
+			zos.putNextEntry(entry);
+			zos.write("contents".getBytes(StandardCharsets.UTF_8));
+			zos.closeEntry();
+		}
+		byte[] intact = out.toByteArray();
+		ByteBuffer end = ByteBuffer.wrap(intact).order(ByteOrder.LITTLE_ENDIAN);
+		int eocd = intact.length - 22;
+		int cen = end.getInt(eocd + 16);
+		assertNotNull(new MappedZipArchive("intact", ByteBuffer.wrap(intact)));
+
+		// A name running past the end of the directory
+		byte[] longName = intact.clone();
+		ByteBuffer.wrap(longName).order(ByteOrder.LITTLE_ENDIAN).putShort(cen + 28, (short) 0xFFF0);
+		assertThrows(ZipException.class, () -> new MappedZipArchive("longName", ByteBuffer.wrap(longName)));
+
+		// More entries than the directory has room for
+		byte[] manyEntries = intact.clone();
+		ByteBuffer.wrap(manyEntries).order(ByteOrder.LITTLE_ENDIAN).putShort(eocd + 10, (short) 0xFFFE);
+		assertThrows(ZipException.class, () -> new MappedZipArchive("manyEntries", ByteBuffer.wrap(manyEntries)));
+
+		// A zip64 extra field too short for the size it stands in for
+		byte[] shortExtra = intact.clone();
+		ByteBuffer patch = ByteBuffer.wrap(shortExtra).order(ByteOrder.LITTLE_ENDIAN);
+		patch.putInt(cen + 24, 0xFFFFFFFF);
+		patch.putShort(cen + 46 + "entry.txt".length(), (short) 0x0001);
+		assertThrows(ZipException.class, () -> new MappedZipArchive("shortExtra", ByteBuffer.wrap(shortExtra)));
+
+		// An extra field whose length runs past its header
+		byte[] longExtra = intact.clone();
+		ByteBuffer.wrap(longExtra).order(ByteOrder.LITTLE_ENDIAN).putShort(cen + 48 + "entry.txt".length(), (short) 100);
+		patch = ByteBuffer.wrap(longExtra).order(ByteOrder.LITTLE_ENDIAN);
+		patch.putInt(cen + 24, 0xFFFFFFFF);
+		assertThrows(ZipException.class, () -> new MappedZipArchive("longExtra", ByteBuffer.wrap(longExtra)));
+
+		File zip = File.createTempFile("mapped-corrupt", ".zip");
+		zip.deleteOnExit();
+		Files.write(zip.toPath(), longName);
+		assertNull(ClasspathLoader.mappedZip(zip));
+	}
+
+	@Test
+	void testVerify() throws Exception {
+		assertEquals(0, ClasspathLoader.verifyZip("archive.zip").size());
+		assertNull(ClasspathLoader.verifyZip("notazip.zip"));
+
+		byte[] intact = repeat("intact ", 100);
+		byte[] damaged = repeat("damaged ", 100);
+		File zip = File.createTempFile("mapped-verify", ".zip");
+		zip.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+			for (String name : new String[] { "intact.txt", "damaged.txt" }) {
+				byte[] contents = name.startsWith("intact") ? intact : damaged;
+				ZipEntry entry = new ZipEntry(name);
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(contents.length);
+				CRC32 crc = new CRC32();
+				crc.update(contents);
+				entry.setCrc(crc.getValue());
+				zos.putNextEntry(entry);
+				zos.write(contents);
+				zos.closeEntry();
+			}
+		}
+		byte[] bytes = Files.readAllBytes(zip.toPath());
+		byte[] marker = "damaged 50".getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] == marker[0] && new String(bytes, i, marker.length, StandardCharsets.UTF_8).equals("damaged 50")) {
+				bytes[i] = 'D';
+				break;
+			}
+		}
+		Files.write(zip.toPath(), bytes);
+		assertEquals(Collections.singletonList("damaged.txt"), MappedZipArchive.open(zip).verify());
+	}
+
+	private static byte[] repeat(String value, int times) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			builder.append(value).append(i);
+		}
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[1024];
+		int count;
+		while ((count = is.read(buf)) != -1) {
+			out.write(buf, 0, count);
+		}
+		is.close();
+		return out.toByteArray();
+	}
+}
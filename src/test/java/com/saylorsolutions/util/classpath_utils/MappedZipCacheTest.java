@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MappedZipCacheTest {
+	private MappedZipCache cache;
+	private File dir;
+
+	@BeforeEach
+	void before() throws IOException {
+		cache = new MappedZipCache();
+		dir = Files.createTempDirectory("mapped-zip-cache").toFile();
+	}
+
+	@AfterEach
+	void after() {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	void testViewsAreShared() throws Exception {
+		File archive = writeArchive("a.zip", "one");
+		MappedZipArchive view = cache.get(archive);
+		assertSame(view, cache.get(archive));
+		assertSame(view, cache.get(new File(dir, "./a.zip")));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void testRebuiltArchiveIsMappedAgain() throws Exception {
+		File archive = writeArchive("a.zip", "one");
+		MappedZipArchive view = cache.get(archive);
+
+		File rebuilt = writeArchive("b.zip", "one", "two");
+		Files.move(rebuilt.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		MappedZipArchive remapped = cache.get(archive);
+		assertNotSame(view, remapped);
+		assertEquals(2, remapped.size());
+		assertEquals("two", StandardCharsets.UTF_8.decode(remapped.entryBuffer("two")).toString());
+		assertEquals(1, cache.size());
+
+		// The old view still reads the archive it was mapped from
+		assertEquals(1, view.size());
+	}
+
+	@Test
+	void testInvalidate() throws Exception {
+		File a = writeArchive("a.zip", "one");
+		File b = writeArchive("b.zip", "one");
+		MappedZipArchive view = cache.get(a);
+		cache.get(b);
+		cache.invalidate(new File(dir, "./a.zip"));
+		assertEquals(1, cache.size());
+		assertNotSame(view, cache.get(a));
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testNestedViewsDroppedWithTheirArchive() throws Exception {
+		File archive = writeArchive("a.zip", "one");
+		File canonical = archive.getCanonicalFile();
+		MappedZipArchive nested = cache.get("nested", canonical, () -> cache.get(canonical));
+		assertSame(nested, cache.get("nested", canonical, () -> null));
+		assertEquals(2, cache.size());
+		cache.invalidate(archive);
+		assertEquals(0, cache.size());
+		assertNull(cache.get("nested", canonical, () -> null));
+	}
+
+	@Test
+	void testLeastRecentlyUsedEviction() throws Exception {
+		File a = writeArchive("a.zip", "one");
+		File b = writeArchive("b.zip", "one");
+		File c = writeArchive("c.zip", "one");
+		cache.setMaxMapped(2);
+		MappedZipArchive viewA = cache.get(a);
+		MappedZipArchive viewB = cache.get(b);
+		cache.get(a);
+		cache.get(c);
+		assertEquals(2, cache.size());
+		assertSame(viewA, cache.get(a));
+		assertNotSame(viewB, cache.get(b));
+		assertThrows(IllegalArgumentException.class, () -> cache.setMaxMapped(0));
+	}
+
+	@Test
+	void testClasspathInvalidation() throws Exception {
+		MappedZipArchive view = ClasspathLoader.mappedZip("archive.zip");
+		assertSame(view, ClasspathLoader.mappedZip("archive.zip"));
+		ClasspathLoader.mappedZipCache().invalidate(ClasspathLoader.fileReference("archive.zip"));
+		assertNotSame(view, ClasspathLoader.mappedZip("archive.zip"));
+	}
+
+	private File writeArchive(String name, String... entries) throws IOException {
+		File file = new File(dir, name);
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file))) {
+			for (String entry : entries) {
+				zos.putNextEntry(new ZipEntry(entry));
+				zos.write(entry.getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Cache;
+import com.saylorsolutions.util.classpath_utils.ClasspathMetrics.Operation;
+
+class MetricsRecorderTest {
+	private MetricsRecorder recorder;
+
+	@BeforeEach
+	void before() {
+		recorder = new MetricsRecorder();
+		ClasspathLoader.setMetrics(recorder);
+	}
+
+	@AfterEach
+	void after() {
+		ClasspathLoader.setMetrics(null);
+		recorder.unregisterMBeans();
+	}
+
+	@Test
+	void testFileOperations() throws Exception {
+		int streamed = 0;
+		try (InputStream is = ClasspathLoader.fileInputStream("Test File 1")) {
+			while (is.read() >= 0) {
+				streamed++;
+			}
+		}
+		assertNull(ClasspathLoader.fileInputStream("This file doesn't exist"));
+		byte[] bytes = ClasspathLoader.fileBytes("Test File 2");
+
+		assertEquals(2, recorder.count(Operation.FILE_INPUT_STREAM));
+		assertEquals(1, recorder.misses(Operation.FILE_INPUT_STREAM));
+		assertEquals(streamed, recorder.bytesRead(Operation.FILE_INPUT_STREAM));
+		assertEquals(1, recorder.count(Operation.FILE_BYTES));
+		assertEquals(bytes.length, recorder.bytesRead(Operation.FILE_BYTES));
+		assertTrue(recorder.latencyNanos(Operation.FILE_INPUT_STREAM, 99) > 0);
+		assertEquals(3, recorder.cacheHits(Cache.RESOURCE_LOOKUP) + recorder.cacheMisses(Cache.RESOURCE_LOOKUP));
+	}
+
+	@Test
+	void testZipOperations() throws Exception {
+		assertNotNull(ClasspathLoader.zipFileBytes("archive.zip", "Test File 1"));
+		try (InputStream is = ClasspathLoader.zipFileInputStream("archive.zip", "Test File 2")) {
+			assertNotNull(is);
+		}
+		assertEquals(1, recorder.count(Operation.ZIP_FILE_BYTES));
+		assertEquals(1, recorder.count(Operation.ZIP_FILE_INPUT_STREAM));
+		assertEquals(12, recorder.bytesRead(Operation.ZIP_FILE_BYTES));
+		assertEquals(2, recorder.cacheHits(Cache.ZIP_FILE) + recorder.cacheMisses(Cache.ZIP_FILE));
+		assertEquals(ClasspathLoader.zipFileCache().openCount(), recorder.openZipFiles());
+	}
+
+	@Test
+	void testPropertiesLoadAndParseFailures() {
+		ClasspathProperties props = new ClasspathProperties("test.properties");
+		new ClasspathProperties("missing.properties");
+		assertEquals(2, recorder.count(Operation.PROPERTIES_LOAD));
+		assertEquals(1, recorder.misses(Operation.PROPERTIES_LOAD));
+
+		props.getIntegerProperty("badint2");
+		props.getIntegerProperty("badint2");
+		props.getDecimalProperty("baddec1");
+		props.getBooleanProperty("badbool");
+		props.getIntegerProperty("int1");
+		assertEquals(3, recorder.parseFailures());
+	}
+
+	@Test
+	void testDisabledRecordsNothing() {
+		ClasspathLoader.setMetrics(null);
+		assertSame(ClasspathMetrics.NONE, ClasspathLoader.getMetrics());
+		ClasspathLoader.fileBytes("Test File 1");
+		assertEquals(0, recorder.count(Operation.FILE_BYTES));
+	}
+
+	@Test
+	void testMBeans() throws Exception {
+		ClasspathLoader.fileBytes("Test File 1");
+		recorder.registerMBeans();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName operation = new ObjectName(MetricsRecorder.JMX_DOMAIN + ":type=ClasspathMetrics,operation=fileBytes");
+		assertEquals(1L, server.getAttribute(operation, "Count"));
+		assertTrue((Double) server.getAttribute(operation, "P99LatencyMicros") > 0);
+		ObjectName summary = new ObjectName(MetricsRecorder.JMX_DOMAIN + ":type=ClasspathMetrics");
+		assertNotNull(server.getAttribute(summary, "ParseFailures"));
+
+		server.invoke(summary, "reset", null, null);
+		assertEquals(0L, server.getAttribute(operation, "Count"));
+
+		recorder.unregisterMBeans();
+		assertFalse(server.isRegistered(operation));
+	}
+}
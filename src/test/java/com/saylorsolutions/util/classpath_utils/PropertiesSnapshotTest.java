@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+class PropertiesSnapshotTest {
+	private static final String SOURCE = "plain=value\nint=42\ndec=1.5\nbad=12x\nunicode=caf\\u00e9\n"
+			+ "Aa=first\nBB=second\n";
+
+	@Test
+	void testRoundTrip() throws Exception {
+		ByteBuffer source = ByteBuffer.wrap(SOURCE.getBytes(StandardCharsets.ISO_8859_1));
+		Properties props = new Properties();
+		props.load(new ByteArrayInputStream(SOURCE.getBytes(StandardCharsets.ISO_8859_1)));
+		ByteBuffer compiled = PropertiesSnapshot.compile(source, PropertyTable.of(props));
+
+		PropertiesSnapshot snapshot = PropertiesSnapshot.open(source, compiled);
+		assertNotNull(snapshot);
+		assertEquals(props.size(), snapshot.size());
+		assertEquals("value", snapshot.get("plain"));
+		assertEquals("café", snapshot.get("unicode"));
+		assertEquals("first", snapshot.get("Aa"));
+		assertEquals("second", snapshot.get("BB"));
+		assertNull(snapshot.get("missing"));
+		assertEquals(42, snapshot.typedValue("int").longValue(0, false));
+		assertEquals(1.5, snapshot.typedValue("dec").doubleValue(0, false));
+		assertEquals(7, snapshot.typedValue("bad").longValue(7, false));
+		assertSame(snapshot.typedValue("int"), snapshot.typedValue("int"));
+		assertSame(TypedValue.EMPTY, snapshot.typedValue("missing"));
+
+		Map<String, String> copy = new HashMap<>();
+		snapshot.forEach(copy::put);
+		assertEquals(props, toProperties(copy));
+	}
+
+	@Test
+	void testStaleOrCorruptSnapshotsIgnored() {
+		ByteBuffer source = ByteBuffer.wrap(SOURCE.getBytes(StandardCharsets.ISO_8859_1));
+		Properties props = new Properties();
+		props.setProperty("plain", "value");
+		ByteBuffer compiled = PropertiesSnapshot.compile(source, PropertyTable.of(props));
+
+		ByteBuffer edited = ByteBuffer.wrap(SOURCE.replace("42", "43").getBytes(StandardCharsets.ISO_8859_1));
+		assertNull(PropertiesSnapshot.open(edited, compiled));
+		assertNull(PropertiesSnapshot.open(source, ByteBuffer.wrap(new byte[] { 1, 2, 3 })));
+		assertNotNull(PropertiesSnapshot.open(source, compiled));
+
+		// Corrupt entry offsets and string tables are caught even though the source matches
+		for (int at = 40; at < compiled.limit(); at++) {
+			ByteBuffer corrupt = ByteBuffer.allocate(compiled.limit()).put(compiled.duplicate());
+			corrupt.put(at, (byte) (corrupt.get(at) ^ 0x40)).flip();
+			assertNull(PropertiesSnapshot.open(source, corrupt), "corrupted at " + at);
+		}
+	}
+
+	@Test
+	void testLoaderPrefersMatchingSnapshot() throws Exception {
+		File file = new File(ClasspathLoader.fileReference("test.properties").getParentFile(), "compiled.properties");
+		File snapshotFile = new File(file.getPath() + PropertiesSnapshot.SUFFIX);
+		Files.write(file.toPath(), "key=text\n".getBytes(StandardCharsets.ISO_8859_1));
+		try {
+			assertTrue(PropertiesCompiler.compile("compiled.properties"));
+			assertTrue(snapshotFile.isFile());
+
+			// A snapshot of different contents proves which one is served
+			Files.write(snapshotFile.toPath(), compile("key=snapshot\n", "key=text\n"));
+			assertEquals("snapshot", new ClasspathProperties("compiled.properties").getProperty("key"));
+			assertEquals("snapshot", ClasspathProperties.lazy("compiled.properties").getProperty("key"));
+
+			byte[] corrupt = compile("key=snapshot\n", "key=text\n");
+			corrupt[corrupt.length - 1] ^= 0x40;
+			Files.write(snapshotFile.toPath(), corrupt);
+			assertEquals("text", new ClasspathProperties("compiled.properties").getProperty("key"));
+
+			Files.write(file.toPath(), "key=edited\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertEquals("edited", new ClasspathProperties("compiled.properties").getProperty("key"));
+		} finally {
+			file.delete();
+			snapshotFile.delete();
+			ClasspathLoader.resourceCache().invalidate("compiled.properties");
+			ClasspathLoader.resourceCache().invalidate("compiled.properties" + PropertiesSnapshot.SUFFIX);
+		}
+	}
+
+	private static byte[] compile(String contents, String source) throws Exception {
+		Properties props = new Properties();
+		props.load(new ByteArrayInputStream(contents.getBytes(StandardCharsets.ISO_8859_1)));
+		ByteBuffer compiled = PropertiesSnapshot.compile(ByteBuffer.wrap(source.getBytes(StandardCharsets.ISO_8859_1)),
+				PropertyTable.of(props));
+		byte[] bytes = new byte[compiled.remaining()];
+		compiled.get(bytes);
+		return bytes;
+	}
+
+	private static Properties toProperties(Map<String, String> map) {
+		Properties props = new Properties();
+		props.putAll(map);
+		return props;
+	}
+}
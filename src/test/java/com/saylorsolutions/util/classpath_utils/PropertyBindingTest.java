@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathProperties.Default;
+import com.saylorsolutions.util.classpath_utils.ClasspathProperties.Key;
+
+class PropertyBindingTest {
+	interface TestConfig {
+		@Key("int1")
+		int first();
+
+		@Key("dec2")
+		double decimal();
+
+		@Key("bool1")
+		boolean enabled();
+
+		@Key("test.prop.1")
+		String name();
+
+		@Key("dec1")
+		BigDecimal precise();
+
+		@Key("missing.timeout")
+		@Default("30")
+		long timeout();
+	}
+
+	interface BadValues {
+		@Key("badint2")
+		int bad();
+
+		@Key("no.such.key")
+		String missing();
+	}
+
+	interface PoolConfig {
+		int getPoolSize();
+
+		boolean isPoolFair();
+	}
+
+	interface NotAccessors {
+		String value(String key);
+	}
+
+	@Test
+	void testBind() {
+		ClasspathProperties props = new ClasspathProperties("test.properties");
+		TestConfig config = props.bind(TestConfig.class);
+		assertNotNull(config);
+		assertEquals(1010, config.first());
+		assertEquals(1.9, config.decimal());
+		assertTrue(config.enabled());
+		assertEquals("test_prop_1", config.name());
+		assertEquals(new BigDecimal("0.1"), config.precise());
+		assertEquals(30L, config.timeout());
+		assertEquals(config, config);
+		assertTrue(config.toString().contains("int1=1010"));
+	}
+
+	@Test
+	void testBindFailures() {
+		ClasspathProperties props = new ClasspathProperties("test.properties");
+		assertNull(props.bind(BadValues.class));
+		assertThrows(IllegalArgumentException.class, () -> props.bind(NotAccessors.class));
+		assertThrows(IllegalArgumentException.class, () -> props.bind(String.class));
+	}
+
+	@Test
+	void testKeyOf() {
+		assertEquals("pool.size", PropertyBinding.keyOf("getPoolSize"));
+		assertEquals("pool.fair", PropertyBinding.keyOf("isPoolFair"));
+		assertEquals("pool.size", PropertyBinding.keyOf("poolSize"));
+		assertEquals("issuer", PropertyBinding.keyOf("issuer"));
+	}
+
+	@Test
+	void testRebindOnReload() throws Exception {
+		File file = new File(ClasspathLoader.fileReference("test.properties").getParentFile(), "bind.properties");
+		Files.write(file.toPath(), "pool.size=4\npool.fair=yes\n".getBytes(StandardCharsets.ISO_8859_1));
+		try {
+			ClasspathProperties props = new ClasspathProperties("bind.properties");
+			PoolConfig config = props.bind(PoolConfig.class);
+			assertEquals(4, config.getPoolSize());
+			assertTrue(config.isPoolFair());
+			assertSame(config, props.bind(PoolConfig.class));
+
+			Files.write(file.toPath(), "pool.size=8\npool.fair=no\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertTrue(props.reload());
+			assertEquals(8, config.getPoolSize());
+			assertFalse(config.isPoolFair());
+
+			// Values that don't convert are rejected as a whole
+			Files.write(file.toPath(), "pool.size=lots\npool.fair=yes\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertTrue(props.reload());
+			assertEquals("lots", props.getProperty("pool.size"));
+			assertEquals(8, config.getPoolSize());
+			assertFalse(config.isPoolFair());
+		} finally {
+			file.delete();
+			ClasspathLoader.resourceCache().invalidate("bind.properties");
+		}
+	}
+
+	@Test
+	void testBindParsesLikeGetters() throws Exception {
+		File file = new File(ClasspathLoader.fileReference("test.properties").getParentFile(), "bind-parse.properties");
+		// Trailing whitespace is kept in a properties value
+		Files.write(file.toPath(), "pool.size=5 \npool.fair=yes\n".getBytes(StandardCharsets.ISO_8859_1));
+		try {
+			ClasspathProperties props = new ClasspathProperties("bind-parse.properties");
+			assertEquals(-1, props.getIntegerProperty("pool.size", -1));
+			assertNull(props.bind(PoolConfig.class));
+
+			Files.write(file.toPath(), "pool.size=5\npool.fair=yes\n".getBytes(StandardCharsets.ISO_8859_1));
+			assertTrue(props.reload());
+			assertEquals(5, props.getIntegerProperty("pool.size", -1));
+			assertEquals(5, props.bind(PoolConfig.class).getPoolSize());
+		} finally {
+			file.delete();
+			ClasspathLoader.resourceCache().invalidate("bind-parse.properties");
+		}
+	}
+}
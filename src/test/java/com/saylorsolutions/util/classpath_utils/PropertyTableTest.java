@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+class PropertyTableTest {
+
+	@Test
+	void testLookups() {
+		Properties props = new Properties();
+		for (int i = 0; i < 1000; i++) {
+			props.setProperty("key." + i, "value." + i);
+		}
+		// Colliding hash codes must still resolve to their own values
+		props.setProperty("Aa", "first");
+		props.setProperty("BB", "second");
+
+		PropertyTable table = PropertyTable.of(props);
+		assertEquals(1002, table.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("value." + i, table.get("key." + i));
+		}
+		assertEquals("first", table.get("Aa"));
+		assertEquals("second", table.get("BB"));
+		assertNull(table.get("missing"));
+
+		Map<String, String> copy = new HashMap<>();
+		table.forEach(copy::put);
+		assertEquals(props, toProperties(copy));
+	}
+
+	@Test
+	void testInterpolated() {
+		Properties props = new Properties();
+		props.setProperty("host", "example.com");
+		props.setProperty("port", "8080");
+		props.setProperty("url", "http://${host}:${port}/${path:-index}");
+		props.setProperty("nested", "${missing:-${url}}");
+		props.setProperty("unresolved", "${missing} and ${env:CLASSPATH_UTILS_UNSET:-fallback}");
+		props.setProperty("escaped", "$${host}");
+		props.setProperty("a", "${b}");
+		props.setProperty("b", "x${a}");
+		props.setProperty("c", "${a}");
+
+		PropertyTable table = PropertyTable.interpolated(PropertyTable.of(props));
+		assertEquals("http://example.com:8080/index", table.get("url"));
+		assertSame(table.get("url"), table.get("url"));
+		assertEquals("http://example.com:8080/index", table.get("nested"));
+		assertEquals("${missing} and fallback", table.get("unresolved"));
+		assertEquals("${host}", table.get("escaped"));
+		assertEquals(8080, table.typedValue("port").longValue(0, false));
+
+		// Keys in a cycle are served as written, keys outside of it still resolve
+		assertEquals("${b}", table.get("a"));
+		assertEquals("x${a}", table.get("b"));
+		assertEquals("${b}", table.get("c"));
+	}
+
+	@Test
+	void testTypedValues() {
+		Properties props = new Properties();
+		props.setProperty("int", "42");
+		PropertyTable table = PropertyTable.of(props);
+		assertSame(table.typedValue("int"), table.typedValue("int"));
+		assertEquals(42, table.typedValue("int").longValue(0, false));
+		assertSame(TypedValue.EMPTY, table.typedValue("missing"));
+	}
+
+	@Test
+	void testDuplicatesReplaceEarlierValues() {
+		PropertyTable table = PropertyTable.of(new String[] { "a", "b", "a" }, new String[] { "1", "2", "3" }, 3);
+		assertEquals(2, table.size());
+		assertEquals("3", table.get("a"));
+		assertEquals(0, PropertyTable.EMPTY.size());
+		assertNull(PropertyTable.EMPTY.get("a"));
+	}
+
+	private static Properties toProperties(Map<String, String> map) {
+		Properties props = new Properties();
+		props.putAll(map);
+		return props;
+	}
+}
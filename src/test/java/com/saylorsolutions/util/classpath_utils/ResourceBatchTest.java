@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.saylorsolutions.util.classpath_utils.ClasspathLoader.ZipReaderMode;
+
+class ResourceBatchTest {
+	private static final int ENTRIES = 100;
+
+	private File resources;
+	private File jar;
+
+	@BeforeEach
+	void before() throws Exception {
+		resources = ClasspathLoader.fileReference("Test File 1").getParentFile();
+		jar = File.createTempFile("batch", ".jar");
+		jar.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+			for (int i = 0; i < ENTRIES; i++) {
+				zos.putNextEntry(new ZipEntry("batch/entry-" + i + ".txt"));
+				zos.write(("Entry " + i).getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+		}
+	}
+
+	@AfterEach
+	void after() {
+		ClasspathLoader.setClasspathIndex(null);
+		ClasspathLoader.setZipReaderMode(null);
+		ClasspathLoader.setLoadExecutor(null);
+	}
+
+	@Test
+	void testFilesInInputOrder() {
+		List<String> names = Arrays.asList("folder/Test File 3", "This file doesn't exist", "Test File 1",
+				"Test File 2", "Test File 1");
+		Map<String, String> contents = ClasspathLoader.fileContents(names, StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("folder/Test File 3", "Test File 1", "Test File 2"),
+				new ArrayList<>(contents.keySet()));
+		assertEquals("Test File 3", contents.get("folder/Test File 3").trim());
+		assertArrayEquals(ClasspathLoader.fileBytes("Test File 1"),
+				ClasspathLoader.fileBytes(Collections.singleton("Test File 1")).get("Test File 1"));
+		assertTrue(ClasspathLoader.fileBytes(Collections.emptyList()).isEmpty());
+	}
+
+	@Test
+	void testArchiveEntriesWithIndex() throws Exception {
+		ClasspathLoader.setClasspathIndex(ClasspathIndex.build(Arrays.asList(resources, jar)));
+		assertArchiveEntries();
+	}
+
+	@Test
+	void testArchiveEntriesMapped() throws Exception {
+		ClasspathLoader.setClasspathIndex(ClasspathIndex.build(Arrays.asList(resources, jar)));
+		ClasspathLoader.setZipReaderMode(ZipReaderMode.MAPPED);
+		assertArchiveEntries();
+	}
+
+	@Test
+	void testCustomExecutor() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			ClasspathLoader.setLoadExecutor(executor);
+			assertSame(executor, ClasspathLoader.getLoadExecutor());
+			ClasspathLoader.setClasspathIndex(ClasspathIndex.build(Arrays.asList(resources, jar)));
+			assertArchiveEntries();
+		} finally {
+			executor.shutdown();
+		}
+		ClasspathLoader.setLoadExecutor(null);
+		assertNotNull(ClasspathLoader.getLoadExecutor());
+	}
+
+	private void assertArchiveEntries() throws Exception {
+		List<String> names = new ArrayList<>();
+		for (int i = ENTRIES - 1; i >= 0; i--) {
+			names.add("batch/entry-" + i + ".txt");
+		}
+		names.add("Test File 2");
+		Map<String, String> contents = ClasspathLoader.fileContentsAsync(names, StandardCharsets.UTF_8).get();
+		assertEquals(names, new ArrayList<>(contents.keySet()));
+		for (int i = 0; i < ENTRIES; i++) {
+			assertEquals("Entry " + i, contents.get("batch/entry-" + i + ".txt"));
+		}
+		assertEquals("Test File 2", contents.get("Test File 2").trim());
+	}
+}
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ResourceByteCacheTest {
+	private AtomicInteger loads;
+	private ResourceByteCache cache;
+
+	@BeforeEach
+	void before() {
+		loads = new AtomicInteger();
+		cache = new ResourceByteCache(name -> {
+			loads.incrementAndGet();
+			if (name.startsWith("missing")) {
+				return null;
+			}
+			return new byte[Integer.parseInt(name.substring(name.indexOf(' ') + 1))];
+		});
+		cache.setEnabled(true);
+	}
+
+	@AfterEach
+	void after() {
+		ClasspathLoader.byteCache().setEnabled(false);
+		ClasspathLoader.byteCache().setOffHeap(false);
+		ClasspathLoader.byteCache().setDeduplicating(false);
+	}
+
+	@Test
+	void testHitsReturnReadOnlyViews() {
+		ByteBuffer first = cache.get("a 10");
+		assertEquals(10, first.remaining());
+		assertTrue(first.isReadOnly());
+		assertThrows(ReadOnlyBufferException.class, () -> first.put((byte) 1));
+		first.get();
+
+		ByteBuffer second = cache.get("a 10");
+		assertEquals(10, second.remaining());
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.hitCount());
+		assertEquals(1, cache.missCount());
+		assertEquals(10, cache.weight());
+
+		assertNull(cache.get("missing"));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void testWeightBoundedEviction() {
+		cache.setMaxBytes(100);
+		cache.get("a 40");
+		cache.get("b 40");
+		cache.get("c 40");
+		assertEquals(80, cache.weight());
+		assertEquals(2, cache.size());
+
+		cache.get("d 101");
+		assertEquals(80, cache.weight());
+
+		cache.setMaxBytes(50);
+		assertTrue(cache.weight() <= 50);
+	}
+
+	@Test
+	void testFrequentlyReadEntriesSurviveScans() {
+		cache.setMaxBytes(100);
+		cache.get("hot 30");
+		cache.get("hot 30");
+		for (int i = 0; i < 20; i++) {
+			cache.get("scan" + i + " 20");
+		}
+		int before = loads.get();
+		cache.get("hot 30");
+		assertEquals(before, loads.get());
+	}
+
+	@Test
+	void testInvalidateAndDisable() {
+		cache.get("a 10");
+		cache.get("b 10");
+		cache.invalidate("a 10");
+		assertEquals(1, cache.size());
+		assertEquals(10, cache.weight());
+
+		cache.setEnabled(false);
+		assertEquals(0, cache.size());
+		cache.get("b 10");
+		cache.get("b 10");
+		assertEquals(0, cache.size());
+		assertEquals(4, loads.get());
+	}
+
+	@Test
+	void testOffHeap() {
+		cache.get("a 10");
+		cache.setOffHeap(true);
+		assertEquals(0, cache.size());
+		assertTrue(cache.get("a 10").isDirect());
+		assertTrue(cache.get("a 10").isDirect());
+		assertEquals(1, cache.hitCount());
+	}
+
+	@Test
+	void testClasspathLoaderUsesCache() throws Exception {
+		ResourceByteCache byteCache = ClasspathLoader.byteCache();
+		assertFalse(byteCache.isEnabled());
+		String uncached = ClasspathLoader.fileContents("Test File 1", StandardCharsets.UTF_8);
+
+		byteCache.setEnabled(true);
+		byteCache.setOffHeap(true);
+		assertEquals(uncached, ClasspathLoader.fileContents("Test File 1", StandardCharsets.UTF_8));
+		assertArrayEquals(uncached.getBytes("UTF-8"), ClasspathLoader.fileBytes("Test File 1"));
+		assertEquals(uncached.trim(), ClasspathLoader.fileContents("Test File 1"));
+		ByteBuffer buffer = ClasspathLoader.fileBuffer("Test File 1");
+		assertTrue(buffer.isReadOnly());
+		assertTrue(buffer.isDirect());
+		assertEquals(1, byteCache.size());
+		assertEquals(1, byteCache.missCount());
+
+		ByteBuffer dst = ByteBuffer.allocate(buffer.remaining());
+		assertEquals(buffer.remaining(), ClasspathLoader.fileContents("Test File 1", dst));
+		assertNull(ClasspathLoader.fileBytes("This file doesn't exist"));
+		assertNull(ClasspathLoader.fileInputStream("This file doesn't exist"));
+	}
+
+	@Test
+	void testDeduplication() {
+		cache.setDeduplicating(true);
+		cache.get("a 100");
+		cache.get("b 100");
+		cache.get("c 50");
+		assertEquals(3, cache.size());
+		assertEquals(250, cache.weight());
+		assertEquals(150, cache.retainedBytes());
+		assertEquals(1, cache.sharedCount());
+
+		// Shared contents are kept until the last entry using them is dropped
+		cache.invalidate("a 100");
+		assertEquals(150, cache.retainedBytes());
+		cache.invalidate("b 100");
+		assertEquals(50, cache.retainedBytes());
+
+		cache.setMaxBytes(120);
+		cache.get("d 100");
+		assertEquals(100, cache.retainedBytes());
+		cache.setDeduplicating(false);
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.retainedBytes());
+	}
+
+	@Test
+	void testEqualChecksumsConfirmed() {
+		byte[] first = "Aa".getBytes(StandardCharsets.UTF_8);
+		byte[] second = "BB".getBytes(StandardCharsets.UTF_8);
+		ResourceByteCache colliding = ResourceByteCache
+				.checksummed(name -> new ResourceByteCache.Loaded(name.equals("first") ? first : second, 42L));
+		colliding.setEnabled(true);
+		colliding.setDeduplicating(true);
+		assertEquals("Aa", StandardCharsets.UTF_8.decode(colliding.get("first")).toString());
+		assertEquals("BB", StandardCharsets.UTF_8.decode(colliding.get("second")).toString());
+		assertEquals(0, colliding.sharedCount());
+		assertEquals(4, colliding.retainedBytes());
+		colliding.invalidate("first");
+		assertEquals(2, colliding.retainedBytes());
+		assertEquals("BB", StandardCharsets.UTF_8.decode(colliding.get("second")).toString());
+	}
+
+	@Test
+	void testVerify() {
+		Map<String, byte[]> contents = new ConcurrentHashMap<>();
+		contents.put("same", new byte[] { 1, 2, 3 });
+		contents.put("changed", new byte[] { 1, 2, 3 });
+		contents.put("removed", new byte[] { 4 });
+		ResourceByteCache verified = new ResourceByteCache(contents::get);
+		verified.setEnabled(true);
+		verified.get("same");
+		verified.get("changed");
+		verified.get("removed");
+		contents.put("changed", new byte[] { 1, 2, 4 });
+		contents.remove("removed");
+
+		assertEquals(Arrays.asList("changed", "removed"), sorted(verified.verify()));
+		assertEquals(1, verified.size());
+		assertEquals(Collections.emptyList(), verified.verify());
+	}
+
+	@Test
+	void testLoadRacingInvalidationIsNotStored() {
+		Map<String, byte[]> contents = new ConcurrentHashMap<>();
+		contents.put("name", new byte[] { 1 });
+		ResourceByteCache[] racing = new ResourceByteCache[1];
+		Runnable[] during = { null };
+		racing[0] = new ResourceByteCache(name -> {
+			byte[] bytes = contents.get(name);
+			if (during[0] != null) {
+				// Contents change and the cache is cleared while this read is still running
+				Runnable clear = during[0];
+				during[0] = null;
+				contents.put(name, new byte[] { 2 });
+				clear.run();
+			}
+			return bytes;
+		});
+		racing[0].setEnabled(true);
+
+		for (Runnable clear : new Runnable[] { () -> racing[0].invalidate("name"), racing[0]::invalidateAll, () -> {
+			racing[0].setEnabled(false);
+			racing[0].setEnabled(true);
+		} }) {
+			contents.put("name", new byte[] { 1 });
+			racing[0].invalidateAll();
+			during[0] = clear;
+			assertEquals(1, racing[0].get("name").get(0));
+			assertEquals(0, racing[0].size());
+			assertEquals(2, racing[0].get("name").get(0));
+		}
+	}
+
+	@Test
+	void testVerifySkipsReplacedEntries() {
+		Map<String, byte[]> contents = new ConcurrentHashMap<>();
+		contents.put("raced", new byte[] { 1 });
+		ResourceByteCache[] verified = new ResourceByteCache[1];
+		boolean[] racing = { false };
+		verified[0] = new ResourceByteCache(name -> {
+			if (racing[0]) {
+				// Another reader replaces the entry while verify reads it
+				racing[0] = false;
+				contents.put(name, new byte[] { 2 });
+				verified[0].invalidate(name);
+				verified[0].get(name);
+				return new byte[] { 3 };
+			}
+			return contents.get(name);
+		});
+		verified[0].setEnabled(true);
+		verified[0].get("raced");
+
+		racing[0] = true;
+		assertEquals(Collections.emptyList(), verified[0].verify());
+		assertEquals(1, verified[0].size());
+		assertEquals(2, verified[0].get("raced").get(0));
+	}
+
+	@Test
+	void testClasspathLoaderDeduplicates() throws Exception {
+		byte[] license = "Licensed under the Apache License".getBytes(StandardCharsets.UTF_8);
+		File jar = File.createTempFile("dedup", ".jar");
+		jar.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+			zos.putNextEntry(new ZipEntry("a/LICENSE"));
+			zos.write(license);
+			zos.closeEntry();
+		}
+		Map<String, byte[]> memory = new ConcurrentHashMap<>();
+		memory.put("b/LICENSE", license.clone());
+		memory.put("c/NOTICE", "Other".getBytes(StandardCharsets.UTF_8));
+		ClasspathLoader.setResourceSource(ResourceSource.chain(ResourceSource.jar(jar), ResourceSource.memory(memory)));
+		ResourceByteCache byteCache = ClasspathLoader.byteCache();
+		try {
+			byteCache.setEnabled(true);
+			byteCache.setDeduplicating(true);
+			// The jar entry's recorded CRC and the one computed while reading agree
+			assertArrayEquals(license, ClasspathLoader.fileBytes("a/LICENSE"));
+			assertArrayEquals(license, ClasspathLoader.fileBytes("b/LICENSE"));
+			assertEquals("Other", ClasspathLoader.fileContents("c/NOTICE"));
+			assertEquals(1, byteCache.sharedCount());
+			assertEquals(license.length + 5, byteCache.retainedBytes());
+		} finally {
+			ClasspathLoader.setResourceSource(null);
+		}
+	}
+
+	private static List<String> sorted(List<String> names) {
+		Collections.sort(names);
+		return names;
+	}
+}
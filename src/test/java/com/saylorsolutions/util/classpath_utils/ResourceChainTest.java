@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+class ResourceChainTest {
+
+	@Test
+	void testChainOrderAndCaching() throws Exception {
+		Map<String, byte[]> memory = new ConcurrentHashMap<>();
+		memory.put("Test File 1", "overlay".getBytes(StandardCharsets.UTF_8));
+		AtomicInteger lookups = new AtomicInteger();
+		ResourceSource counting = name -> {
+			lookups.incrementAndGet();
+			return null;
+		};
+		ResourceChain chain = ResourceSource.chain(ResourceSource.memory(memory), counting,
+				ResourceSource.classLoader(getClass().getClassLoader()));
+
+		assertEquals("memory", chain.find("Test File 1").getProtocol());
+		assertEquals("file", chain.find("Test File 2").getProtocol());
+		assertNull(chain.find("This file doesn't exist"));
+		assertNull(chain.find("This file doesn't exist"));
+		chain.find("Test File 2");
+		assertEquals(2, lookups.get());
+		assertEquals(3, chain.cache().size());
+		assertEquals(3, chain.getSources().size());
+		assertThrows(IllegalArgumentException.class, () -> ResourceSource.chain());
+	}
+
+	@Test
+	void testLoaderUsesSource() throws Exception {
+		Map<String, byte[]> memory = new ConcurrentHashMap<>();
+		memory.put("Test File 1", "overlay".getBytes(StandardCharsets.UTF_8));
+		memory.put("dir/only in memory", "in memory".getBytes(StandardCharsets.UTF_8));
+		ClasspathLoader.setResourceSource(ResourceSource.chain(ResourceSource.memory(memory),
+				ResourceSource.classLoader(getClass().getClassLoader())));
+		try {
+			assertEquals("overlay", ClasspathLoader.fileContents("Test File 1"));
+			assertEquals("in memory", new String(ClasspathLoader.fileBytes("dir/only in memory"), StandardCharsets.UTF_8));
+			assertEquals("Test File 2", ClasspathLoader.fileContents("Test File 2").trim());
+			assertNull(ClasspathLoader.fileReference("Test File 1"));
+
+			// A resource removed after it was resolved is looked up again
+			memory.remove("Test File 1");
+			assertNull(ClasspathLoader.fileInputStream("Test File 1"));
+			assertEquals("Test File 1", ClasspathLoader.fileContents("Test File 1").trim());
+		} finally {
+			ClasspathLoader.setResourceSource(null);
+		}
+		assertNull(ClasspathLoader.fileInputStream("dir/only in memory"));
+	}
+
+	@Test
+	void testDirectoryAndJarSources() throws Exception {
+		File directory = Files.createTempDirectory("source").toFile();
+		File nested = new File(directory, "nested/file.txt");
+		File jar = new File(directory, "lib.jar");
+		try {
+			nested.getParentFile().mkdirs();
+			Files.write(nested.toPath(), "on disk".getBytes(StandardCharsets.UTF_8));
+			try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+				zos.putNextEntry(new ZipEntry("pkg/"));
+				zos.closeEntry();
+				zos.putNextEntry(new ZipEntry("pkg/in jar.txt"));
+				zos.write("in jar".getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+
+			ResourceSource dir = ResourceSource.directory(directory);
+			assertNotNull(dir.find("nested/file.txt"));
+			assertNull(dir.find("nested"));
+			assertNull(dir.find("missing.txt"));
+
+			ResourceSource lib = ResourceSource.jar(jar);
+			URL url = lib.find("pkg/in jar.txt");
+			assertNotNull(url);
+			assertNull(lib.find("pkg/"));
+			assertNull(lib.find("missing.txt"));
+			try (InputStream is = url.openStream()) {
+				assertEquals("in jar", new String(Streams.readFully(is, -1), StandardCharsets.UTF_8));
+			}
+		} finally {
+			nested.delete();
+			nested.getParentFile().delete();
+			jar.delete();
+			directory.delete();
+		}
+	}
+
+	@Test
+	void testDirectoryRefusesEscapes() throws Exception {
+		File directory = Files.createTempDirectory("source").toFile();
+		try {
+			File outside = ClasspathLoader.fileReference("test.properties");
+			String escape = directory.toPath().relativize(outside.toPath()).toString().replace(File.separatorChar, '/');
+			assertTrue(escape.startsWith(".."));
+			assertNull(ResourceSource.directory(directory).find(escape));
+			assertNotNull(ResourceSource.directory(outside.getParentFile()).find("test.properties"));
+		} finally {
+			directory.delete();
+		}
+	}
+}
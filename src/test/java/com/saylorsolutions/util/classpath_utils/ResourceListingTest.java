@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ResourceListingTest {
+	private File resources;
+	private File jar;
+
+	@BeforeEach
+	void before() throws Exception {
+		resources = ClasspathLoader.fileReference("Test File 1").getParentFile();
+		jar = File.createTempFile("listing", ".jar");
+		jar.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+			for (String name : new String[] { "folder/", "folder/In Jar.txt", "folder/deep/Deeper.txt",
+					"migrations/001.sql", "migrations/002.sql", "migrations/readme.md" }) {
+				zos.putNextEntry(new ZipEntry(name));
+				if (!name.endsWith("/")) {
+					zos.write(name.getBytes(StandardCharsets.UTF_8));
+				}
+				zos.closeEntry();
+			}
+		}
+	}
+
+	@AfterEach
+	void after() {
+		ClasspathLoader.setClasspathIndex(null);
+	}
+
+	@Test
+	void testListFromClassLoader() {
+		assertEquals(Arrays.asList("folder/Test File 3"), sorted(ClasspathLoader.list("folder/*")));
+		assertEquals(Arrays.asList("Test File 1", "Test File 2"), sorted(ClasspathLoader.list("Test File ?")));
+		assertEquals(Collections.singletonList("test.properties"), sorted(ClasspathLoader.list("*.properties")));
+		assertTrue(sorted(ClasspathLoader.list("com/saylorsolutions/**/ResourceListingTest.class")).size() == 1);
+		assertTrue(sorted(ClasspathLoader.list("nothing/here/*")).isEmpty());
+	}
+
+	@Test
+	void testListFromIndex() {
+		ClasspathLoader.setClasspathIndex(ClasspathIndex.build(Arrays.asList(resources, jar)));
+		assertEquals(Arrays.asList("folder/In Jar.txt", "folder/Test File 3"), sorted(ClasspathLoader.list("folder/*")));
+		assertEquals(Arrays.asList("folder/In Jar.txt", "folder/Test File 3", "folder/deep/Deeper.txt"),
+				sorted(ClasspathLoader.list("folder/**")));
+		assertEquals(Arrays.asList("migrations/001.sql", "migrations/002.sql"),
+				sorted(ClasspathLoader.list("migrations/*.sql").parallel()));
+
+		Map<String, String> contents = ClasspathLoader.fileContentsMatching("migrations/*.sql", StandardCharsets.UTF_8);
+		assertEquals("migrations/002.sql", contents.get("migrations/002.sql"));
+		assertEquals(2, contents.size());
+		assertEquals(2, ClasspathLoader.fileBytesMatching("Test File ?").size());
+	}
+
+	@Test
+	void testZipEntries() {
+		assertEquals(Arrays.asList("folder/Test File 3"), sorted(ClasspathLoader.zipEntries("archive.zip", "folder/**")));
+		assertEquals(Arrays.asList("Test File 1", "Test File 2", "folder/Test File 3"),
+				sorted(ClasspathLoader.zipEntries("archive.zip", "**")));
+		assertEquals(Arrays.asList("Test File 2"), sorted(ClasspathLoader.zipEntries("archive.zip", "Test File 2")));
+		assertTrue(sorted(ClasspathLoader.zipEntries("archive.zip", "zzz*")).isEmpty());
+		assertTrue(sorted(ClasspathLoader.zipEntries("This file doesn't exist", "**")).isEmpty());
+	}
+
+	private static List<String> sorted(Stream<String> names) {
+		try (Stream<String> stream = names) {
+			return stream.sorted().collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ResourceLookupCacheTest {
+	private AtomicInteger lookups;
+	private ResourceLookupCache cache;
+
+	@BeforeEach
+	void before() {
+		lookups = new AtomicInteger();
+		cache = new ResourceLookupCache(name -> {
+			lookups.incrementAndGet();
+			return getClass().getClassLoader().getResource(name);
+		});
+	}
+
+	@Test
+	void testHitsAndMissesAreCached() {
+		URL url = cache.resolve("Test File 1");
+		assertNotNull(url);
+		assertSame(url, cache.resolve("Test File 1"));
+		assertNull(cache.resolve("This file doesn't exist"));
+		assertNull(cache.resolve("This file doesn't exist"));
+		assertEquals(2, lookups.get());
+	}
+
+	@Test
+	void testInvalidate() {
+		cache.resolve("Test File 1");
+		cache.resolve("Test File 2");
+		cache.invalidate("Test File 1");
+		cache.resolve("Test File 1");
+		cache.resolve("Test File 2");
+		assertEquals(3, lookups.get());
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+		cache.resolve("Test File 2");
+		assertEquals(4, lookups.get());
+	}
+
+	@Test
+	void testLeastRecentlyUsedEvicted() throws Exception {
+		cache.setMaxSize(10);
+		cache.resolve("Test File 1");
+		for (int i = 0; i < 9; i++) {
+			cache.resolve("missing " + i);
+			cache.resolve("Test File 1");
+		}
+		cache.resolve("missing 9");
+		assertTrue(cache.size() <= 10);
+
+		int before = lookups.get();
+		cache.resolve("Test File 1");
+		assertEquals(before, lookups.get());
+		cache.resolve("missing 0");
+		assertEquals(before + 1, lookups.get());
+	}
+
+	@Test
+	void testTtlAndDisable() throws Exception {
+		cache.setTtlMillis(1);
+		cache.resolve("Test File 1");
+		Thread.sleep(5);
+		cache.resolve("Test File 1");
+		assertEquals(2, lookups.get());
+
+		cache.setTtlMillis(0);
+		cache.setEnabled(false);
+		cache.resolve("Test File 1");
+		cache.resolve("Test File 1");
+		assertEquals(4, lookups.get());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testLoaderUsesCache() {
+		assertNull(ClasspathLoader.fileInputStream("This file doesn't exist"));
+		assertNull(ClasspathLoader.fileReference("This file doesn't exist"));
+		assertNotNull(ClasspathLoader.fileReference("Test File 1"));
+		assertTrue(ClasspathLoader.resourceCache().size() >= 2);
+	}
+}
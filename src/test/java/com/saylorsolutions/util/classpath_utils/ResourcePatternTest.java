@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class ResourcePatternTest {
+
+	@Test
+	void testPrefixes() {
+		ResourcePattern pattern = ResourcePattern.compile("migrations/v1/*.sql");
+		assertEquals("migrations/v1/", pattern.prefix());
+		assertEquals("migrations/v1/", pattern.baseDirectory());
+		assertEquals(1, pattern.maxDepth());
+
+		pattern = ResourcePattern.compile("/templates/mail-*/**");
+		assertEquals("templates/mail-", pattern.prefix());
+		assertEquals("templates/", pattern.baseDirectory());
+		assertEquals(Integer.MAX_VALUE, pattern.maxDepth());
+
+		assertEquals("", ResourcePattern.compile("*/x.txt").baseDirectory());
+		assertEquals(2, ResourcePattern.compile("*/x.txt").maxDepth());
+	}
+
+	@Test
+	void testWildcards() {
+		ResourcePattern star = ResourcePattern.compile("migrations/*.sql");
+		assertTrue(star.matches("migrations/001_init.sql"));
+		assertFalse(star.matches("migrations/old/001_init.sql"));
+		assertFalse(star.matches("migrations/001_init.sqlx"));
+
+		ResourcePattern recursive = ResourcePattern.compile("a/**/b.txt");
+		assertTrue(recursive.matches("a/b.txt"));
+		assertTrue(recursive.matches("a/x/y/b.txt"));
+		assertFalse(recursive.matches("ab.txt"));
+
+		ResourcePattern mixed = ResourcePattern.compile("file-?.{txt,md}");
+		assertTrue(mixed.matches("file-1.txt"));
+		assertTrue(mixed.matches("file-2.md"));
+		assertFalse(mixed.matches("file-10.txt"));
+		assertFalse(mixed.matches("file-/.txt"));
+
+		ResourcePattern classes = ResourcePattern.compile("v[0-9][!a].(x)");
+		assertTrue(classes.matches("v1b.(x)"));
+		assertFalse(classes.matches("v1a.(x)"));
+		assertFalse(classes.matches("vab.(x)"));
+	}
+
+	@Test
+	void testLiteralsAndEscapes() {
+		ResourcePattern literal = ResourcePattern.compile("folder/Test File 3");
+		assertTrue(literal.matches("folder/Test File 3"));
+		assertFalse(literal.matches("folder/Test File 33"));
+
+		ResourcePattern escaped = ResourcePattern.compile("what\\?/\\*.txt");
+		assertEquals("what?/*.txt", escaped.prefix());
+		assertTrue(escaped.matches("what?/*.txt"));
+		assertFalse(escaped.matches("whatX/a.txt"));
+
+		assertThrows(IllegalArgumentException.class, () -> ResourcePattern.compile("{a,b"));
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+class ZipExtractorTest {
+
+	@Test
+	void testExtractToMap() {
+		Map<String, byte[]> extracted = new HashMap<>();
+		assertEquals(1, ClasspathLoader.zipExtract("archive.zip", "folder/**", ZipEntrySink.toMap(extracted)));
+		assertEquals("Test File 3", new String(extracted.get("folder/Test File 3"), StandardCharsets.UTF_8).trim());
+		assertEquals(-1, ClasspathLoader.zipExtract("This file doesn't exist.zip", "**", ZipEntrySink.toMap(extracted)));
+	}
+
+	@Test
+	void testExtractToDirectory() throws Exception {
+		Path directory = Files.createTempDirectory("extract");
+		try {
+			assertEquals(3, ClasspathLoader.zipExtract("archive.zip", "**", ZipEntrySink.toDirectory(directory.toFile())));
+			assertEquals("Test File 1",
+					new String(Files.readAllBytes(directory.resolve("Test File 1")), StandardCharsets.UTF_8).trim());
+			assertTrue(Files.isRegularFile(directory.resolve("folder/Test File 3")));
+
+			ZipEntrySink sink = ZipEntrySink.toDirectory(directory.toFile());
+			assertThrows(IOException.class, () -> sink.accept("../escaped", ByteBuffer.allocate(1)));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	void testManyEntriesUnderMemoryLimit() throws Exception {
+		File zip = new File(ClasspathLoader.fileReference("test.properties").getParentFile(), "extract.zip");
+		Map<String, byte[]> expected = new HashMap<>();
+		Random random = new Random(7);
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+			for (int i = 0; i < 300; i++) {
+				String name = "data/" + (i % 7) + "/entry-" + i;
+				byte[] contents;
+				ZipEntry entry = new ZipEntry(name);
+				if (i % 10 == 0) {
+					contents = new byte[1000 + i];
+					random.nextBytes(contents);
+					CRC32 crc = new CRC32();
+					crc.update(contents);
+					entry.setMethod(ZipEntry.STORED);
+					entry.setSize(contents.length);
+					entry.setCrc(crc.getValue());
+				} else {
+					StringBuilder sb = new StringBuilder();
+					for (int j = 0; j < i; j++) {
+						sb.append("line ").append(j).append(" of entry ").append(i).append('\n');
+					}
+					contents = sb.toString().getBytes(StandardCharsets.UTF_8);
+				}
+				zos.putNextEntry(entry);
+				zos.write(contents);
+				zos.closeEntry();
+				expected.put(name, contents);
+			}
+			zos.putNextEntry(new ZipEntry("other/skipped"));
+			zos.closeEntry();
+		}
+
+		long limit = ClasspathLoader.getExtractBufferBytes();
+		ClasspathLoader.setExtractBufferBytes(4096);
+		try {
+			Map<String, byte[]> extracted = new HashMap<>();
+			assertEquals(expected.size(), ClasspathLoader.zipExtract("extract.zip", "data/**", ZipEntrySink.toMap(extracted)));
+			assertEquals(expected.keySet(), extracted.keySet());
+			for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+				assertArrayEquals(entry.getValue(), extracted.get(entry.getKey()), entry.getKey());
+			}
+
+			// Failing entries are skipped without stopping the rest
+			long stored = ClasspathLoader.zipExtract("extract.zip", "data/1/**", (name, contents) -> {
+				if (name.endsWith("-8")) {
+					throw new IOException("Refused");
+				}
+			});
+			assertEquals(expected.keySet().stream().filter(name -> name.startsWith("data/1/")).count() - 1, stored);
+		} finally {
+			ClasspathLoader.setExtractBufferBytes(limit);
+			zip.delete();
+			ClasspathLoader.resourceCache().invalidate("extract.zip");
+		}
+		assertThrows(IllegalArgumentException.class, () -> ClasspathLoader.setExtractBufferBytes(0));
+	}
+
+	@Test
+	void testInArchiveOrder() throws Exception {
+		MappedZipArchive archive = ClasspathLoader.mappedZip("archive.zip");
+		int[] order = ZipExtractor.inArchiveOrder(archive, ResourcePattern.compile("**"));
+		assertEquals(3, order.length);
+		for (int i = 1; i < order.length; i++) {
+			assertTrue(archive.localHeaderOffsetAt(order[i - 1]) < archive.localHeaderOffsetAt(order[i]));
+		}
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+}
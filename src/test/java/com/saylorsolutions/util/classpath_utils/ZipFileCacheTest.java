@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2018 Saylor Solutions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.saylorsolutions.util.classpath_utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ZipFileCacheTest {
+	private ZipFileCache cache;
+	private File archive;
+
+	@BeforeEach
+	void before() {
+		cache = new ZipFileCache();
+		archive = ClasspathLoader.fileReference("archive.zip");
+	}
+
+	@Test
+	void testStreamsShareOneHandle() throws Exception {
+		InputStream is1 = cache.entryInputStream(archive, "Test File 1");
+		InputStream is2 = cache.entryInputStream(archive, "folder/Test File 3");
+		assertNotNull(is1);
+		assertNotNull(is2);
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.openCount());
+
+		is1.close();
+		is2.close();
+		assertEquals(1, cache.openCount());
+	}
+
+	@Test
+	void testMissingEntry() throws Exception {
+		assertNull(cache.entryInputStream(archive, "This file doesn't exist"));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void testEvictedHandleClosedAfterLastStream() throws Exception {
+		InputStream is = cache.entryInputStream(archive, "Test File 1");
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.openCount());
+
+		assertEquals('T', is.read());
+		is.close();
+		assertEquals(0, cache.openCount());
+
+		// Closing twice must not release the handle twice
+		is.close();
+		assertEquals(0, cache.openCount());
+	}
+
+	@Test
+	void testIdleEviction() throws Exception {
+		cache.setIdleTimeoutMillis(0);
+		InputStream is = cache.entryInputStream(archive, "Test File 2");
+		assertEquals(1, cache.size());
+		is.close();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.openCount());
+	}
+
+	@Test
+	void testSharedCacheUsedByLoader() throws Exception {
+		ZipFileCache shared = ClasspathLoader.zipFileCache();
+		InputStream is = ClasspathLoader.zipFileInputStream("archive.zip", "Test File 2");
+		assertNotNull(is);
+		assertTrue(shared.size() >= 1);
+		is.close();
+		assertNull(ClasspathLoader.zipFileInputStream("archive.zip", "This file doesn't exist"));
+	}
+}